@@ -0,0 +1,86 @@
+package Models.Bundle;
+
+import Models.Cache.OpponentModelCache;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/** This class saves a model bundle without ever overwriting the last complete one (like the bases of TableJournal).
+ *  The bundles of even & odd generations go to two files (e.g. Models_0.bundle & Models_1.bundle): each save
+ *  writes the OTHER file, and ends it with a COMMIT section holding its generation. The sections are written
+ *  in order, so a bundle torn by a crash fails the checks of its table of contents (or has no commit), and
+ *  load() falls back to the previous generation, still intact.
+ */
+public class BundleStore {
+
+    public static final String COMMIT = "commit";      // Last section of each bundle: its generation (text)
+
+    private final String fileName;
+    private OpponentModelCache.Storage storage;
+    private long generation = -1;                       // Generation of the newest complete bundle (-1 if none)
+
+
+    public BundleStore(OpponentModelCache.Storage storage, String fileName) {
+        this.storage = storage;
+        this.fileName = fileName;
+    }
+
+
+    /** Returns the newest complete bundle (read into the heap, not mapped: its file is rewritten later),
+     *  or null if there is none.
+     */
+    public ModelBundle load() {
+        generation = -1;
+        ModelBundle newest = null;
+        for (int parity = 0; parity < 2; parity++) {
+            String name = fileOf(parity);
+            try (InputStream in = storage.openInput(name)) {
+                ModelBundle bundle = ModelBundle.wrap(ByteBuffer.wrap(in.readAllBytes()), name);
+                long committed = Long.parseLong(bundle.getText(COMMIT));
+                if (committed > generation) {
+                    generation = committed;
+                    newest = bundle;
+                }
+            } catch (FileNotFoundException e) {
+                // No bundle of this parity yet
+            } catch (IOException | RuntimeException e) {
+                System.out.println("*** Incomplete model bundle " + name + " is ignored: " + e);
+            }
+        }
+        return newest;
+    }
+
+
+    // Write the sections of a writer as the next generation (in the other file), then its commit section (load first)
+    public void save(ModelBundleWriter writer) throws IOException {
+        long next = generation + 1;
+        writer.addText(COMMIT, Long.toString(next));
+        try (OutputStream out = storage.openOutput(fileOf(next))) {
+            writer.write(out);
+        }
+        generation = next;
+    }
+
+
+    // File of a generation: the name with _0 or _1 before the extension (from the generation parity)
+    public String fileOf(long generation) {
+        int dot = fileName.lastIndexOf('.');
+        String parity = "_" + (generation & 1);
+        return (dot < 0) ? fileName + parity : fileName.substring(0, dot) + parity + fileName.substring(dot);
+    }
+
+
+    // Set the storage (e.g. of the robot instance of a new round)
+    public void setStorage(OpponentModelCache.Storage storage) {
+        this.storage = storage;
+    }
+
+
+    // Returns the generation of the newest complete bundle (-1 if none has been loaded or saved)
+    public long getGeneration() {
+        return generation;
+    }
+}
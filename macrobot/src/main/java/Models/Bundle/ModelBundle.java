@@ -0,0 +1,176 @@
+package Models.Bundle;
+
+import Models.LUT.StateActionTable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/** This class reads a MODEL BUNDLE: one file holding many named sections (NN weights, optimizer state, LUTs, metadata).
+ *  File layout (big-endian, written by ModelBundleWriter):
+ *  1. Header: magic, format version, number of sections, reserved
+ *  2. Table of contents: for each section, its name (2-byte length + UTF-8), type, offset & length in bytes
+ *  3. Section data (each one aligned to 8 bytes)
+ *  Opening memory-maps the file and reads the table of contents only; a section is materialized (copied
+ *  to the heap) on its first access, so opening costs the same whatever the number of models.
+ *  Do not access a bundle after its file has been rewritten (reopen it instead).
+ *  Not thread-safe.
+ */
+public class ModelBundle {
+
+    static final int MAGIC = 0x4D424E31;        // "MBN1"
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 16;
+
+    // Section types
+    public static final int DOUBLES = 1;        // double[] (e.g. NN weights, optimizer state)
+    public static final int TABLE = 2;          // StateActionTable binary format
+    public static final int TEXT = 3;           // UTF-8 text (e.g. metadata)
+
+    // Entry of the table of contents
+    private static class Section {
+        final int type;
+        final int offset;
+        final int length;
+
+        Section(int type, int offset, int length) {
+            this.type = type;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final ByteBuffer buffer;                                    // Whole file (mapped)
+    private final String fileName;
+    private final Map<String, Section> sections = new LinkedHashMap<>();
+    private final Map<String, Object> materialized = new HashMap<>();   // Sections read so far
+
+
+    private ModelBundle(ByteBuffer buffer, String fileName) throws IOException {
+        this.buffer = buffer;
+        this.fileName = fileName;
+        readTableOfContents();
+    }
+
+
+    // Memory-map a bundle file (read-only, the mapping stays valid after the file is closed)
+    public static ModelBundle open(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file); FileChannel channel = in.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Bundle " + file.getName() + " is too large");
+            }
+            return new ModelBundle(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), file.getName());
+        }
+    }
+
+
+    // Wrap a bundle already in memory (e.g. read from a stream)
+    public static ModelBundle wrap(ByteBuffer buffer, String name) throws IOException {
+        return new ModelBundle(buffer, name);
+    }
+
+
+    // Read the header & table of contents (the section data is not touched)
+    private void readTableOfContents() throws IOException {
+        ByteBuffer in = buffer.duplicate();
+        if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC) {
+            throw new IOException("Not a model bundle: " + fileName);
+        }
+        int version = in.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Bundle " + fileName + " has format version " + version + ", expected " + FORMAT_VERSION);
+        }
+        int numSections = in.getInt();
+        in.getInt();    // Reserved
+        for (int k = 0; k < numSections; k++) {
+            byte[] name = new byte[in.getShort() & 0xFFFF];
+            in.get(name);
+            int type = in.getInt();
+            long offset = in.getLong();
+            long length = in.getLong();
+            if (offset < 0 || length < 0 || offset + length > buffer.capacity()) {
+                throw new IOException("Bundle " + fileName + " is truncated (section " + k + ")");
+            }
+            sections.put(new String(name, StandardCharsets.UTF_8), new Section(type, (int) offset, (int) length));
+        }
+    }
+
+
+    // Returns true if the bundle has a section
+    public boolean has(String name) {
+        return sections.containsKey(name);
+    }
+
+
+    // Returns the names of all sections (in file order)
+    public Set<String> getSectionNames() {
+        return sections.keySet();
+    }
+
+
+    // Returns a DOUBLES section, materialized on the first access (shared array, do not modify)
+    public double[] getDoubles(String name) throws IOException {
+        double[] values = (double[]) materialized.get(name);
+        if (values == null) {
+            ByteBuffer data = sectionData(name, DOUBLES);
+            values = new double[data.remaining() / Double.BYTES];
+            data.asDoubleBuffer().get(values);
+            materialized.put(name, values);
+        }
+        return values;
+    }
+
+
+    // Returns a TEXT section, materialized on the first access
+    public String getText(String name) throws IOException {
+        String text = (String) materialized.get(name);
+        if (text == null) {
+            ByteBuffer data = sectionData(name, TEXT);
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            text = new String(bytes, StandardCharsets.UTF_8);
+            materialized.put(name, text);
+        }
+        return text;
+    }
+
+
+    // Read a TABLE section into a StateActionTable of the same dimensions
+    public void readTable(String name, StateActionTable table) throws IOException {
+        table.readBinary(sectionData(name, TABLE));
+    }
+
+
+    // Returns a view of the data of a section (checks its type)
+    private ByteBuffer sectionData(String name, int type) throws IOException {
+        Section section = sections.get(name);
+        if (section == null) {
+            throw new IOException("Bundle " + fileName + " has no section " + name);
+        }
+        if (section.type != type) {
+            throw new IOException("Section " + name + " of bundle " + fileName + " has type " + section.type + ", expected " + type);
+        }
+        ByteBuffer data = buffer.duplicate();
+        data.position(section.offset).limit(section.offset + section.length);
+        return data.slice();
+    }
+
+
+    // Returns the number of sections
+    public int size() {
+        return sections.size();
+    }
+
+
+    // Returns the number of sections materialized so far
+    public int getNumMaterialized() {
+        return materialized.size();
+    }
+}
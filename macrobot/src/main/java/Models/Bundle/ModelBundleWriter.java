@@ -0,0 +1,106 @@
+package Models.Bundle;
+
+import Models.LUT.StateActionTable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** This class writes a MODEL BUNDLE (see ModelBundle for the layout).
+ *  Sections are collected in memory, then written in one pass with their table of contents.
+ */
+public class ModelBundleWriter {
+
+    private final List<byte[]> names = new ArrayList<>();
+    private final List<Integer> types = new ArrayList<>();
+    private final List<byte[]> data = new ArrayList<>();
+
+
+    // Add a DOUBLES section (e.g. NN weights, optimizer state)
+    public ModelBundleWriter addDoubles(String name, double[] values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(values.length * Double.BYTES);
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (double value : values) {
+            out.writeDouble(value);
+        }
+        return add(name, ModelBundle.DOUBLES, bytes.toByteArray());
+    }
+
+
+    // Add a TABLE section (StateActionTable binary format)
+    public ModelBundleWriter addTable(String name, StateActionTable table) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) table.getNumBytes());
+        table.writeBinary(new DataOutputStream(bytes));
+        return add(name, ModelBundle.TABLE, bytes.toByteArray());
+    }
+
+
+    // Add a TEXT section (e.g. metadata)
+    public ModelBundleWriter addText(String name, String text) throws IOException {
+        return add(name, ModelBundle.TEXT, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    private ModelBundleWriter add(String name, int type, byte[] bytes) throws IOException {
+        byte[] encodedName = name.getBytes(StandardCharsets.UTF_8);
+        if (encodedName.length > 0xFFFF) {
+            throw new IOException("Section name is too long: " + name);
+        }
+        names.add(encodedName);
+        types.add(type);
+        data.add(bytes);
+        return this;
+    }
+
+
+    // Write the header, the table of contents and the sections (the stream is not closed)
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        long tocSize = 0;
+        for (byte[] name : names) {
+            tocSize += 2 + name.length + Integer.BYTES + 2 * Long.BYTES;
+        }
+        long offset = align(ModelBundle.HEADER_SIZE + tocSize);
+
+        out.writeInt(ModelBundle.MAGIC);
+        out.writeInt(ModelBundle.FORMAT_VERSION);
+        out.writeInt(names.size());
+        out.writeInt(0);    // Reserved
+        long[] offsets = new long[names.size()];
+        for (int k = 0; k < names.size(); k++) {
+            offsets[k] = offset;
+            out.writeShort(names.get(k).length);
+            out.write(names.get(k));
+            out.writeInt(types.get(k));
+            out.writeLong(offset);
+            out.writeLong(data.get(k).length);
+            offset = align(offset + data.get(k).length);
+        }
+
+        long position = ModelBundle.HEADER_SIZE + tocSize;
+        for (int k = 0; k < names.size(); k++) {
+            pad(out, offsets[k] - position);
+            out.write(data.get(k));
+            position = offsets[k] + data.get(k).length;
+        }
+        out.flush();
+    }
+
+
+    // Round up to a multiple of 8 bytes
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+
+    // Write zero bytes
+    private static void pad(DataOutputStream out, long n) throws IOException {
+        for (long i = 0; i < n; i++) {
+            out.writeByte(0);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package Models.Cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** This class caches one model (LUT, NNs, ...) for each OPPONENT name, so each enemy gets its own policy.
+ *  Models are loaded lazily from their binary file on the first get() of an opponent (or created if there is none),
+ *  kept in memory up to a byte budget, and the least recently used ones are written back and evicted when
+ *  the budget is exceeded (LinkedHashMap in access order). The model in use is never evicted.
+ *  Not thread-safe (the robot thread only).
+ */
+public class OpponentModelCache<M> {
+
+    // Binary format & size of a model
+    public interface Codec<M> {
+        // Returns a new model for an opponent without a file
+        M create();
+
+        // Returns the memory used by a model in bytes (about the size of its binary format)
+        long byteSize(M model);
+
+        void write(M model, DataOutputStream out) throws IOException;
+
+        M read(DataInputStream in) throws IOException;
+    }
+
+    // Where the model files are (e.g. the Robocode data directory, which needs its own output stream)
+    public interface Storage {
+        // Throws FileNotFoundException if the file does not exist
+        InputStream openInput(String fileName) throws IOException;
+
+        OutputStream openOutput(String fileName) throws IOException;
+
+        // Appends to the end of the file (created if it does not exist)
+        OutputStream openAppend(String fileName) throws IOException;
+
+        // Plain files of a directory (outside Robocode)
+        static Storage inDirectory(File directory) {
+            return new Storage() {
+                @Override
+                public InputStream openInput(String fileName) throws IOException {
+                    return new FileInputStream(new File(directory, fileName));
+                }
+
+                @Override
+                public OutputStream openOutput(String fileName) throws IOException {
+                    return new FileOutputStream(new File(directory, fileName));
+                }
+
+                @Override
+                public OutputStream openAppend(String fileName) throws IOException {
+                    return new FileOutputStream(new File(directory, fileName), true);
+                }
+            };
+        }
+    }
+
+    private final Codec<M> codec;
+    private final String filePrefix;            // Prefix of the model files (one file for each opponent)
+    private final long byteBudget;              // Max bytes of the models in memory
+    private final LinkedHashMap<String, M> models = new LinkedHashMap<>(16, 0.75f, true);
+    private Storage storage;
+    private long bytes = 0;                     // Bytes of the models in memory
+    private int numLoaded = 0;                  // Models read from their file
+    private int numEvicted = 0;                 // Models written back & evicted
+
+
+    public OpponentModelCache(Codec<M> codec, Storage storage, String filePrefix, long byteBudget) {
+        this.codec = codec;
+        this.storage = storage;
+        this.filePrefix = filePrefix;
+        this.byteBudget = byteBudget;
+    }
+
+
+    // Returns the model of an opponent (loaded or created on its first use, then the most recently used)
+    public M get(String opponent) {
+        M model = models.get(opponent);
+        if (model == null) {
+            model = load(opponent);
+            models.put(opponent, model);
+            bytes += codec.byteSize(model);
+            evict(opponent);
+        }
+        return model;
+    }
+
+
+    // Read the model file of an opponent, or create a new model
+    private M load(String opponent) {
+        String fileName = fileNameOf(opponent);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(storage.openInput(fileName)))) {
+            M model = codec.read(in);
+            numLoaded++;
+            return model;
+        } catch (FileNotFoundException e) {
+            return codec.create();
+        } catch (IOException e) {
+            System.out.println("*** Could not read the model file " + fileName + ", starting a new model: " + e.getMessage());
+            return codec.create();
+        }
+    }
+
+
+    // Write back & evict the least recently used models until the budget is met (never the given opponent)
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, M>> it = models.entrySet().iterator();
+        while (bytes > byteBudget && it.hasNext()) {
+            Map.Entry<String, M> eldest = it.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            save(eldest.getKey(), eldest.getValue());
+            bytes -= codec.byteSize(eldest.getValue());
+            it.remove();
+            numEvicted++;
+        }
+    }
+
+
+    // Write the model file of an opponent
+    private void save(String opponent, M model) {
+        String fileName = fileNameOf(opponent);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(storage.openOutput(fileName)))) {
+            codec.write(model, out);
+        } catch (IOException e) {
+            System.out.println("*** Could not write the model file " + fileName + ": " + e.getMessage());
+        }
+    }
+
+
+    // Write the files of all models in memory (e.g. at the end of a round)
+    public void saveAll() {
+        for (Map.Entry<String, M> entry : models.entrySet()) {
+            save(entry.getKey(), entry.getValue());
+        }
+    }
+
+
+    // Returns the file name of an opponent (characters other than letters, digits, '.', '-' are replaced)
+    public String fileNameOf(String opponent) {
+        return filePrefix + opponent.replaceAll("[^A-Za-z0-9.\\-]", "_") + ".bin";
+    }
+
+
+    // Set the storage (e.g. of the robot instance of a new round)
+    public void setStorage(Storage storage) {
+        this.storage = storage;
+    }
+
+
+    // Returns true if the model of an opponent is in memory
+    public boolean contains(String opponent) {
+        return models.containsKey(opponent);
+    }
+
+
+    // Returns the number of models in memory
+    public int size() {
+        return models.size();
+    }
+
+
+    // Returns the bytes of the models in memory
+    public long getBytes() {
+        return bytes;
+    }
+
+
+    // Returns the number of models read from their file
+    public int getNumLoaded() {
+        return numLoaded;
+    }
+
+
+    // Returns the number of models written back & evicted
+    public int getNumEvicted() {
+        return numEvicted;
+    }
+}
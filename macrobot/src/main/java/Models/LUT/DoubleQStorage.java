@@ -0,0 +1,69 @@
+package Models.LUT;
+
+
+// Full precision storage of a StateActionTable: double Q-values & int visits (no rounding, no saturation)
+final class DoubleQStorage implements QStorage {
+
+    private final double[] values;
+    private final int[] visits;
+
+
+    DoubleQStorage(int size) {
+        this.values = new double[size];
+        this.visits = new int[size];
+    }
+
+
+    @Override
+    public double get(int index) {
+        return values[index];
+    }
+
+
+    @Override
+    public void set(int index, double q) {
+        values[index] = q;
+    }
+
+
+    @Override
+    public int getVisits(int index) {
+        return visits[index];
+    }
+
+
+    @Override
+    public void setVisits(int index, int visit) {
+        visits[index] = visit;
+    }
+
+
+    @Override
+    public int incrementVisits(int index) {
+        return ++visits[index];
+    }
+
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+
+    @Override
+    public long getNumBytes() {
+        return (long) values.length * (Double.BYTES + Integer.BYTES);
+    }
+
+
+    @Override
+    public double getMaxAbsError() {
+        return 0;
+    }
+
+
+    @Override
+    public long getNumSaturated() {
+        return 0;
+    }
+}
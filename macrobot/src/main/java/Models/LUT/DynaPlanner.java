@@ -0,0 +1,235 @@
+package Models.LUT;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** This class is a Dyna-Q PLANNER for the State-Action table, running on its own thread.
+ *  The robot does its real Q update as usual, then hands the transition to observe(), which records it
+ *  in a TabularModel and queues the State & Action by the magnitude of its TD error.
+ *  Each real step grants "planningSteps" simulated backups, which the planner runs in the idle time
+ *  between ticks with PRIORITIZED SWEEPING:
+ *  1. Pop the State & Action with the largest priority, and move its Q-value toward its expected target
+ *     under the model
+ *  2. Queue each predecessor State & Action by how much its own expected target now differs from its Q-value
+ *  The model & the queue are guarded by one lock that is held for a single backup at a time,
+ *  so observe() never waits for more than one backup. Each simulated backup reads & writes its Q-value
+ *  while holding the table's monitor, like the real updates of the robot thread (StateActionTable writes are synchronized).
+ */
+public class DynaPlanner implements Runnable {
+
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private StateActionTable lut;
+    private TabularModel model;
+    private final int numActions;
+    private final double learningRate;          // ALPHA: Q-learning rate of the simulated backups
+    private final double discountRate;          // GAMMA: Discount rate
+    private final int planningSteps;            // K: simulated backups for each real step
+    private final int maxCredits;               // Max backups waiting (older credits are dropped)
+    private final double threshold;             // Min priority to queue a State & Action
+
+    // Priority queue of State & Action keys (indexed binary max-heap, no boxing)
+    private final int[] heap;
+    private final int[] position;               // Position of each key in the heap (-1 if not queued)
+    private final double[] priority;            // Priority of each queued key
+    private int heapSize = 0;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasWork = lock.newCondition();
+    private int credits = 0;                    // Backups allowed by the real steps so far
+    private long numBackups = 0;                // Simulated backups done so far
+    private volatile boolean isStopped = false;
+
+
+    public DynaPlanner(StateActionTable lut, int numActions, double learningRate, double discountRate,
+                       int planningSteps, double threshold) {
+        this.lut = lut;
+        this.model = new TabularModel(lut.size(), numActions);
+        this.numActions = numActions;
+        this.learningRate = learningRate;
+        this.discountRate = discountRate;
+        this.planningSteps = planningSteps;
+        this.maxCredits = 64 * planningSteps;
+        this.threshold = threshold;
+        this.heap = new int[lut.size()];
+        this.position = new int[lut.size()];
+        this.priority = new double[lut.size()];
+        Arrays.fill(position, -1);
+    }
+
+
+    /** Record a real transition (robot thread, after its real Q update).
+     *  reward is the reward of this step only, isTerminal ends the episode (the next State is not bootstrapped),
+     *  and tdError is the change of the real update, used as the priority of the State & Action.
+     */
+    public void observe(int stateActionKey, int nextStateKey, double reward, boolean isTerminal, double tdError) {
+        lock.lock();
+        try {
+            model.record(stateActionKey, isTerminal ? TabularModel.TERMINAL : nextStateKey, reward);
+            queue(stateActionKey, Math.abs(tdError));
+            credits = Math.min(credits + planningSteps, maxCredits);
+            hasWork.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    // Plan for another State-Action table (e.g. of another enemy): the model, the queue and the credits start over
+    public void setTable(StateActionTable table) {
+        lock.lock();
+        try {
+            lut = table;
+            model = new TabularModel(table.size(), numActions);
+            while (heapSize > 0) {
+                pop();
+            }
+            credits = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    // Planner loop: one simulated backup for each credit (until stopped)
+    @Override
+    public void run() {
+        while (!isStopped && !Thread.currentThread().isInterrupted()) {
+            lock.lock();
+            try {
+                if (credits == 0 || heapSize == 0) {
+                    hasWork.awaitNanos(IDLE_NANOS);
+                    continue;
+                }
+                credits--;
+                backup(pop());
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+
+    // Simulated backup of a State & Action, then queue its predecessors (lock held)
+    private void backup(int stateActionKey) {
+        synchronized (lut) {
+            double target = model.expectedTarget(lut, stateActionKey, discountRate);
+            double q = lut.outputFor(stateActionKey);
+            lut.setQ(stateActionKey, q + learningRate * (target - q));
+        }
+        numBackups++;
+
+        int stateKey = stateActionKey / numActions;
+        for (int e = model.firstPredecessor(stateKey); e != -1; e = model.nextPredecessor(e)) {
+            int predecessor = model.stateActionOf(e);
+            double predecessorTarget = model.expectedTarget(lut, predecessor, discountRate);
+            queue(predecessor, Math.abs(predecessorTarget - lut.outputFor(predecessor)));
+        }
+    }
+
+
+    // Queue a State & Action, or raise its priority if already queued (lock held)
+    private void queue(int key, double p) {
+        if (!(p > threshold)) {
+            return;
+        }
+        int i = position[key];
+        if (i < 0) {
+            i = heapSize++;
+            heap[i] = key;
+            position[key] = i;
+            priority[key] = p;
+        } else if (p > priority[key]) {
+            priority[key] = p;
+        } else {
+            return;
+        }
+        // Sift up
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (priority[heap[parent]] >= p) {
+                break;
+            }
+            move(heap[parent], i);
+            i = parent;
+        }
+        move(key, i);
+    }
+
+
+    // Remove and return the State & Action with the largest priority (lock held, heap not empty)
+    private int pop() {
+        int top = heap[0];
+        position[top] = -1;
+        int last = heap[--heapSize];
+        if (heapSize > 0) {
+            // Sift down
+            int i = 0;
+            double p = priority[last];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && priority[heap[child + 1]] > priority[heap[child]]) {
+                    child++;
+                }
+                if (priority[heap[child]] <= p) {
+                    break;
+                }
+                move(heap[child], i);
+                i = child;
+            }
+            move(last, i);
+        }
+        return top;
+    }
+
+
+    // Put a key at a heap position
+    private void move(int key, int i) {
+        heap[i] = key;
+        position[key] = i;
+    }
+
+
+    // Returns the number of simulated backups done so far
+    public long getNumBackups() {
+        lock.lock();
+        try {
+            return numBackups;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    // Returns the number of distinct transitions of the model
+    public int getModelSize() {
+        lock.lock();
+        try {
+            return model.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    // Stop the planner loop (the thread ends after its current backup)
+    public void stop() {
+        isStopped = true;
+    }
+
+
+    // Start the planner on a new daemon thread, returns the thread
+    public Thread start() {
+        Thread thread = new Thread(this, "dyna-planner");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,119 @@
+package Models.LUT;
+
+import java.util.Arrays;
+
+/** This class keeps SPARSE eligibility traces for Q(lambda) on a StateActionTable.
+ *  Only the recently visited State & Action keys hold a trace (dense list of active keys, plus the
+ *  position of each key for O(1) lookup), so each update costs O(active traces) instead of O(table).
+ *  Traces are REPLACING (a visit sets the trace to 1), decay by gamma * lambda after each update,
+ *  and are dropped under a threshold. When the set is full, the smallest trace is evicted.
+ *  Not thread-safe (each robot owns its traces).
+ */
+public class EligibilityTraces {
+
+    private final int maxTraces;                // Max active traces
+    private final double threshold;             // Traces under this value are dropped
+    private final int[] keys;                   // Active keys (dense)
+    private final double[] traces;              // Trace of each active key (same order)
+    private final int[] position;               // Position of each key in the active list (-1 if none)
+    private int size = 0;
+
+
+    public EligibilityTraces(int numKeys, int maxTraces, double threshold) {
+        this.maxTraces = maxTraces;
+        this.threshold = threshold;
+        this.keys = new int[maxTraces];
+        this.traces = new double[maxTraces];
+        this.position = new int[numKeys];
+        Arrays.fill(position, -1);
+    }
+
+
+    /** One Q(lambda) step after the caller has updated the visited key itself (with its visit record):
+     *  1. Set the trace of the visited key to 1
+     *  2. Move the Q-value of every OTHER active key by alpha * tdError * trace, with the step size alpha
+     *     of the schedule for that key's own visit count (no visit is recorded for the traced keys)
+     *  3. Decay all traces by decay (gamma * lambda), and drop the ones under the threshold
+     */
+    public void update(StateActionTable lut, int visitedKey, double tdError, StepSizeSchedule schedule, double decay) {
+        visit(visitedKey);
+        QStorage storage = lut.getStorage();
+        synchronized (lut) {    // Same monitor as the other writers of the table (e.g. a DynaPlanner)
+            int i = 0;
+            while (i < size) {
+                int key = keys[i];
+                if (key != visitedKey) {
+                    double alpha = schedule.stepSize(Math.max(1, storage.getVisits(key)));
+                    lut.setQ(key, lut.outputFor(key) + alpha * tdError * traces[i]);
+                }
+                traces[i] *= decay;
+                if (traces[i] < threshold) {
+                    remove(i);      // The last trace moves here, check it next
+                } else {
+                    i++;
+                }
+            }
+        }
+    }
+
+
+    // Set the trace of a key to 1 (replacing trace), evicting the smallest trace if the set is full
+    private void visit(int key) {
+        int i = position[key];
+        if (i < 0) {
+            if (size == maxTraces) {
+                remove(smallest());
+            }
+            i = size++;
+            keys[i] = key;
+            position[key] = i;
+        }
+        traces[i] = 1;
+    }
+
+
+    // Returns the position of the smallest active trace
+    private int smallest() {
+        int min = 0;
+        for (int i = 1; i < size; i++) {
+            if (traces[i] < traces[min]) {
+                min = i;
+            }
+        }
+        return min;
+    }
+
+
+    // Remove the trace at a position (the last active trace takes its place)
+    private void remove(int i) {
+        position[keys[i]] = -1;
+        size--;
+        if (i < size) {
+            keys[i] = keys[size];
+            traces[i] = traces[size];
+            position[keys[i]] = i;
+        }
+    }
+
+
+    // Drop all traces (end of an episode, or exploratory Action with Watkins's Q(lambda))
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[keys[i]] = -1;
+        }
+        size = 0;
+    }
+
+
+    // Returns the trace of a key (0 if not active)
+    public double traceOf(int key) {
+        int i = position[key];
+        return i < 0 ? 0 : traces[i];
+    }
+
+
+    // Returns the number of active traces
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,88 @@
+package Models.LUT;
+
+
+/** Compact storage of a StateActionTable: 16-bit fixed-point Q-values with one scale for the whole table
+ *  (q = stored * scale, scale = maxAbsQ / 32767) & 16-bit saturating visits.
+ *  Q-values beyond +-maxAbsQ are clamped. The absolute rounding error is at most scale / 2 everywhere,
+ *  unlike float16 whose error grows with the magnitude.
+ */
+final class FixedPointQStorage implements QStorage {
+
+    private final short[] values;
+    private final char[] visits;                    // Unsigned 16-bit counters
+    private final double scale;                     // Q-value of one unit
+    private final double maxAbsQ;
+    private long numSaturated = 0;
+
+
+    FixedPointQStorage(int size, double maxAbsQ) {
+        if (!(maxAbsQ > 0)) {
+            throw new IllegalArgumentException("The fixed-point range must be positive: " + maxAbsQ);
+        }
+        this.values = new short[size];
+        this.visits = new char[size];
+        this.maxAbsQ = maxAbsQ;
+        this.scale = maxAbsQ / Short.MAX_VALUE;
+    }
+
+
+    @Override
+    public double get(int index) {
+        return values[index] * scale;
+    }
+
+
+    @Override
+    public void set(int index, double q) {
+        if (q > maxAbsQ || q < -maxAbsQ) {
+            q = Math.copySign(maxAbsQ, q);
+            numSaturated++;
+        }
+        values[index] = (short) Math.round(q / scale);
+    }
+
+
+    @Override
+    public int getVisits(int index) {
+        return visits[index];
+    }
+
+
+    @Override
+    public void setVisits(int index, int visit) {
+        visits[index] = (char) Math.max(0, Math.min(visit, Character.MAX_VALUE));
+    }
+
+
+    @Override
+    public int incrementVisits(int index) {
+        if (visits[index] != Character.MAX_VALUE) {
+            visits[index]++;
+        }
+        return visits[index];
+    }
+
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+
+    @Override
+    public long getNumBytes() {
+        return (long) values.length * (Short.BYTES + Character.BYTES);
+    }
+
+
+    @Override
+    public double getMaxAbsError() {
+        return scale / 2;
+    }
+
+
+    @Override
+    public long getNumSaturated() {
+        return numSaturated;
+    }
+}
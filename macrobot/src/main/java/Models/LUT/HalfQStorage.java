@@ -0,0 +1,139 @@
+package Models.LUT;
+
+
+/** Compact storage of a StateActionTable: IEEE 754 half-precision (float16) Q-values & 16-bit saturating visits.
+ *  The float16 conversion is done by hand (round to nearest even, subnormals supported), because
+ *  Float.floatToFloat16 only exists from Java 20. Values beyond the float16 range are clamped to +-65504.
+ */
+final class HalfQStorage implements QStorage {
+
+    static final float MAX_HALF = 65504f;                  // Largest finite float16
+    private static final double RELATIVE_ERROR = 0x1p-11;  // Half of the float16 precision (11 significant bits)
+    private static final double SUBNORMAL_ERROR = 0x1p-25; // Half of the smallest float16 subnormal
+
+    private final short[] values;
+    private final char[] visits;                            // Unsigned 16-bit counters
+    private double maxAbsWritten = 0;                       // Largest in-range |Q-value| written so far
+    private long numSaturated = 0;
+
+
+    HalfQStorage(int size) {
+        this.values = new short[size];
+        this.visits = new char[size];
+    }
+
+
+    @Override
+    public double get(int index) {
+        return toFloat(values[index]);
+    }
+
+
+    @Override
+    public void set(int index, double q) {
+        float f = (float) q;
+        if (Math.abs(f) > MAX_HALF) {
+            f = Math.copySign(MAX_HALF, f);
+            numSaturated++;
+        } else if (Math.abs(q) > maxAbsWritten) {
+            maxAbsWritten = Math.abs(q);
+        }
+        values[index] = toHalf(f);
+    }
+
+
+    @Override
+    public int getVisits(int index) {
+        return visits[index];
+    }
+
+
+    @Override
+    public void setVisits(int index, int visit) {
+        visits[index] = (char) Math.max(0, Math.min(visit, Character.MAX_VALUE));
+    }
+
+
+    @Override
+    public int incrementVisits(int index) {
+        if (visits[index] != Character.MAX_VALUE) {
+            visits[index]++;
+        }
+        return visits[index];
+    }
+
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+
+    @Override
+    public long getNumBytes() {
+        return (long) values.length * (Short.BYTES + Character.BYTES);
+    }
+
+
+    // Rounding of the double to float, then to float16 (relative), or half a subnormal step near zero
+    @Override
+    public double getMaxAbsError() {
+        return Math.max(maxAbsWritten * RELATIVE_ERROR * (1 + 0x1p-13), SUBNORMAL_ERROR);
+    }
+
+
+    @Override
+    public long getNumSaturated() {
+        return numSaturated;
+    }
+
+
+    // Convert a float (within +-65504) to float16 bits, rounding to nearest even
+    static short toHalf(float f) {
+        int bits = Float.floatToRawIntBits(f);
+        int sign = (bits >>> 16) & 0x8000;
+        if (Float.isNaN(f)) {
+            return (short) (sign | 0x7e00);
+        }
+        float abs = Math.abs(f);
+        if (abs >= 65520f) {
+            return (short) (sign | 0x7c00);     // Rounds to infinity
+        }
+        if (abs <= 0x1p-25f) {
+            return (short) sign;                // Rounds to zero
+        }
+        int exponent = Math.getExponent(f);
+        int shift = 13;                          // Dropped significand bits (23 - 10)
+        int significand = bits & 0x007f_ffff;
+        if (exponent < -14) {
+            // Subnormal float16: shift the implicit leading bit in
+            shift += -14 - exponent;
+            significand |= 0x0080_0000;
+            exponent = -15;
+        }
+        int half = significand >> shift;
+        int lsb = (significand >> shift) & 1;
+        int round = (significand >> (shift - 1)) & 1;
+        int sticky = significand & ((1 << (shift - 1)) - 1);
+        if (round != 0 && (lsb | sticky) != 0) {
+            half++;                              // A carry into the exponent is still the right encoding
+        }
+        return (short) (sign | (((exponent + 15) << 10) + half));
+    }
+
+
+    // Convert float16 bits to a float (exact)
+    static float toFloat(short h) {
+        int sign = h & 0x8000;
+        int exponent = (h & 0x7c00) >> 10;
+        int significand = h & 0x03ff;
+        if (exponent == 0) {
+            float value = 0x1p-24f * significand;       // Zero or subnormal
+            return sign != 0 ? -value : value;
+        }
+        if (exponent == 0x1f) {
+            return Float.intBitsToFloat((sign << 16) | 0x7f80_0000 | (significand << 13));   // Infinity or NaN
+        }
+        return Float.intBitsToFloat((sign << 16) | ((exponent - 15 + 127) << 23) | (significand << 13));
+    }
+}
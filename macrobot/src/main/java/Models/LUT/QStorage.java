@@ -0,0 +1,57 @@
+package Models.LUT;
+
+
+/** Storage of the Q-values & visit records of a StateActionTable (one cell for each State & Action).
+ *  doubles() keeps full precision (8 + 4 bytes per cell); the compact backends keep 2 + 2 bytes per cell:
+ *  half() stores Q-values as IEEE float16, fixedPoint() as 16-bit integers with one scale for the table.
+ *  Compact visit records are 16-bit SATURATING counters (they stop at 65535).
+ *  Writes are rounded (and clamped to the representable range); getMaxAbsError() reports a bound of the
+ *  rounding error of the values written so far, and getNumSaturated() the number of clamped Q-value writes.
+ */
+public interface QStorage {
+
+    // Returns the Q-value of a cell
+    double get(int index);
+
+    // Sets the Q-value of a cell (rounded & clamped by compact storages)
+    void set(int index, double q);
+
+    // Returns the visit record of a cell
+    int getVisits(int index);
+
+    // Sets the visit record of a cell (saturating)
+    void setVisits(int index, int visits);
+
+    // Adds one visit to a cell (saturating), returns the new visit record
+    int incrementVisits(int index);
+
+    // Returns the number of cells
+    int size();
+
+    // Returns the memory of the Q-values & visit records in bytes
+    long getNumBytes();
+
+    // Returns a bound of |stored Q-value - written Q-value| for all in-range writes so far
+    double getMaxAbsError();
+
+    // Returns the number of Q-value writes clamped to the representable range
+    long getNumSaturated();
+
+
+    // Full precision: double Q-values & int visits
+    static QStorage doubles(int size) {
+        return new DoubleQStorage(size);
+    }
+
+
+    // float16 Q-values (relative error <= 2^-11, max magnitude 65504) & 16-bit visits
+    static QStorage half(int size) {
+        return new HalfQStorage(size);
+    }
+
+
+    // 16-bit fixed-point Q-values in [-maxAbsQ, maxAbsQ] (absolute error <= maxAbsQ / 65534) & 16-bit visits
+    static QStorage fixedPoint(int size, double maxAbsQ) {
+        return new FixedPointQStorage(size, maxAbsQ);
+    }
+}
@@ -1,14 +1,19 @@
 package Models.LUT;
 
 import Models.Interface.LUTInterface;
+import Tools.RandomInit;
+import Tools.RandomStreams;
 import robocode.RobocodeFileOutputStream;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntFunction;
 
 
 public class StateActionTable implements LUTInterface {
 
-    private double [][][][][] lut;      // State & Action Look Up Table: 5 Dimensions, records all Q-values
-    private int[][][][][] visits;       // Records the total visits of each State & Action
+    private QStorage lut;               // State & Action Look Up Table: 5 Dimensions (flattened), records all Q-values & visits
+    private AtomicLongArray dirty;      // Bitset of the cells changed since the last journal write (any thread)
     private int numDim1Levels;          // 1st dimension
     private int numDim2Levels;          // 2nd dimension
     private int numDim3Levels;          // 3rd dimension
@@ -25,6 +30,18 @@ public class StateActionTable implements LUTInterface {
             int numDim3Levels,
             int numDim4Levels,
             int numDim5Levels) {
+        this(numDim1Levels, numDim2Levels, numDim3Levels, numDim4Levels, numDim5Levels, QStorage::doubles);
+    }
+
+
+    // Creates the LUT on a given storage of the cells, e.g. QStorage::half for a compact (float16) table
+    public StateActionTable(
+            int numDim1Levels,
+            int numDim2Levels,
+            int numDim3Levels,
+            int numDim4Levels,
+            int numDim5Levels,
+            IntFunction<QStorage> storage) {
 
         this.numDim1Levels = numDim1Levels;
         this.numDim2Levels = numDim2Levels;
@@ -32,8 +49,8 @@ public class StateActionTable implements LUTInterface {
         this.numDim4Levels = numDim4Levels;
         this.numDim5Levels = numDim5Levels;
 
-        lut = new double[numDim1Levels][numDim2Levels][numDim3Levels][numDim4Levels][numDim5Levels];
-        visits = new int[numDim1Levels][numDim2Levels][numDim3Levels][numDim4Levels][numDim5Levels];
+        lut = storage.apply(numDim1Levels * numDim2Levels * numDim3Levels * numDim4Levels * numDim5Levels);
+        dirty = new AtomicLongArray((lut.size() + 63) / 64);
         this.initializeLUT();           // Initializes when creating the LUT
     }
 
@@ -43,17 +60,17 @@ public class StateActionTable implements LUTInterface {
      */
     @Override
     public void initializeLUT() {
-        for (int a = 0; a < numDim1Levels; a++) {
-            for (int b = 0; b < numDim2Levels; b++) {
-                for (int c = 0; c < numDim3Levels; c++) {
-                    for (int d = 0; d < numDim4Levels; d++) {
-                        for (int e = 0; e < numDim5Levels; e++) {
-                            lut[a][b][c][d][e] = Math.random();
-                            visits[a][b][c][d][e] = 0;
-                        }
-                    }
-                }
-            }
+        initializeLUT(new RandomInit(RandomStreams.shared().forThread().nextLong()));
+    }
+
+
+    // Same as initializeLUT(), with the Q-values drawn from a seeded initializer (reproducible, parallel for large tables)
+    public void initializeLUT(RandomInit init) {
+        double[] values = new double[lut.size()];
+        init.uniform(values, 0, 1);
+        for (int index = 0; index < values.length; index++) {
+            lut.set(index, values[index]);
+            lut.setVisits(index, 0);
         }
     }
 
@@ -69,11 +86,25 @@ public class StateActionTable implements LUTInterface {
             int c = (int)x[2];
             int d = (int)x[3];
             int e = (int)x[4];
-            return lut[a][b][c][d][e];
+            return lut.get(indexOf(a, b, c, d, e));
         }
     }
 
 
+    /** Returns the flat index (packed key) of the input State & Action.
+     *  The last dimension (Action) changes fastest, same order as the save file.
+     */
+    public int indexOf(int a, int b, int c, int d, int e) {
+        return (((a * numDim2Levels + b) * numDim3Levels + c) * numDim4Levels + d) * numDim5Levels + e;
+    }
+
+
+    // Returns the Q-value of the State & Action at the flat index (no index array needed)
+    public double outputFor(int index) {
+        return lut.get(index);
+    }
+
+
     /** Updates the Q-value of the input State & Action to a new Q-value through training.
      *  Updates the visit record of the previous State & Action (input).
      */
@@ -87,25 +118,135 @@ public class StateActionTable implements LUTInterface {
             int c = (int)x[2];
             int d = (int)x[3];
             int e = (int)x[4];
-            lut[a][b][c][d][e] = target;
-            visits[a][b][c][d][e]++;
+            train(indexOf(a, b, c, d, e), target);
         }
         return 1;
     }
 
 
+    // Updates the Q-value & visit record of the State & Action at the flat index
+    // (the cell writes are synchronized on the table: a DynaPlanner thread may write cells too)
+    public synchronized double train(int index, double target) {
+        lut.set(index, target);
+        lut.incrementVisits(index);
+        markDirty(index);
+        return 1;
+    }
+
+
+    /** Fused TD update of the State & Action at the flat index (one indexed read-modify-write):
+     *  record the visit, then move the Q-value toward the target by the step size of the schedule for this visit.
+     *  Returns the change of the Q-value (step size * TD error).
+     */
+    public synchronized double update(int index, double target, StepSizeSchedule schedule) {
+        int n = lut.incrementVisits(index);
+        double q = lut.get(index);
+        double change = schedule.stepSize(n) * (target - q);
+        lut.set(index, q + change);
+        markDirty(index);
+        return change;
+    }
+
+
+    // Sets the Q-value of the State & Action at the flat index without a visit (simulated experience)
+    public synchronized void setQ(int index, double q) {
+        lut.set(index, q);
+        markDirty(index);
+    }
+
+
+    // Mark a cell as changed (lock-free, the planner thread changes cells too)
+    private void markDirty(int index) {
+        int word = index >>> 6;
+        long bit = 1L << index;
+        long bits = dirty.get(word);
+        while ((bits & bit) == 0 && !dirty.compareAndSet(word, bits, bits | bit)) {
+            bits = dirty.get(word);
+        }
+    }
+
+
+    /** Write a journal record (index, Q-value, visits) for each cell changed since the last call, and clear the marks.
+     *  A cell changed while writing is marked again, and written by the next call.
+     *  Returns the number of records.
+     */
+    public int writeDirty(DataOutputStream out) throws IOException {
+        int numRecords = 0;
+        for (int word = 0; word < dirty.length(); word++) {
+            long bits = dirty.getAndSet(word, 0);
+            while (bits != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                out.writeInt(index);
+                out.writeDouble(lut.get(index));
+                out.writeInt(lut.getVisits(index));
+                numRecords++;
+            }
+        }
+        return numRecords;
+    }
+
+
+    // Replay one journal record (does not mark the cell)
+    public synchronized void applyRecord(int index, double q, int visit) {
+        lut.set(index, q);
+        lut.setVisits(index, visit);
+    }
+
+
+    // Clear all change marks (the whole table has been written)
+    public void clearDirty() {
+        for (int word = 0; word < dirty.length(); word++) {
+            dirty.set(word, 0);
+        }
+    }
+
+
+    // Returns the number of cells changed since the last journal write
+    public int getNumDirty() {
+        int numDirty = 0;
+        for (int word = 0; word < dirty.length(); word++) {
+            numDirty += Long.bitCount(dirty.get(word));
+        }
+        return numDirty;
+    }
+
+
+    // Returns the total number of State & Action cells
+    public int size() {
+        return lut.size();
+    }
+
+
+    // Returns the storage of the cells (memory, rounding error bound, saturated writes)
+    public QStorage getStorage() {
+        return lut;
+    }
+
+
     // This version saves the LUT in a format useful for training a NN
     @Override
     public void save(File filename) {
         System.out.println("*** Start Printing LUT...");
-        PrintStream saveFile = null;
+        PrintStream saveFile;
 
         try {
             saveFile = new PrintStream(new RobocodeFileOutputStream(filename));
         } catch (IOException e) {
             System.out.println("*** Could not create output stream for NN save file");
+            return;
         }
 
+        write(saveFile);
+        saveFile.close();
+        System.out.println("*** Done Printing! Please use this format of LUT for NN training.");
+    }
+
+
+    /** Write the LUT to any stream (same format as save, e.g. a plain file outside Robocode).
+     *  First line is the number of rows, second line the number of dimensions, then one row per State & Action.
+     */
+    public void write(PrintStream saveFile) {
         // First line is the number of rows of data
         saveFile.println(numDim1Levels * numDim2Levels * numDim3Levels * numDim4Levels * numDim5Levels);
 
@@ -120,8 +261,8 @@ public class StateActionTable implements LUTInterface {
                             // e, d, e2, d2, a, q visits
                             String row = String.format("%d, %d, %d, %d, %d, %2.3f, %d",
                                     a, b, c, d, e,
-                                    lut[a][b][c][d][e],
-                                    visits[a][b][c][d][e]
+                                    lut.get(indexOf(a, b, c, d, e)),
+                                    lut.getVisits(indexOf(a, b, c, d, e))
                             );
                             saveFile.println(row);
                         }
@@ -129,8 +270,48 @@ public class StateActionTable implements LUTInterface {
                 }
             }
         }
-        saveFile.close();
-        System.out.println("*** Done Printing! Please use this format of LUT for NN training.");
+    }
+
+
+    // Returns the size of the binary format in bytes
+    public long getNumBytes() {
+        return 4 + (long) lut.size() * (Double.BYTES + Integer.BYTES);
+    }
+
+
+    // Write the Q-values & visit records in a compact binary format (number of cells, then each Q-value & visit)
+    public void writeBinary(DataOutputStream out) throws IOException {
+        out.writeInt(lut.size());
+        for (int i = 0; i < lut.size(); i++) {
+            out.writeDouble(lut.get(i));
+            out.writeInt(lut.getVisits(i));
+        }
+    }
+
+
+    // Read the Q-values & visit records of the binary format (same dimensions only)
+    public void readBinary(DataInputStream in) throws IOException {
+        int numCells = in.readInt();
+        if (numCells != lut.size()) {
+            throw new IOException("Binary LUT has " + numCells + " cells, expected " + lut.size());
+        }
+        for (int i = 0; i < lut.size(); i++) {
+            lut.set(i, in.readDouble());
+            lut.setVisits(i, in.readInt());
+        }
+    }
+
+
+    // Read the binary format from a buffer (e.g. a section of a memory-mapped ModelBundle), from its position
+    public void readBinary(ByteBuffer in) throws IOException {
+        int numCells = in.getInt();
+        if (numCells != lut.size()) {
+            throw new IOException("Binary LUT has " + numCells + " cells, expected " + lut.size());
+        }
+        for (int i = 0; i < lut.size(); i++) {
+            lut.set(i, in.getDouble());
+            lut.setVisits(i, in.getInt());
+        }
     }
 
 
@@ -173,8 +354,8 @@ public class StateActionTable implements LUTInterface {
                             double q = Double.parseDouble(tokens[5]);   // The Q-value of each line
                             int v = Integer.parseInt(tokens[6]);        // The visit record of each line
 
-                            lut[a][b][c][d][e] = q;
-                            visits[a][b][c][d][e] = v;
+                            lut.set(indexOf(a, b, c, d, e), q);
+                            lut.setVisits(indexOf(a, b, c, d, e), v);
                         }
                     }
                 }
@@ -192,23 +373,25 @@ public class StateActionTable implements LUTInterface {
                     for (int d = 0; d < numDim4Levels; d++) {
                         for (int e = 0; e < numDim5Levels; e++) {
 
+                            int index = indexOf(a, b, c, d, e);
                             // Set all Q-value of LUT to the range of -1 to 1 (Bipolar)
-                            lut[a][b][c][d][e] /= 20;
-                            lut[a][b][c][d][e] = Math.max(lut[a][b][c][d][e], QVALUE_LB);
-                            lut[a][b][c][d][e] = Math.min(lut[a][b][c][d][e], QVALUE_UB);
+                            double q = lut.get(index) / 20;
+                            q = Math.max(q, QVALUE_LB);
+                            q = Math.min(q, QVALUE_UB);
+                            lut.set(index, q);
 
 
                             /** Another way to normalize
                             // Set Q-value minimum to -5
-                            lut[a][b][c][d][e] = Math.max(lut[a][b][c][d][e], -5);
+                            lut[index] = Math.max(lut[index], -5);
                             // Set Q-value maximum to 5
-                            lut[a][b][c][d][e] = Math.min(lut[a][b][c][d][e], 5);
+                            lut[index] = Math.min(lut[index], 5);
                             // Set all Q-value of LUT to the range of -1 to 1 (Bipolar)
-                            lut[a][b][c][d][e] /= 5;
+                            lut[index] /= 5;
                              */
 
                             // Print the normalized LUT
-                            System.out.println(lut[a][b][c][d][e]);
+                            System.out.println(lut.get(index));
                         }
                     }
                 }
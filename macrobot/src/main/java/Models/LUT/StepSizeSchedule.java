@@ -0,0 +1,55 @@
+package Models.LUT;
+
+import java.util.function.IntToDoubleFunction;
+
+
+/** Step-size (learning rate) schedule of the TD update of a StateActionTable cell, from its visit count.
+ *  n is the number of visits of the cell INCLUDING the current update (n >= 1).
+ *  Decaying schedules (1/n, 1/n^k) let rarely visited cells move fast, and frequently visited cells converge.
+ *  The schedules of the factories describe themselves in toString (e.g. "polynomial(0.6).withFloor(0.1)") for the logs.
+ */
+public interface StepSizeSchedule {
+
+    // Returns the step size of the n-th update of a cell
+    double stepSize(int n);
+
+
+    // Same step size for every update (fixed learning rate)
+    static StepSizeSchedule constant(double alpha) {
+        return of("constant(" + alpha + ")", n -> alpha);
+    }
+
+
+    // 1/n: each cell keeps the running average of its targets
+    static StepSizeSchedule harmonic() {
+        return of("harmonic()", n -> 1.0 / n);
+    }
+
+
+    // 1/n^k (0.5 < k <= 1 for convergence): decays slower than 1/n, so later targets weigh more
+    static StepSizeSchedule polynomial(double k) {
+        return of("polynomial(" + k + ")", n -> Math.pow(n, -k));
+    }
+
+
+    // This schedule, but never under min (keeps tracking a changing policy)
+    default StepSizeSchedule withFloor(double min) {
+        return of(this + ".withFloor(" + min + ")", n -> Math.max(min, stepSize(n)));
+    }
+
+
+    // Schedule with its description
+    private static StepSizeSchedule of(String description, IntToDoubleFunction stepSize) {
+        return new StepSizeSchedule() {
+            @Override
+            public double stepSize(int n) {
+                return stepSize.applyAsDouble(n);
+            }
+
+            @Override
+            public String toString() {
+                return description;
+            }
+        };
+    }
+}
@@ -0,0 +1,193 @@
+package Models.LUT;
+
+import Models.Cache.OpponentModelCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/** This class saves a StateActionTable INCREMENTALLY: a base snapshot (full binary table) plus a write-ahead journal.
+ *  Each save() appends one record (index, Q-value, visits) for each cell changed since the last save,
+ *  so the I/O of a round is proportional to the cells it touched, not to the table size.
+ *  When the journal has more records than the compaction limit, the table is written as a new base
+ *  and the journal starts over.
+ *  Both files start with a GENERATION number, and a journal is only replayed over the base of the same
+ *  generation: a crash between writing a new base and resetting the journal never replays stale records.
+ *  The bases of even & odd generations go to two files (e.g. Table_0.bin & Table_1.bin), and a base ends with
+ *  a footer (~generation): a compaction never overwrites the last complete base, so a crash while writing
+ *  the new one falls back to the previous generation and its journal, which are still intact.
+ *  A torn last record (crash during an append) is ignored, and the next save compacts instead of appending.
+ */
+public class TableJournal {
+
+    private final StateActionTable table;
+    private final String baseFileName;
+    private final String journalFileName;
+    private final int compactionRecords;        // Max journal records before a compaction
+    private OpponentModelCache.Storage storage;
+    private long generation = -1;               // Generation of the base (-1 if there is none)
+    private int numRecords = 0;                 // Records in the journal
+    private boolean needsCompaction = true;     // The journal cannot be appended (no base, torn record, other generation)
+
+
+    public TableJournal(StateActionTable table, OpponentModelCache.Storage storage, String baseFileName,
+                        String journalFileName, int compactionRecords) {
+        this.table = table;
+        this.storage = storage;
+        this.baseFileName = baseFileName;
+        this.journalFileName = journalFileName;
+        this.compactionRecords = compactionRecords;
+    }
+
+
+    /** Load the newest complete base snapshot, then replay the journal of the same generation.
+     *  Without a base, the table is kept as it is (the first save writes a base).
+     */
+    public void load() throws IOException {
+        generation = -1;
+        numRecords = 0;
+        needsCompaction = true;
+        // Try the base with the highest generation first, the other one if it is torn
+        long[] generations = {readGeneration(baseFileOf(0)), readGeneration(baseFileOf(1))};
+        int first = (generations[1] > generations[0]) ? 1 : 0;
+        IOException error = null;
+        for (int k : new int[] {first, 1 - first}) {
+            if (generations[k] < 0) {
+                continue;
+            }
+            try {
+                loadBase(baseFileOf(k), generations[k]);
+                generation = generations[k];
+                break;
+            } catch (IOException e) {
+                System.out.println("*** Could not load the LUT base " + baseFileOf(k) + ": " + e);
+                error = e;
+            }
+        }
+        if (generation < 0) {
+            if (error != null) {
+                throw error;
+            }
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(storage.openInput(journalFileName)))) {
+            if (in.readLong() == generation) {
+                needsCompaction = !replay(in);
+            }
+        } catch (FileNotFoundException | EOFException e) {
+            // No journal (or not even a header): the base is up to date
+        }
+        table.clearDirty();
+    }
+
+
+    // Returns the generation in the header of a base file, -1 if it is missing or empty
+    private long readGeneration(String fileName) {
+        try (DataInputStream in = new DataInputStream(storage.openInput(fileName))) {
+            return in.readLong();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+
+    // Read a base into the table, and check its footer (a torn base throws)
+    private void loadBase(String fileName, long baseGeneration) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(storage.openInput(fileName)))) {
+            in.readLong();
+            table.readBinary(in);
+            if (in.readLong() != ~baseGeneration) {
+                throw new IOException("Incomplete base of generation " + baseGeneration);
+            }
+        }
+    }
+
+
+    // Base file of a generation: the name with _0 or _1 before the extension (from the generation parity)
+    private String baseFileOf(long generation) {
+        int dot = baseFileName.lastIndexOf('.');
+        String parity = "_" + (generation & 1);
+        return (dot < 0) ? baseFileName + parity : baseFileName.substring(0, dot) + parity + baseFileName.substring(dot);
+    }
+
+
+    // Apply the journal records in order (the last record of a cell wins), returns false at a torn record
+    private boolean replay(DataInputStream in) throws IOException {
+        while (true) {
+            int index;
+            double q;
+            int visit;
+            try {
+                index = in.readInt();
+            } catch (EOFException e) {
+                return true;
+            }
+            try {
+                q = in.readDouble();
+                visit = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            if (index < 0 || index >= table.size()) {
+                throw new IOException("Journal record index " + index + " out of range");
+            }
+            table.applyRecord(index, q, visit);
+            numRecords++;
+        }
+    }
+
+
+    // Append the changed cells to the journal (or compact), e.g. at the end of a round
+    public void save() throws IOException {
+        if (needsCompaction || numRecords + table.getNumDirty() > compactionRecords) {
+            compact();
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(storage.openAppend(journalFileName)))) {
+            numRecords += table.writeDirty(out);
+        }
+    }
+
+
+    /** Write the whole table as the base of the next generation (in the other base file), then start a new journal.
+     *  The previous base & journal stay valid until both are written.
+     */
+    public void compact() throws IOException {
+        long next = generation + 1;
+        // Cells changed while writing are marked again, and appended by the next save
+        table.clearDirty();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(storage.openOutput(baseFileOf(next))))) {
+            out.writeLong(next);
+            table.writeBinary(out);
+            out.writeLong(~next);
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(storage.openOutput(journalFileName)))) {
+            out.writeLong(next);
+        }
+        generation = next;
+        numRecords = 0;
+        needsCompaction = false;
+    }
+
+
+    // Set the storage (e.g. of the robot instance of a new round)
+    public void setStorage(OpponentModelCache.Storage storage) {
+        this.storage = storage;
+    }
+
+
+    // Returns the number of records in the journal
+    public int getNumRecords() {
+        return numRecords;
+    }
+
+
+    // Returns the generation of the base (-1 if no base has been loaded or written)
+    public long getGeneration() {
+        return generation;
+    }
+}
@@ -0,0 +1,118 @@
+package Models.LUT;
+
+import Models.ReplayMemory.TransitionCountStore;
+
+import java.util.Arrays;
+
+/** This class is a learned TABULAR model of the environment for Dyna planning, keyed like StateActionTable
+ *  (packed States & Action key, the Action changes fastest).
+ *  It records every observed transition (count & reward sum in a TransitionCountStore), and links the
+ *  distinct transitions into two lists: the OUTCOMES of each State & Action (for expected backups),
+ *  and the PREDECESSORS of each States key (for prioritized sweeping).
+ *  A TERMINAL transition (end of the episode) is recorded with the next States key TERMINAL: its target is the reward only.
+ *  Not thread-safe (the DynaPlanner guards it with its lock).
+ */
+public class TabularModel {
+
+    public static final int TERMINAL = -1;      // Next States key of a terminal transition (no next State)
+    private static final int NONE = -1;         // End of a list
+
+    private final int numActions;
+    private final TransitionCountStore transitions = new TransitionCountStore(256);
+    private final long[] stateActionCounts;     // Observations of each State & Action
+    private final int[] firstOutcome;           // First entry of each State & Action (NONE if not seen)
+    private final int[] firstPredecessor;       // First entry leading to each States key (NONE if not seen)
+    private int[] nextOutcome = new int[256];   // Next entry of the same State & Action
+    private int[] nextPredecessor = new int[256];   // Next entry leading to the same States key
+
+
+    public TabularModel(int numKeys, int numActions) {
+        this.numActions = numActions;
+        this.stateActionCounts = new long[numKeys];
+        this.firstOutcome = new int[numKeys];
+        this.firstPredecessor = new int[numKeys / numActions];
+        Arrays.fill(firstOutcome, NONE);
+        Arrays.fill(firstPredecessor, NONE);
+    }
+
+
+    // Record one observed transition (packed States & Action key, packed next States key or TERMINAL, reward)
+    public void record(int stateActionKey, int nextStateKey, double reward) {
+        int size = transitions.size();
+        int entry = transitions.add(stateActionKey, nextStateKey, reward);
+        stateActionCounts[stateActionKey]++;
+        if (entry == size) {
+            // New distinct transition: link it at the head of both lists
+            if (entry == nextOutcome.length) {
+                nextOutcome = Arrays.copyOf(nextOutcome, 2 * entry);
+                nextPredecessor = Arrays.copyOf(nextPredecessor, 2 * entry);
+            }
+            nextOutcome[entry] = firstOutcome[stateActionKey];
+            firstOutcome[stateActionKey] = entry;
+            if (nextStateKey != TERMINAL) {
+                nextPredecessor[entry] = firstPredecessor[nextStateKey];
+                firstPredecessor[nextStateKey] = entry;
+            }
+        }
+    }
+
+
+    /** Returns the expected Q-learning target of a State & Action under the model:
+     *  sum over its outcomes of P(s' | s, a) * (mean reward + gamma * max Q(s', a')), with no max Q for a TERMINAL outcome.
+     *  Returns NaN if the State & Action has never been observed.
+     */
+    public double expectedTarget(StateActionTable lut, int stateActionKey, double discountRate) {
+        long total = stateActionCounts[stateActionKey];
+        if (total == 0) {
+            return Double.NaN;
+        }
+        double sum = 0;
+        for (int e = firstOutcome[stateActionKey]; e != NONE; e = nextOutcome[e]) {
+            int nextStateKey = transitions.getNextStateKey(e);
+            double bestNextQ = nextStateKey == TERMINAL ? 0 : maxQ(lut, nextStateKey);
+            sum += transitions.getCount(e) * (transitions.getMeanReward(e) + discountRate * bestNextQ);
+        }
+        return sum / total;
+    }
+
+
+    // Returns the best Q-value of a States key (all its Actions are contiguous in the LUT)
+    public double maxQ(StateActionTable lut, int stateKey) {
+        int base = stateKey * numActions;
+        double best = lut.outputFor(base);
+        for (int a = 1; a < numActions; a++) {
+            best = Math.max(best, lut.outputFor(base + a));
+        }
+        return best;
+    }
+
+
+    // Returns the first entry leading to a States key (NONE if none)
+    public int firstPredecessor(int stateKey) {
+        return firstPredecessor[stateKey];
+    }
+
+
+    // Returns the next entry leading to the same States key (NONE at the end)
+    public int nextPredecessor(int entry) {
+        return nextPredecessor[entry];
+    }
+
+
+    // Returns the State & Action key of an entry
+    public int stateActionOf(int entry) {
+        return transitions.getStateActionKey(entry);
+    }
+
+
+    // Returns the number of distinct transitions
+    public int size() {
+        return transitions.size();
+    }
+
+
+    // Returns the number of Actions of each State
+    public int getNumActions() {
+        return numActions;
+    }
+}
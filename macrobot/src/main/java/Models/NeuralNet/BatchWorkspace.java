@@ -0,0 +1,38 @@
+package Models.NeuralNet;
+
+import Models.Interface.NeuralNetInterface;
+
+
+/** This class holds the preallocated matrices for BATCHED forward and backward passes of a NN_OneHiddenLayer.
+ *  All matrices are row-major with one row for each training pattern (up to maxRows patterns),
+ *  so a whole minibatch runs as a few matrix-matrix products without any allocation.
+ *  Each thread keeps its own workspace (it can be shared by all NNs of the same structure).
+ */
+public class BatchWorkspace {
+
+    final int maxRows;                  // Max number of patterns for each batch
+    final double[] hiddenOutputs;       // Outputs of the HIDDEN LAYER (maxRows * (numHidden + 1), last column is the bias)
+    final double[] outputs;             // Output of the first OUTPUT neuron for each pattern
+    final double[] outputErrSigs;       // Error signal of the OUTPUT LAYER for each pattern
+    final double[] hiddenErrSigs;       // Error signals of the HIDDEN LAYER (maxRows * numHidden)
+    final GradientBuffer gradient;      // Summed WEIGHT CHANGES of the batch
+
+
+    public BatchWorkspace(int numInputs, int numHidden, int numOutputs, int maxRows) {
+        this.maxRows = maxRows;
+        this.hiddenOutputs = new double[maxRows * (numHidden + 1)];
+        for (int r = 0; r < maxRows; r++) {
+            this.hiddenOutputs[r * (numHidden + 1) + numHidden] = NeuralNetInterface.bias;
+        }
+        this.outputs = new double[maxRows];
+        this.outputErrSigs = new double[maxRows];
+        this.hiddenErrSigs = new double[maxRows * numHidden];
+        this.gradient = new GradientBuffer(numInputs, numHidden, numOutputs);
+    }
+
+
+    // Returns the max number of patterns for each batch
+    public int getMaxRows() {
+        return maxRows;
+    }
+}
@@ -0,0 +1,73 @@
+package Models.NeuralNet;
+
+import Models.Interface.NeuralNetInterface;
+
+import java.util.Arrays;
+
+
+/** This class holds the accumulated WEIGHT CHANGES of a NN_OneHiddenLayer for a batch of training patterns.
+ *  Each worker thread owns its own buffer, so gradients can be computed without touching the shared weights.
+ *  The layout is the same as the weight layers of the NN (+1 column for each bias weight).
+ */
+public class GradientBuffer {
+
+    final double[][] hiddenLayer;       // WEIGHT CHANGES of INPUT-TO-HIDDEN layer
+    final double[][] outputLayer;       // WEIGHT CHANGES of HIDDEN-TO-OUTPUT layer
+    final double[] hiddenOutputs;       // Scratch outputs of the HIDDEN LAYER (+1 for the bias)
+    final double[] outputErrSigs;       // Scratch error signals of the OUTPUT LAYER
+    final double[] hiddenErrSigs;       // Scratch error signals of the HIDDEN LAYER
+    double loss;                        // Sum of the squared errors of the accumulated patterns
+    int count;                          // Number of the accumulated patterns
+
+
+    public GradientBuffer(int numInputs, int numHidden, int numOutputs) {
+        this.hiddenLayer = new double[numHidden][numInputs + 1];
+        this.outputLayer = new double[numOutputs][numHidden + 1];
+        this.hiddenOutputs = new double[numHidden + 1];
+        this.hiddenOutputs[numHidden] = NeuralNetInterface.bias;       // Set Bias output value for the HIDDEN LAYER
+        this.outputErrSigs = new double[numOutputs];
+        this.hiddenErrSigs = new double[numHidden];
+    }
+
+
+    // Reset all accumulated WEIGHT CHANGES, loss and pattern count to 0
+    public void clear() {
+        for (double[] row : hiddenLayer) {
+            Arrays.fill(row, 0);
+        }
+        for (double[] row : outputLayer) {
+            Arrays.fill(row, 0);
+        }
+        loss = 0;
+        count = 0;
+    }
+
+
+    // Add the accumulated WEIGHT CHANGES of another buffer (same NN structure) to this buffer
+    public void add(GradientBuffer other) {
+        for (int i = 0; i < hiddenLayer.length; i++) {
+            for (int j = 0; j < hiddenLayer[i].length; j++) {
+                hiddenLayer[i][j] += other.hiddenLayer[i][j];
+            }
+        }
+        for (int i = 0; i < outputLayer.length; i++) {
+            for (int j = 0; j < outputLayer[i].length; j++) {
+                outputLayer[i][j] += other.outputLayer[i][j];
+            }
+        }
+        loss += other.loss;
+        count += other.count;
+    }
+
+
+    // Returns the sum of the squared errors of the accumulated patterns
+    public double getLoss() {
+        return loss;
+    }
+
+
+    // Returns the number of the accumulated patterns
+    public int getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,211 @@
+package Models.NeuralNet;
+
+import Models.Interface.NeuralNetInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/** This class implements HOGWILD-style parallel training for a NN_OneHiddenLayer.
+ *  All worker threads train ONE shared flat weight buffer (same layout as NN_OneHiddenLayer.getWeights)
+ *  pattern by pattern, WITHOUT any lock: each worker reads the weights, computes its own error signals,
+ *  and writes its weight changes straight into the shared buffer. Updates of different workers may overlap,
+ *  which is accepted: with small, mostly sparse updates the lost updates rarely matter.
+ *  Only the activations and error signals are private (one Worker per thread).
+ *  Differences to the serial training of the NN:
+ *  1. Plain SGD (no momentum), since PREVIOUS weights cannot be kept consistent without locks
+ *  2. Input weights of zero inputs are not written (their weight change is always 0)
+ *  3. Results depend on the thread scheduling, so they are not reproducible with more than 1 thread
+ *  Double writes are not torn on 64-bit JVMs, so every weight is always a value written by some worker.
+ */
+public class HogwildTrainer {
+
+    private final NN_OneHiddenLayer nn;         // The NN to train (weights are copied in and out)
+    private final int numInputs;                // The number of inputs (bias input not included)
+    private final int numHidden;                // The number of hidden neurons
+    private final int numOutputs;               // The number of output neurons
+    private final int hiddenWeights;            // Number of INPUT-TO-HIDDEN weights (offset of the output layer)
+    private final double learningRate;
+    private final double a;                     // Lower bound of the sigmoid
+    private final double b;                     // Upper bound of the sigmoid
+    private final boolean isBipolar;
+
+    private final double[] weights;             // Shared weights of all workers (racy on purpose)
+    private final Worker[] workerStates;        // Activations & error signals of each worker thread
+    private final int numThreads;
+    private final ExecutorService workers;
+
+
+    // Private state of one worker thread
+    private static final class Worker {
+        final double[] hiddenOutputs;           // Outputs of the HIDDEN LAYER (+1 for the bias)
+        final double[] outputErrSigs;           // Error signals of the OUTPUT LAYER
+        final double[] hiddenErrSigs;           // Error signals of the HIDDEN LAYER
+
+        Worker(int numHidden, int numOutputs) {
+            this.hiddenOutputs = new double[numHidden + 1];
+            this.hiddenOutputs[numHidden] = NeuralNetInterface.bias;
+            this.outputErrSigs = new double[numOutputs];
+            this.hiddenErrSigs = new double[numHidden];
+        }
+    }
+
+
+    public HogwildTrainer(NN_OneHiddenLayer nn, int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1");
+        }
+        this.nn = nn;
+        this.numInputs = nn.getNumInputs();
+        this.numHidden = nn.getNumHidden();
+        this.numOutputs = nn.getNumOutputs();
+        this.hiddenWeights = numHidden * (numInputs + 1);
+        this.learningRate = nn.getLearningRate();
+        this.a = nn.getLowerBound();
+        this.b = nn.getUpperBound();
+        this.isBipolar = nn.isBipolar();
+        this.weights = new double[nn.getNumWeights()];
+        this.numThreads = numThreads;
+        this.workerStates = new Worker[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            this.workerStates[t] = new Worker(numHidden, numOutputs);
+        }
+        // Daemon threads, so the JVM can exit even if shutdown() is not called
+        this.workers = Executors.newFixedThreadPool(numThreads, runnable -> {
+            Thread thread = new Thread(runnable, "nn-hogwild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /** Train the NN on all rows of the training set once (one epoch).
+     *  Each worker trains one contiguous shard of rows, all of them on the shared weights.
+     *  The CURRENT weights of the NN are copied in before, and the trained weights copied back after.
+     *  Returns the TOTAL ERROR (sum of the losses) of this epoch.
+     */
+    public double trainEpoch(TrainingSet set) {
+        nn.getWeights(weights);
+        double[] features = set.getFeatures();
+        int size = set.size();
+        List<Callable<Double>> tasks = new ArrayList<>(numThreads);
+        for (int t = 0; t < numThreads; t++) {
+            int shardStart = (int) ((long) size * t / numThreads);
+            int shardEnd = (int) ((long) size * (t + 1) / numThreads);
+            Worker worker = workerStates[t];
+            tasks.add(() -> {
+                double loss = 0;
+                for (int i = shardStart; i < shardEnd; i++) {
+                    loss += train(worker, features, set.offsetOf(i), set.getTarget(i));
+                }
+                return loss;
+            });
+        }
+        double totalLoss = 0;
+        try {
+            // invokeAll waits for all workers, so their writes are visible here
+            for (Future<Double> future : workers.invokeAll(tasks)) {
+                totalLoss += future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("NN training was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("NN training worker failed", e.getCause());
+        }
+        nn.setWeights(weights);
+        return totalLoss;
+    }
+
+
+    // SGD step of one training pattern on the shared weights, returns the TOTAL ERROR (LOSS) of the pattern
+    private double train(Worker worker, double[] X, int offset, double argValue) {
+        double[] hiddenOutputs = worker.hiddenOutputs;
+
+        // FORWARD propagation for the Input-to-Hidden layer
+        int id = 0;
+        for (int i = 0; i < numHidden; i++) {
+            double weightSum = 0;
+            for (int j = 0; j < numInputs + 1; j++) {
+                weightSum += weights[id++] * X[offset + j];
+            }
+            hiddenOutputs[i] = customSigmoid(weightSum);
+        }
+
+        // FORWARD propagation & ERROR SIGNAL(S) for the OUTPUT LAYER
+        double loss = 0;
+        for (int i = 0; i < numOutputs; i++) {
+            double weightSum = 0;
+            for (int j = 0; j < numHidden + 1; j++) {
+                weightSum += weights[id++] * hiddenOutputs[j];
+            }
+            double output = customSigmoid(weightSum);
+            if (i == 0) {
+                loss = Math.pow(output - argValue, 2);
+            }
+            worker.outputErrSigs[i] = derivative(output) * (argValue - output);
+        }
+
+        // ERROR SIGNAL(S) for the HIDDEN LAYER (with the output weights read before this update)
+        for (int i = 0; i < numHidden; i++) {
+            double errorWeightSum = 0;
+            for (int j = 0; j < numOutputs; j++) {
+                errorWeightSum += worker.outputErrSigs[j] * weights[hiddenWeights + j * (numHidden + 1) + i];
+            }
+            worker.hiddenErrSigs[i] = derivative(hiddenOutputs[i]) * errorWeightSum;
+        }
+
+        // Update the WEIGHTS of HIDDEN-TO-OUTPUT LAYER
+        id = hiddenWeights;
+        for (int i = 0; i < numOutputs; i++) {
+            double step = learningRate * worker.outputErrSigs[i];
+            for (int j = 0; j < numHidden + 1; j++) {
+                weights[id++] += step * hiddenOutputs[j];
+            }
+        }
+
+        // Update the WEIGHTS of INPUT-TO-HIDDEN LAYER (skip zero inputs: sparse update)
+        for (int j = 0; j < numInputs + 1; j++) {
+            double x = X[offset + j];
+            if (x == 0) {
+                continue;
+            }
+            for (int i = 0; i < numHidden; i++) {
+                weights[i * (numInputs + 1) + j] += learningRate * worker.hiddenErrSigs[i] * x;
+            }
+        }
+        return loss;
+    }
+
+
+    // Same sigmoid as the NN, bounded by (a, b)
+    private double customSigmoid(double x) {
+        return (b - a) / (1 + Math.exp(-x)) + a;
+    }
+
+
+    // Returns the derivative of the sigmoid for the given sigmoid output (BINARY or BIPOLAR representation)
+    private double derivative(double output) {
+        if (!isBipolar) {
+            return output * (1 - output);
+        }
+        return 0.5 * (1 + output) * (1 - output);
+    }
+
+
+    // Returns the number of worker threads
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+
+    // Stop all worker threads
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
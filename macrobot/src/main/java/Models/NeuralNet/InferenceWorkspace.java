@@ -0,0 +1,18 @@
+package Models.NeuralNet;
+
+import Models.Interface.NeuralNetInterface;
+
+
+/** This class holds the intermediate outputs of one inference on a WeightSnapshot.
+ *  Each thread keeps its own workspace, so inference never writes to shared memory.
+ */
+public final class InferenceWorkspace {
+
+    final double[] hiddenOutputs;           // Outputs of the HIDDEN LAYER (+1 for the bias)
+
+
+    public InferenceWorkspace(int numHidden) {
+        this.hiddenOutputs = new double[numHidden + 1];
+        this.hiddenOutputs[numHidden] = NeuralNetInterface.bias;     // Set Bias output value for the HIDDEN LAYER
+    }
+}
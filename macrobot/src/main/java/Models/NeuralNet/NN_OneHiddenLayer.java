@@ -1,13 +1,16 @@
 package Models.NeuralNet;
 
 import Models.Interface.NeuralNetInterface;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import Tools.RandomInit;
+import Tools.RandomStreams;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import robocode.RobocodeFileWriter;
 
 import java.io.*;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Random;
 
 /** This class only supports 1 HIDDEN LAYER.
  *  The TOTAL NUMBER OF LAYERS should always be 3.
@@ -43,9 +46,21 @@ public class NN_OneHiddenLayer implements NeuralNetInterface{
     public static final double fixedWeightMax = 0.5;    // Fixed maximum ot total layers
     private static final int fixedNumLayers = 3;        // Fixed Number ot total layers = 3
 
+    // Latest published weights, for wait-free inference by other threads
+    private volatile WeightSnapshot published = null;
+    private long snapshotVersion = 0;
+
+    // JSON model file (save & load)
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final String JSON_FORMAT = "NN_OneHiddenLayer";
+    private static final int JSON_VERSION = 1;
+
+    // Random initialization of the weights (seeded from the generator of the creating thread, fixed range by default)
+    private RandomInit weightInit = new RandomInit(RandomStreams.shared().forThread().nextLong());
+    private RandomInit.Scheme weightScheme = null;
+
     // For record
     public ArrayList<String> logRecord = new ArrayList<>();
-    private double[][] currWeights;
 
     public NN_OneHiddenLayer(int setNumIn, int setNumHidden, int setNumOut, double setLearningRate, double setMomentum, double setLB, double setUB, boolean isBipolar) {
         this.argNumInputs = setNumIn;
@@ -102,20 +117,31 @@ public class NN_OneHiddenLayer implements NeuralNetInterface{
      */
     @Override
     public void initialWeightsLayer(int layerIndex, int NumPrevLayer, int NumNextLayer) {
-        // Create a Random object
-        Random random = new Random();
-        // Assigns a random number (within a range) to each weight
+        // Draw all weights of the layer (+1 for bias weight) from the initializer, as one flat buffer
+        double[] weights = new double[NumNextLayer * (NumPrevLayer + 1)];
+        if (this.weightScheme == null) {
+            this.weightInit.uniform(weights, fixedWeightMin, fixedWeightMax);
+        } else {
+            this.weightInit.fill(this.weightScheme, weights, 0, weights.length, NumPrevLayer, NumNextLayer);
+        }
         for (int i = 0; i < NumNextLayer; i++) {
-            for (int j = 0; j < NumPrevLayer + 1; j++) {
-                // This is for Java 17: this.currWeightLayers.get(layerIndex)[i][j] = random.nextDouble(fixedWeightMin, fixedWeightMax);
-                this.currWeightLayers.get(layerIndex)[i][j] = fixedWeightMin + (fixedWeightMax - fixedWeightMin) * random.nextDouble();
-                // Make the PREVIOUS weight layer be the SAME as the CURRENT weight layer
-                this.prevWeightLayers.get(layerIndex)[i][j] = this.currWeightLayers.get(layerIndex)[i][j];
-            }
+            System.arraycopy(weights, i * (NumPrevLayer + 1), this.currWeightLayers.get(layerIndex)[i], 0, NumPrevLayer + 1);
+            // Make the PREVIOUS weight layer be the SAME as the CURRENT weight layer
+            System.arraycopy(weights, i * (NumPrevLayer + 1), this.prevWeightLayers.get(layerIndex)[i], 0, NumPrevLayer + 1);
         }
     }
 
 
+    /** Set the random initializer of the weights (e.g. new RandomInit(seed) for reproducible runs) and its scheme
+     *  (Xavier/He from the fan-in & fan-out of each layer, null for U(fixedWeightMin, fixedWeightMax)).
+     *  Used by the next initializeWeights.
+     */
+    public void setWeightInit(RandomInit init, RandomInit.Scheme scheme) {
+        this.weightInit = init;
+        this.weightScheme = scheme;
+    }
+
+
     /** Initialize weights of ALL CURRENT weight layers to RANDOM VALUES.
      *  ALL PREVIOUS weight layer should be the SAME as ALL CURRENT weight layer
      *  (NO WEIGHT CHANGE at the FIRST training pattern).
@@ -158,6 +184,14 @@ public class NN_OneHiddenLayer implements NeuralNetInterface{
      */
     @Override
     public double outputFor(double [] X) {
+        return outputFor(X, 0);
+    }
+
+
+    /** FORWARD propagation for an input vector stored at "offset" of a larger array
+     *  (e.g. one row of a TrainingSet feature matrix), so no copy of the row is needed.
+     */
+    public double outputFor(double [] X, int offset) {
 
         // Initialize the sum of weights
         double weightSum = 0;
@@ -169,7 +203,7 @@ public class NN_OneHiddenLayer implements NeuralNetInterface{
          */
         for (int i = 0; i < this.argNumHidden; i++) {
             for (int j = 0; j < this.argNumInputs + 1; j++) {
-                weightSum = weightSum + this.currWeightLayers.get(0)[i][j] * X[j];
+                weightSum = weightSum + this.currWeightLayers.get(0)[i][j] * X[offset + j];
             }
             this.outputs.get(0)[i] = this.customSigmoid(weightSum);
             // Must zero the weightSum before calculating the next neuron's output
@@ -204,10 +238,16 @@ public class NN_OneHiddenLayer implements NeuralNetInterface{
      */
     @Override
     public double train(double [] X, double argValue) {
+        return train(X, 0, argValue);
+    }
+
+
+    // TRAINING PROCESS for an input vector stored at "offset" of a larger array
+    public double train(double [] X, int offset, double argValue) {
 
         // Implement FORWARD propagation,
         // get the ACTUAL OUTPUT value by the LUT or NN for this input vector
-        double actualOutput = this.outputFor(X);
+        double actualOutput = this.outputFor(X, offset);
 
         // Calculate the TOTAL ERROR (LOSS) for each pattern in the training set (part of an epoch)
         double loss = Math.pow(actualOutput - argValue, 2);
@@ -254,7 +294,7 @@ public class NN_OneHiddenLayer implements NeuralNetInterface{
         for (int i = 0; i < this.argNumHidden; i++) {
             for (int j = 0; j < this.argNumInputs + 1; j++) {
                 double weight = this.currWeightLayers.get(0)[i][j];
-                weight = weight + this.argMomentumTerm * (this.currWeightLayers.get(0)[i][j] - this.prevWeightLayers.get(0)[i][j]) + this.argLearningRate * this.errSigs.get(1)[i] * X[j];
+                weight = weight + this.argMomentumTerm * (this.currWeightLayers.get(0)[i][j] - this.prevWeightLayers.get(0)[i][j]) + this.argLearningRate * this.errSigs.get(1)[i] * X[offset + j];
                 // Update PREVIOUS & CURRENT WEIGHTS
                 this.prevWeightLayers.get(0)[i][j] = this.currWeightLayers.get(0)[i][j];
                 this.currWeightLayers.get(0)[i][j] = weight;
@@ -265,9 +305,241 @@ public class NN_OneHiddenLayer implements NeuralNetInterface{
     }
 
 
-    // Write the LUT or weights of NN to a file
+    // Returns a new (empty) gradient buffer matching the structure of this NN
+    public GradientBuffer newGradientBuffer() {
+        return new GradientBuffer(this.argNumInputs, this.argNumHidden, this.argNumOutputs);
+    }
+
+
+    /** This method computes the WEIGHT CHANGES of one training pattern WITHOUT updating the weights.
+     *  The weight changes are added to the given buffer, and only the CURRENT WEIGHTS are read,
+     *  so several threads can call this method at the same time (each with its own buffer).
+     *  Returns the TOTAL ERROR (LOSS) for this input vector.
+     *  Steps are the same as "train", but the HIDDEN LAYER error signals use the weights before the update.
+     */
+    public double accumulateGradient(double [] X, double argValue, GradientBuffer buffer) {
+        return accumulateGradient(X, 0, argValue, buffer);
+    }
+
+
+    // Accumulate the WEIGHT CHANGES for an input vector stored at "offset" of a larger array
+    public double accumulateGradient(double [] X, int offset, double argValue, GradientBuffer buffer) {
+
+        // FORWARD propagation for the Input-to-Hidden layer (write into the buffer, not the shared outputs)
+        for (int i = 0; i < this.argNumHidden; i++) {
+            double weightSum = 0;
+            for (int j = 0; j < this.argNumInputs + 1; j++) {
+                weightSum = weightSum + this.currWeightLayers.get(0)[i][j] * X[offset + j];
+            }
+            buffer.hiddenOutputs[i] = this.customSigmoid(weightSum);
+        }
+        // FORWARD propagation for the Hidden-to-Output layer
+        double actualOutput = 0;
+        for (int i = 0; i < this.argNumOutputs; i++) {
+            double weightSum = 0;
+            for (int j = 0; j < this.argNumHidden + 1; j++) {
+                weightSum = weightSum + this.currWeightLayers.get(1)[i][j] * buffer.hiddenOutputs[j];
+            }
+            double output = this.customSigmoid(weightSum);
+            if (i == 0) {
+                actualOutput = output;
+            }
+        }
+
+        // Calculate the TOTAL ERROR (LOSS) for this pattern
+        double loss = Math.pow(actualOutput - argValue, 2);
+
+        // Calculate ERROR SIGNAL(S) for OUTPUT LAYER
+        for (int i = 0; i < this.argNumOutputs; i++) {
+            buffer.outputErrSigs[i] = this.derivative(actualOutput) * (argValue - actualOutput);
+        }
+
+        // Calculate ERROR SIGNAL(S) for HIDDEN LAYER
+        for (int i = 0; i < this.argNumHidden; i++) {
+            double errorWeightSum = 0;
+            for (int j = 0; j < this.argNumOutputs; j++) {
+                errorWeightSum = errorWeightSum + buffer.outputErrSigs[j] * this.currWeightLayers.get(1)[j][i];
+            }
+            buffer.hiddenErrSigs[i] = this.derivative(buffer.hiddenOutputs[i]) * errorWeightSum;
+        }
+
+        // Accumulate the WEIGHT CHANGES of HIDDEN-TO-OUTPUT LAYER
+        for (int i = 0; i < this.argNumOutputs; i++) {
+            for (int j = 0; j < this.argNumHidden + 1; j++) {
+                buffer.outputLayer[i][j] += buffer.outputErrSigs[i] * buffer.hiddenOutputs[j];
+            }
+        }
+        // Accumulate the WEIGHT CHANGES of INPUT-TO-HIDDEN LAYER
+        for (int i = 0; i < this.argNumHidden; i++) {
+            for (int j = 0; j < this.argNumInputs + 1; j++) {
+                buffer.hiddenLayer[i][j] += buffer.hiddenErrSigs[i] * X[offset + j];
+            }
+        }
+
+        buffer.loss += loss;
+        buffer.count++;
+        return loss;
+    }
+
+
+    /** Update ALL weights with the accumulated WEIGHT CHANGES of a buffer (one synchronized update).
+     *  Uses the same rule as "train": momentum term plus learning rate times the (scaled) weight changes.
+     *  Scale is usually 1 / (number of accumulated patterns) to average the batch.
+     */
+    public void applyGradient(GradientBuffer buffer, double scale) {
+        for (int layer = 0; layer < fixedNumLayers - 1; layer++) {
+            double[][] curr = this.currWeightLayers.get(layer);
+            double[][] prev = this.prevWeightLayers.get(layer);
+            double[][] change = (layer == 0) ? buffer.hiddenLayer : buffer.outputLayer;
+            for (int i = 0; i < curr.length; i++) {
+                for (int j = 0; j < curr[i].length; j++) {
+                    double weight = curr[i][j] + this.argMomentumTerm * (curr[i][j] - prev[i][j]) + this.argLearningRate * scale * change[i][j];
+                    // Update PREVIOUS & CURRENT WEIGHTS
+                    prev[i][j] = curr[i][j];
+                    curr[i][j] = weight;
+                }
+            }
+        }
+    }
+
+
+    // Returns a new workspace for batches of up to maxRows patterns matching the structure of this NN
+    public BatchWorkspace newBatchWorkspace(int maxRows) {
+        return new BatchWorkspace(this.argNumInputs, this.argNumHidden, this.argNumOutputs, maxRows);
+    }
+
+
+    /** BATCHED FORWARD propagation of "rows" input vectors stored row by row in X (from offset 0), single-output NNs only.
+     *  The Input-to-Hidden and Hidden-to-Output layers are each one matrix-matrix product over the batch,
+     *  intermediate outputs are kept in the workspace, and the output of each pattern is written to "out".
+     */
+    public void outputsFor(double [] X, int rows, BatchWorkspace workspace, double [] out) {
+        forwardBatch(X, rows, workspace);
+        System.arraycopy(workspace.outputs, 0, out, 0, rows);
+    }
+
+
+    /** BATCHED TRAINING of "rows" input vectors (row by row in X) toward their target values, single-output NNs only.
+     *  All weight changes of the batch are summed, then applied as ONE weight update (averaged over the batch,
+     *  same rule as applyGradient). Returns the TOTAL ERROR (sum of the losses) of the batch.
+     */
+    public double trainBatch(double [] X, double [] targets, int rows, BatchWorkspace workspace) {
+        int numIn = this.argNumInputs + 1;
+        int numHid = this.argNumHidden + 1;
+        forwardBatch(X, rows, workspace);
+
+        // ERROR SIGNAL of the OUTPUT LAYER for each pattern
+        double loss = 0;
+        for (int r = 0; r < rows; r++) {
+            double actualOutput = workspace.outputs[r];
+            loss += Math.pow(actualOutput - targets[r], 2);
+            workspace.outputErrSigs[r] = this.derivative(actualOutput) * (targets[r] - actualOutput);
+        }
+
+        // ERROR SIGNALS of the HIDDEN LAYER for each pattern (with the weights before the update)
+        for (int r = 0; r < rows; r++) {
+            for (int i = 0; i < this.argNumHidden; i++) {
+                double errorWeightSum = 0;
+                for (int j = 0; j < this.argNumOutputs; j++) {
+                    errorWeightSum = errorWeightSum + workspace.outputErrSigs[r] * this.currWeightLayers.get(1)[j][i];
+                }
+                workspace.hiddenErrSigs[r * this.argNumHidden + i] =
+                        this.derivative(workspace.hiddenOutputs[r * numHid + i]) * errorWeightSum;
+            }
+        }
+
+        // WEIGHT CHANGES of both layers (error signals transposed times layer inputs, summed over the batch)
+        GradientBuffer gradient = workspace.gradient;
+        gradient.clear();
+        for (int i = 0; i < this.argNumOutputs; i++) {
+            double[] change = gradient.outputLayer[i];
+            for (int r = 0; r < rows; r++) {
+                double errSig = workspace.outputErrSigs[r];
+                int row = r * numHid;
+                for (int j = 0; j < numHid; j++) {
+                    change[j] += errSig * workspace.hiddenOutputs[row + j];
+                }
+            }
+        }
+        for (int r = 0; r < rows; r++) {
+            int row = r * numIn;
+            for (int i = 0; i < this.argNumHidden; i++) {
+                double errSig = workspace.hiddenErrSigs[r * this.argNumHidden + i];
+                double[] change = gradient.hiddenLayer[i];
+                for (int j = 0; j < numIn; j++) {
+                    change[j] += errSig * X[row + j];
+                }
+            }
+        }
+        gradient.loss = loss;
+        gradient.count = rows;
+
+        // ONE weight update for the whole batch
+        applyGradient(gradient, 1.0 / rows);
+        return loss;
+    }
+
+
+    // BATCHED FORWARD propagation into the workspace (hidden outputs & first output of each pattern)
+    private void forwardBatch(double [] X, int rows, BatchWorkspace workspace) {
+        if (this.argNumOutputs != 1) {
+            throw new IllegalArgumentException("Batched propagation needs ONE output neuron, this NN has " + this.argNumOutputs);
+        }
+        if (rows > workspace.maxRows) {
+            throw new IllegalArgumentException("Batch of " + rows + " rows exceeds the workspace (" + workspace.maxRows + " rows)");
+        }
+        int numIn = this.argNumInputs + 1;
+        int numHid = this.argNumHidden + 1;
+        // Input-to-Hidden layer: (rows x numIn) times the transposed weights (numIn x numHidden)
+        for (int r = 0; r < rows; r++) {
+            int row = r * numIn;
+            for (int i = 0; i < this.argNumHidden; i++) {
+                double[] weights = this.currWeightLayers.get(0)[i];
+                double weightSum = 0;
+                for (int j = 0; j < numIn; j++) {
+                    weightSum = weightSum + weights[j] * X[row + j];
+                }
+                workspace.hiddenOutputs[r * numHid + i] = this.customSigmoid(weightSum);
+            }
+        }
+        // Hidden-to-Output layer (first output neuron, same as outputFor)
+        double[] weights = this.currWeightLayers.get(1)[0];
+        for (int r = 0; r < rows; r++) {
+            int row = r * numHid;
+            double weightSum = 0;
+            for (int j = 0; j < numHid; j++) {
+                weightSum = weightSum + weights[j] * workspace.hiddenOutputs[row + j];
+            }
+            workspace.outputs[r] = this.customSigmoid(weightSum);
+        }
+    }
+
+
+    // Returns the derivative of the sigmoid for the given sigmoid output (BINARY or BIPOLAR representation)
+    private double derivative(double output) {
+        if (!this.argIsBipolar) {
+            return output * (1 - output);
+        }
+        return 0.5 * (1 + output) * (1 - output);
+    }
+
+
+    /** Write the NN to a JSON file (see writeJson): topology, hyperparameters, CURRENT & PREVIOUS weights.
+     *  The training log (logRecord) is written by saveLog.
+     */
     @Override
     public void save(File argFile) {
+        try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(argFile))) {
+            writeJson(stream);
+        }
+        catch(IOException e){
+            System.out.println("*** Could not save the NN to " + argFile.getName() + ": " + e.getMessage());
+        }
+    }
+
+
+    // Write the training log (logRecord) to a file, one record per line
+    public void saveLog(File argFile) {
 
         // Initialize new file
         PrintStream file = null;
@@ -287,58 +559,367 @@ public class NN_OneHiddenLayer implements NeuralNetInterface{
     }
 
 
-    /** Load the LUT or weights of NN from file.
-     *  The load must have knowledge of how the data was written out by the save method.
-     *  LUT or NN structure will be checked whether matching the data in the file.
+    /** Load the NN from a JSON file written by the save method.
+     *  The NN structure, hyperparameters and representation are checked against this NN,
+     *  the weights are kept if the file does not match.
      */
     @Override
     public void load(String argFileName) throws IOException {
-        // Deserialize JSON file into Java object
-        File file = new File(argFileName);
-        ObjectMapper objMapper = new ObjectMapper();
-        NN_OneHiddenLayer nnLoader = objMapper.readValue(file, NN_OneHiddenLayer.class);
-        // Check whether the NN settings are identical
-        if (nnLoader.argNumInputs != this.argNumInputs || nnLoader.argNumHidden != this.argNumHidden || nnLoader.argNumOutputs != this.argNumOutputs) {
-            throw new IOException("NN structure does not match, please check the numbers of input/hidden/output neurons!");
+        try (InputStream stream = new BufferedInputStream(new FileInputStream(argFileName))) {
+            readJson(stream);
         }
-        if (nnLoader.argLearningRate != this.argLearningRate || nnLoader.argMomentumTerm != this.argMomentumTerm) {
-            throw new IOException("Hyper-parameters do not match, please check the learning rate and momentum term!");
+    }
+
+
+    /** Write the NN as JSON with the Jackson streaming generator (the stream is not closed):
+     *  { "format": "NN_OneHiddenLayer", "version": 1,
+     *    "topology": { "inputs", "hidden", "outputs" },
+     *    "hyperparameters": { "learningRate", "momentum", "lowerBound", "upperBound", "bipolar" },
+     *    "weights": [ layer 0 rows, layer 1 rows ], "previousWeights": [ same layout ] }
+     *  Each layer is an array of rows, each row holds the weights of one neuron (bias weight last).
+     */
+    public void writeJson(OutputStream stream) throws IOException {
+        JsonGenerator generator = JSON.createGenerator(stream);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.useDefaultPrettyPrinter();
+        generator.writeStartObject();
+        generator.writeStringField("format", JSON_FORMAT);
+        generator.writeNumberField("version", JSON_VERSION);
+
+        generator.writeObjectFieldStart("topology");
+        generator.writeNumberField("inputs", this.argNumInputs);
+        generator.writeNumberField("hidden", this.argNumHidden);
+        generator.writeNumberField("outputs", this.argNumOutputs);
+        generator.writeEndObject();
+
+        generator.writeObjectFieldStart("hyperparameters");
+        generator.writeNumberField("learningRate", this.argLearningRate);
+        generator.writeNumberField("momentum", this.argMomentumTerm);
+        generator.writeNumberField("lowerBound", this.argA);
+        generator.writeNumberField("upperBound", this.argB);
+        generator.writeBooleanField("bipolar", this.argIsBipolar);
+        generator.writeEndObject();
+
+        writeJsonLayers(generator, "weights", this.currWeightLayers);
+        writeJsonLayers(generator, "previousWeights", this.prevWeightLayers);
+        generator.writeEndObject();
+        generator.close();
+    }
+
+
+    private static void writeJsonLayers(JsonGenerator generator, String name, ArrayList<double [][]> layers) throws IOException {
+        generator.writeArrayFieldStart(name);
+        for (double[][] layer : layers) {
+            generator.writeStartArray();
+            for (double[] row : layer) {
+                generator.writeArray(row, 0, row.length);
+            }
+            generator.writeEndArray();
         }
-        if (nnLoader.argIsBipolar != this.argIsBipolar) {
-            throw new IOException("Representation does not match, please check the representation form again");
+        generator.writeEndArray();
+    }
+
+
+    /** Read a NN written by writeJson with the Jackson streaming parser (no object tree, the stream is not closed).
+     *  The weights are parsed into flat buffers and applied only when the whole file matches this NN.
+     *  Without "previousWeights" the PREVIOUS weights are set to the CURRENT weights (no momentum).
+     */
+    public void readJson(InputStream stream) throws IOException {
+        double[] weights = new double[getNumWeights()];
+        double[] previousWeights = null;
+        boolean hasTopology = false;
+        boolean hasWeights = false;
+        try (JsonParser parser = JSON.createParser(stream)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "format":
+                        if (!JSON_FORMAT.equals(parser.getValueAsString())) {
+                            throw new IOException("Not a " + JSON_FORMAT + " file: " + parser.getText());
+                        }
+                        break;
+                    case "version":
+                        if (parser.getIntValue() != JSON_VERSION) {
+                            throw new IOException("Unsupported NN file version " + parser.getText());
+                        }
+                        break;
+                    case "topology":
+                        readJsonTopology(parser, token);
+                        hasTopology = true;
+                        break;
+                    case "hyperparameters":
+                        readJsonHyperparameters(parser, token);
+                        break;
+                    case "weights":
+                        readJsonLayers(parser, token, weights);
+                        hasWeights = true;
+                        break;
+                    case "previousWeights":
+                        previousWeights = new double[getNumWeights()];
+                        readJsonLayers(parser, token, previousWeights);
+                        break;
+                    default:
+                        parser.skipChildren();      // Unknown field (e.g. notes added by hand)
+                        break;
+                }
+            }
+        }
+        if (!hasTopology || !hasWeights) {
+            throw new IOException("The NN file has no " + (hasTopology ? "weights" : "topology"));
+        }
+        setWeights(weights);
+        if (previousWeights != null) {
+            setPrevWeights(previousWeights);
         }
-        // Apply the weights of the loaded LUT or NN for further NN training
-        this.currWeightLayers = nnLoader.currWeightLayers;
     }
 
 
-    // Save NN weights
-    public void saveWeights(File file) {
-        // Initialize the parameters
-        String[] weights = new String[2];
-        int i = 0;
-        int currLayerNum;
-        // Save the NN weight for each layer
-        for (currLayerNum = 0; currLayerNum != 2; currLayerNum++) {
-            String weight = "";
-            for (int j = 0; j < this.argNumHidden; j++) {
-                for (int k = 0; k < this.argNumInputs + 1; k++) {
-                    weight += currWeights[k][j] + "-";
+    // Check whether the NN settings are identical
+    private void readJsonTopology(JsonParser parser, JsonToken token) throws IOException {
+        expect(parser, token, JsonToken.START_OBJECT);
+        int numInputs = -1, numHidden = -1, numOutputs = -1;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "inputs": numInputs = parser.getIntValue(); break;
+                case "hidden": numHidden = parser.getIntValue(); break;
+                case "outputs": numOutputs = parser.getIntValue(); break;
+                default: parser.skipChildren(); break;
+            }
+        }
+        if (numInputs != this.argNumInputs || numHidden != this.argNumHidden || numOutputs != this.argNumOutputs) {
+            throw new IOException("NN structure does not match, please check the numbers of input/hidden/output neurons!");
+        }
+    }
+
+
+    private void readJsonHyperparameters(JsonParser parser, JsonToken token) throws IOException {
+        expect(parser, token, JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "learningRate":
+                    if (parser.getDoubleValue() != this.argLearningRate) {
+                        throw new IOException("Hyper-parameters do not match, please check the learning rate and momentum term!");
+                    }
+                    break;
+                case "momentum":
+                    if (parser.getDoubleValue() != this.argMomentumTerm) {
+                        throw new IOException("Hyper-parameters do not match, please check the learning rate and momentum term!");
+                    }
+                    break;
+                case "bipolar":
+                    if (parser.getBooleanValue() != this.argIsBipolar) {
+                        throw new IOException("Representation does not match, please check the representation form again");
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+    }
+
+
+    // Parse the layers of rows into a flat array (same layout as getWeights), checking the shape of each layer
+    private void readJsonLayers(JsonParser parser, JsonToken token, double[] flat) throws IOException {
+        expect(parser, token, JsonToken.START_ARRAY);
+        int id = 0;
+        for (int layer = 0; layer < fixedNumLayers - 1; layer++) {
+            double[][] shape = this.currWeightLayers.get(layer);
+            expect(parser, parser.nextToken(), JsonToken.START_ARRAY);
+            for (double[] row : shape) {
+                expect(parser, parser.nextToken(), JsonToken.START_ARRAY);
+                for (int j = 0; j < row.length; j++) {
+                    JsonToken value = parser.nextToken();
+                    if (value != JsonToken.VALUE_NUMBER_FLOAT && value != JsonToken.VALUE_NUMBER_INT) {
+                        throw new IOException("NN structure does not match, " + row.length + " weights expected in each row of layer " + layer
+                                + " but " + value + " encountered at " + parser.getCurrentLocation());
+                    }
+                    flat[id++] = parser.getDoubleValue();
                 }
+                expect(parser, parser.nextToken(), JsonToken.END_ARRAY);
             }
-            for (int j = 0; j < this.argNumOutputs; j++) {
-                for (int k = 0; k < this.argNumHidden + 1; k++) {
-                    weight += currWeights[k][j] + "-";
+            expect(parser, parser.nextToken(), JsonToken.END_ARRAY);
+        }
+        expect(parser, parser.nextToken(), JsonToken.END_ARRAY);
+    }
+
+
+    private static void expect(JsonParser parser, JsonToken token, JsonToken expected) throws IOException {
+        if (token != expected) {
+            throw new IOException("NN file: " + expected + " expected but " + token + " encountered at " + parser.getCurrentLocation());
+        }
+    }
+
+
+    // Structure of the NN, for trainers working on a flat copy of the weights (e.g. HogwildTrainer)
+    int getNumInputs() {
+        return this.argNumInputs;
+    }
+
+    int getNumHidden() {
+        return this.argNumHidden;
+    }
+
+    int getNumOutputs() {
+        return this.argNumOutputs;
+    }
+
+    double getLearningRate() {
+        return this.argLearningRate;
+    }
+
+    double getLowerBound() {
+        return this.argA;
+    }
+
+    double getUpperBound() {
+        return this.argB;
+    }
+
+    boolean isBipolar() {
+        return this.argIsBipolar;
+    }
+
+
+    // Returns the total number of weights (including bias weights) of ALL weight layers
+    public int getNumWeights() {
+        return this.argNumHidden * (this.argNumInputs + 1) + this.argNumOutputs * (this.argNumHidden + 1);
+    }
+
+
+    /** Copy ALL CURRENT weights into a flat array (INPUT-TO-HIDDEN rows first, then HIDDEN-TO-OUTPUT rows).
+     *  The array length must be getNumWeights().
+     */
+    public void getWeights(double[] flat) {
+        int id = 0;
+        for (int layer = 0; layer < fixedNumLayers - 1; layer++) {
+            for (double[] row : this.currWeightLayers.get(layer)) {
+                System.arraycopy(row, 0, flat, id, row.length);
+                id += row.length;
+            }
+        }
+    }
+
+
+    /** Replace ALL CURRENT weights with a flat array (same layout as getWeights).
+     *  PREVIOUS weights are set to the SAME values (NO momentum carried over).
+     */
+    public void setWeights(double[] flat) {
+        if (flat.length != getNumWeights()) {
+            throw new IllegalArgumentException("Expected " + getNumWeights() + " weights but " + flat.length + " encountered");
+        }
+        int id = 0;
+        for (int layer = 0; layer < fixedNumLayers - 1; layer++) {
+            double[][] curr = this.currWeightLayers.get(layer);
+            double[][] prev = this.prevWeightLayers.get(layer);
+            for (int i = 0; i < curr.length; i++) {
+                System.arraycopy(flat, id, curr[i], 0, curr[i].length);
+                System.arraycopy(flat, id, prev[i], 0, prev[i].length);
+                id += curr[i].length;
+            }
+        }
+    }
+
+
+    // Copy ALL PREVIOUS weights (momentum state) into a flat array (same layout as getWeights)
+    public void getPrevWeights(double[] flat) {
+        int id = 0;
+        for (int layer = 0; layer < fixedNumLayers - 1; layer++) {
+            for (double[] row : this.prevWeightLayers.get(layer)) {
+                System.arraycopy(row, 0, flat, id, row.length);
+                id += row.length;
+            }
+        }
+    }
+
+
+    // Replace ALL PREVIOUS weights (momentum state) with a flat array (call after setWeights)
+    public void setPrevWeights(double[] flat) {
+        if (flat.length != getNumWeights()) {
+            throw new IllegalArgumentException("Expected " + getNumWeights() + " weights but " + flat.length + " encountered");
+        }
+        int id = 0;
+        for (int layer = 0; layer < fixedNumLayers - 1; layer++) {
+            for (double[] row : this.prevWeightLayers.get(layer)) {
+                System.arraycopy(flat, id, row, 0, row.length);
+                id += row.length;
+            }
+        }
+    }
+
+
+    /** Publish an immutable copy of the CURRENT weights (copy-on-write).
+     *  Only the training thread should call this; the new snapshot becomes visible to all
+     *  other threads through one volatile write, and older snapshots stay valid for their readers.
+     */
+    public WeightSnapshot publishSnapshot() {
+        double[] flat = new double[getNumWeights()];
+        getWeights(flat);
+        WeightSnapshot snapshot = new WeightSnapshot(this.argNumInputs, this.argNumHidden, this.argNumOutputs,
+                this.argA, this.argB, flat, ++this.snapshotVersion);
+        this.published = snapshot;
+        return snapshot;
+    }
+
+
+    // Returns the latest published snapshot (any thread), null if nothing has been published yet
+    public WeightSnapshot getSnapshot() {
+        return this.published;
+    }
+
+
+    // Write the CURRENT weights of each layer as one line (weights separated by ", ")
+    public void writeWeights(Writer writer) throws IOException {
+        for (int layer = 0; layer < fixedNumLayers - 1; layer++) {
+            StringBuilder line = new StringBuilder();
+            for (double[] row : this.currWeightLayers.get(layer)) {
+                for (double weight : row) {
+                    if (line.length() > 0) {
+                        line.append(", ");
+                    }
+                    line.append(weight);
                 }
             }
-            weights[i] = weight;
-            i++;
+            writer.write(line + "\r\n");
         }
-        // Get the weights and save it to file
-        try{
+        writer.flush();
+    }
+
+
+    // Read the CURRENT weights of each layer written by writeWeights, and check the NN structure
+    public void readWeights(BufferedReader reader) throws IOException {
+        double[] flat = new double[getNumWeights()];
+        int id = 0;
+        for (int layer = 0; layer < fixedNumLayers - 1; layer++) {
+            String line = reader.readLine();
+            if (line == null) {
+                throw new IOException("Missing weights of layer " + layer);
+            }
+            String[] tokens = line.split(", ");
+            int expected = (layer == 0) ? this.argNumHidden * (this.argNumInputs + 1) : this.argNumOutputs * (this.argNumHidden + 1);
+            if (tokens.length != expected) {
+                throw new IOException("NN structure does not match, " + expected + " weights expected but " + tokens.length + " encountered in layer " + layer);
+            }
+            for (String token : tokens) {
+                flat[id++] = Double.parseDouble(token);
+            }
+        }
+        setWeights(flat);
+    }
+
+
+    // Save NN weights
+    public void saveWeights(File file) {
+        try {
             RobocodeFileWriter weightsWriter = new RobocodeFileWriter(file.getAbsolutePath(), false);
-            weightsWriter.write(weights[0] + "\r\n");
-            weightsWriter.write(weights[1] + "\r\n");
+            writeWeights(weightsWriter);
             weightsWriter.close();
         }
         catch(Exception e){
@@ -346,55 +927,19 @@ public class NN_OneHiddenLayer implements NeuralNetInterface{
         }
     }
 
-    // Load NN weights
+
+    // Load NN weights (keeps the current weights if the file is missing or does not match)
     public void loadWeights(File file) {
-        // Initialize the parameters
-        String[] weights = new String[2];
-        // Load the NN weight for each layer
         try {
             BufferedReader reader = new BufferedReader(new FileReader(file.getAbsoluteFile()));
-            for(int i = 0; i < 2; i++) {
-                try {
-                    weights[i] = reader.readLine();
-                    System.out.println(weights[i]);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+            try {
+                readWeights(reader);
+            } finally {
+                reader.close();
             }
-            reader.close();
         } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        int i = 0;
-        int currLayerNum;
-
-        for(currLayerNum = 0; currLayerNum != 2; currLayerNum++) {
-            String[] weight = Arrays.stream(weights[i].split("-")).filter(e -> e.trim().length() > 0).toArray(String[]::new);
-            int id = 0;
-            // Get the current weights for each layer
-            if (currLayerNum == 0) {
-                for (int j = 0; j < this.argNumHidden; j++) {
-                    for (int k = 0; k < this.argNumInputs + 1; k++) {
-                        currWeights[k][j] = Double.valueOf(weight[id]);
-                        // Show the weights
-                        System.out.print(currWeights[k][j] + "-");
-                        id++;
-                    }
-                }
-            } else if (currLayerNum == 1) {
-                for (int j = 0; j < this.argNumOutputs; j++) {
-                    for (int k = 0; k < this.argNumHidden + 1; k++) {
-                        currWeights[k][j] = Double.valueOf(weight[id]);
-                        // Show the weights
-                        System.out.print(currWeights[k][j] + "-");
-                        id++;
-                    }
-                }
-            }
-            System.out.println();
+            System.out.println("*** Could not load NN weights from " + file.getName() + ": " + e.getMessage());
         }
-        i++;
     }
 
 }
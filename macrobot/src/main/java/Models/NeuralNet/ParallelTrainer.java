@@ -0,0 +1,113 @@
+package Models.NeuralNet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/** This class implements DATA-PARALLEL training for a NN_OneHiddenLayer.
+ *  Each batch of training patterns is split into one contiguous shard per worker thread.
+ *  Each worker accumulates the weight changes of its shard into its own GradientBuffer,
+ *  then the buffers are combined by a fixed-order tree reduce before ONE synchronized weight update.
+ *  Shards and reduce order only depend on the number of threads,
+ *  so the results are identical for every run with the same number of threads.
+ */
+public class ParallelTrainer {
+
+    private final NN_OneHiddenLayer nn;         // The NN to train
+    private final int numThreads;               // Number of worker threads (one shard per thread)
+    private final int batchSize;                // Number of training patterns for each weight update
+    private final GradientBuffer[] buffers;     // One gradient buffer for each worker thread
+    private final ExecutorService workers;      // Worker threads
+
+
+    public ParallelTrainer(NN_OneHiddenLayer nn, int numThreads, int batchSize) {
+        if (numThreads < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Number of threads and batch size must be at least 1");
+        }
+        this.nn = nn;
+        this.numThreads = numThreads;
+        this.batchSize = batchSize;
+        this.buffers = new GradientBuffer[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            this.buffers[t] = nn.newGradientBuffer();
+        }
+        // Daemon threads, so the JVM can exit even if shutdown() is not called
+        this.workers = Executors.newFixedThreadPool(numThreads, runnable -> {
+            Thread thread = new Thread(runnable, "nn-trainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /** Train the NN on all rows of the training set once (one epoch).
+     *  Rows are used in their current order, one weight update for each batch.
+     *  Returns the TOTAL ERROR (sum of the losses) of this epoch.
+     */
+    public double trainEpoch(TrainingSet set) {
+        double totalLoss = 0;
+        for (int start = 0; start < set.size(); start += batchSize) {
+            int end = Math.min(start + batchSize, set.size());
+            GradientBuffer batch = computeBatch(set, start, end);
+            nn.applyGradient(batch, 1.0 / batch.getCount());
+            totalLoss += batch.getLoss();
+        }
+        return totalLoss;
+    }
+
+
+    // Compute the weight changes of one batch [start, end) with all workers, and return the reduced buffer
+    private GradientBuffer computeBatch(TrainingSet set, int start, int end) {
+        double[] features = set.getFeatures();
+        List<Callable<Void>> tasks = new ArrayList<>(numThreads);
+        int size = end - start;
+        for (int t = 0; t < numThreads; t++) {
+            // Contiguous shard [shardStart, shardEnd) for each worker
+            int shardStart = start + (int) ((long) size * t / numThreads);
+            int shardEnd = start + (int) ((long) size * (t + 1) / numThreads);
+            GradientBuffer buffer = buffers[t];
+            tasks.add(() -> {
+                buffer.clear();
+                for (int i = shardStart; i < shardEnd; i++) {
+                    nn.accumulateGradient(features, set.offsetOf(i), set.getTarget(i), buffer);
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : workers.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("NN training was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("NN training worker failed", e.getCause());
+        }
+
+        // Tree reduce with a fixed order: (0+1), (2+3), ... then (0+2), ... until all sums are in buffer 0
+        for (int stride = 1; stride < numThreads; stride *= 2) {
+            for (int t = 0; t + stride < numThreads; t += 2 * stride) {
+                buffers[t].add(buffers[t + stride]);
+            }
+        }
+        return buffers[0];
+    }
+
+
+    // Returns the number of worker threads
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+
+    // Stop all worker threads
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,157 @@
+package Models.NeuralNet;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+
+
+/** This class drives the epoch loop of a NN_OneHiddenLayer training.
+ *  The loop stops when one of these happens:
+ *  1. CONVERGED: the epoch error reaches the target error
+ *  2. PLATEAU: the best error has not improved by more than minDelta for "patience" epochs
+ *  3. MAX EPOCHS: the epoch guard is reached (a diverging run always stops)
+ *  The weights of the best epoch are kept in memory (and optionally checkpointed to a file),
+ *  and are restored into the NN when the loop stops.
+ */
+public class TrainingLoop {
+
+    // Reasons for the training loop to stop
+    public enum StopReason {converged, plateau, maxEpochs}
+
+    // One epoch of training, returns the error of this epoch
+    public interface Epoch {
+        double train(int epoch);
+    }
+
+    private final NN_OneHiddenLayer nn;         // The NN to train
+    private final int maxEpochs;                // Epoch guard
+    private final int patience;                 // Epochs without improvement before stopping (0 to disable)
+    private final double minDelta;              // Minimum decrease of the error to count as improvement
+    private final double targetError;           // Error to stop at (converged)
+
+    private File checkpointFile = null;         // Best weights are written here (null for no checkpoint)
+    private int checkpointInterval = 10;        // Minimum epochs between two checkpoint writes
+    private PrintStream metrics = null;         // Per-epoch metrics are written here (null for no metrics)
+
+    // Results of the last run
+    private final double[] bestWeights;
+    private double bestError;
+    private int bestEpoch;
+    private int epochs;
+    private StopReason stopReason;
+
+
+    public TrainingLoop(NN_OneHiddenLayer nn, int maxEpochs, int patience, double minDelta, double targetError) {
+        if (maxEpochs < 1 || patience < 0) {
+            throw new IllegalArgumentException("Max epochs must be at least 1 and patience must not be negative");
+        }
+        this.nn = nn;
+        this.maxEpochs = maxEpochs;
+        this.patience = patience;
+        this.minDelta = minDelta;
+        this.targetError = targetError;
+        this.bestWeights = new double[nn.getNumWeights()];
+    }
+
+
+    // Write the best weights to this file while training (and when the loop stops)
+    public void setCheckpoint(File checkpointFile, int checkpointInterval) {
+        this.checkpointFile = checkpointFile;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+
+    /** Write one CSV line of metrics for each epoch:
+     *  epoch, error, best error, best epoch, elapsed milliseconds
+     */
+    public void setMetrics(PrintStream metrics) {
+        this.metrics = metrics;
+        metrics.println("epoch, error, bestError, bestEpoch, elapsedMs");
+    }
+
+
+    // Run the training loop, and return the reason for stopping
+    public StopReason run(Epoch epoch) {
+        long startTime = System.currentTimeMillis();
+        int lastCheckpoint = 0;
+        bestError = Double.MAX_VALUE;
+        bestEpoch = 0;
+        stopReason = StopReason.maxEpochs;
+
+        for (epochs = 1; epochs <= maxEpochs; epochs++) {
+            double error = epoch.train(epochs);
+
+            // Keep the weights of the best epoch
+            if (error < bestError - minDelta || (error <= targetError && error < bestError)) {
+                bestError = error;
+                bestEpoch = epochs;
+                nn.getWeights(bestWeights);
+                if (checkpointFile != null && epochs - lastCheckpoint >= checkpointInterval) {
+                    writeCheckpoint();
+                    lastCheckpoint = epochs;
+                }
+            }
+            if (metrics != null) {
+                metrics.printf("%d, %s, %s, %d, %d%n", epochs, error, bestError, bestEpoch, System.currentTimeMillis() - startTime);
+            }
+
+            // Check whether to stop
+            if (error <= targetError) {
+                stopReason = StopReason.converged;
+                break;
+            }
+            if (patience > 0 && epochs - bestEpoch >= patience) {
+                stopReason = StopReason.plateau;
+                break;
+            }
+        }
+        epochs = Math.min(epochs, maxEpochs);
+
+        // Restore the best weights and write the final checkpoint
+        if (bestEpoch > 0) {
+            nn.setWeights(bestWeights);
+            if (checkpointFile != null && lastCheckpoint != bestEpoch) {
+                writeCheckpoint();
+            }
+        }
+        if (metrics != null) {
+            metrics.flush();
+        }
+        return stopReason;
+    }
+
+
+    // Write the CURRENT weights of the NN (only called when they are the best weights) to the checkpoint file
+    private void writeCheckpoint() {
+        try (FileWriter writer = new FileWriter(checkpointFile, false)) {
+            nn.writeWeights(writer);
+        } catch (IOException e) {
+            System.out.println("*** Could not write the checkpoint file: " + e.getMessage());
+        }
+    }
+
+
+    // Returns the best (lowest) error of the last run
+    public double getBestError() {
+        return bestError;
+    }
+
+
+    // Returns the epoch of the best error of the last run
+    public int getBestEpoch() {
+        return bestEpoch;
+    }
+
+
+    // Returns the number of epochs of the last run
+    public int getEpochs() {
+        return epochs;
+    }
+
+
+    // Returns the reason the last run stopped
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+}
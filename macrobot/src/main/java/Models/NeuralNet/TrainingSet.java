@@ -0,0 +1,88 @@
+package Models.NeuralNet;
+
+import java.util.Random;
+
+
+/** This class holds a prepared (already normalized) training set for NN training.
+ *  All input vectors are stored row by row in ONE contiguous feature matrix (rows * cols),
+ *  with one target value for each row, so trainers can read a row by its offset without any copy.
+ *  The set is built once and can be shuffled in place before each epoch.
+ */
+public class TrainingSet {
+
+    private final double[] features;        // Feature matrix, row i starts at offset i * cols
+    private final double[] targets;         // Target value of each row
+    private final int rows;                 // Number of training patterns
+    private final int cols;                 // Length of each input vector (including the bias input)
+    private int size = 0;                   // Number of rows added so far
+    private final double[] swapRow;         // Scratch row for shuffling
+
+
+    public TrainingSet(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.features = new double[rows * cols];
+        this.targets = new double[rows];
+        this.swapRow = new double[cols];
+    }
+
+
+    // Append one row (input vector & target value), returns the index of the row
+    public int add(double[] X, double target) {
+        if (X.length != cols) {
+            throw new IllegalArgumentException("Expected " + cols + " columns but " + X.length + " encountered");
+        }
+        if (size == rows) {
+            throw new IllegalStateException("Training set is full (" + rows + " rows)");
+        }
+        System.arraycopy(X, 0, features, size * cols, cols);
+        targets[size] = target;
+        return size++;
+    }
+
+
+    // Shuffle the rows in place (Fisher-Yates), features and targets stay paired
+    public void shuffle(Random random) {
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            // Swap the input vectors
+            System.arraycopy(features, i * cols, swapRow, 0, cols);
+            System.arraycopy(features, j * cols, features, i * cols, cols);
+            System.arraycopy(swapRow, 0, features, j * cols, cols);
+            // Swap the targets
+            double target = targets[i];
+            targets[i] = targets[j];
+            targets[j] = target;
+        }
+    }
+
+
+    // Returns the feature matrix (row i starts at offsetOf(i))
+    public double[] getFeatures() {
+        return features;
+    }
+
+
+    // Returns the offset of row i in the feature matrix
+    public int offsetOf(int i) {
+        return i * cols;
+    }
+
+
+    // Returns the target value of row i
+    public double getTarget(int i) {
+        return targets[i];
+    }
+
+
+    // Returns the number of rows added so far
+    public int size() {
+        return size;
+    }
+
+
+    // Returns the length of each input vector
+    public int getCols() {
+        return cols;
+    }
+}
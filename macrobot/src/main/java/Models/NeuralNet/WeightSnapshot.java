@@ -0,0 +1,94 @@
+package Models.NeuralNet;
+
+
+/** This class is an IMMUTABLE copy of all weights of a NN_OneHiddenLayer at one point of training.
+ *  It is published by the trainer through a single volatile reference swap (NN_OneHiddenLayer.publishSnapshot),
+ *  so any number of threads can run inference on it wait-free while the NN keeps learning.
+ *  Intermediate outputs are written into a per-thread InferenceWorkspace, never into the snapshot.
+ *  Weights are flat: INPUT-TO-HIDDEN rows first (+1 bias weight each), then HIDDEN-TO-OUTPUT rows.
+ */
+public final class WeightSnapshot {
+
+    private final int numInputs;            // The number of inputs (bias input not included)
+    private final int numHidden;            // The number of hidden neurons
+    private final int numOutputs;           // The number of output neurons
+    private final double a;                 // Lower bound of the sigmoid
+    private final double b;                 // Upper bound of the sigmoid
+    private final double[] weights;         // Flat weights (never modified after construction)
+    private final long version;             // Publish counter of the NN
+
+
+    // The weights array is owned by the snapshot (callers must not keep or modify it)
+    WeightSnapshot(int numInputs, int numHidden, int numOutputs, double a, double b, double[] weights, long version) {
+        this.numInputs = numInputs;
+        this.numHidden = numHidden;
+        this.numOutputs = numOutputs;
+        this.a = a;
+        this.b = b;
+        this.weights = weights;
+        this.version = version;
+    }
+
+
+    // Returns a new workspace for one thread to run inference on snapshots of this structure
+    public InferenceWorkspace newWorkspace() {
+        return new InferenceWorkspace(numHidden);
+    }
+
+
+    // FORWARD propagation of the input vector X (only the first output neuron is returned, same as the NN)
+    public double outputFor(double[] X, InferenceWorkspace workspace) {
+        return outputFor(X, 0, workspace);
+    }
+
+
+    // FORWARD propagation of the input vector stored at "offset" of a larger array
+    public double outputFor(double[] X, int offset, InferenceWorkspace workspace) {
+        double[] hiddenOutputs = workspace.hiddenOutputs;
+        int id = 0;
+        // Input-to-Hidden layer
+        for (int i = 0; i < numHidden; i++) {
+            double weightSum = 0;
+            for (int j = 0; j < numInputs + 1; j++) {
+                weightSum += weights[id++] * X[offset + j];
+            }
+            hiddenOutputs[i] = customSigmoid(weightSum);
+        }
+        // Hidden-to-Output layer (first output neuron)
+        double weightSum = 0;
+        for (int j = 0; j < numHidden + 1; j++) {
+            weightSum += weights[id++] * hiddenOutputs[j];
+        }
+        return customSigmoid(weightSum);
+    }
+
+
+    // Same sigmoid as the NN, bounded by (a, b)
+    private double customSigmoid(double x) {
+        return (b - a) / (1 + Math.exp(-x)) + a;
+    }
+
+
+    // Copy the weights into a flat array (same layout as NN_OneHiddenLayer.getWeights)
+    public void copyWeights(double[] flat) {
+        System.arraycopy(weights, 0, flat, 0, weights.length);
+    }
+
+
+    // Returns the total number of weights
+    public int getNumWeights() {
+        return weights.length;
+    }
+
+
+    // Returns the publish counter of this snapshot (higher is newer)
+    public long getVersion() {
+        return version;
+    }
+
+
+    // Returns the number of output neurons
+    public int getNumOutputs() {
+        return numOutputs;
+    }
+}
@@ -0,0 +1,128 @@
+package Models.ParameterServer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+
+/** This class is the WORKER side of the ParameterServer (one TCP connection, blocking calls).
+ *  A worker keeps the version of its last pull, and pushes the weight deltas it trained since then.
+ *  Deltas are sent as floats (half the frame size, plenty of precision for small weight changes).
+ *  Not thread-safe: each worker thread owns its own client.
+ */
+public class ParameterClient implements Closeable {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private long lastVersion = 0;           // Version returned by the last request
+
+
+    public ParameterClient(Socket socket) throws IOException {
+        this.socket = socket;
+        this.socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+
+    // Connect to a parameter server on this machine
+    public static ParameterClient connect(int port) throws IOException {
+        return new ParameterClient(new Socket(InetAddress.getLoopbackAddress(), port));
+    }
+
+
+    // Connect to a parameter server on another machine
+    public static ParameterClient connect(String host, int port) throws IOException {
+        return new ParameterClient(new Socket(host, port));
+    }
+
+
+    // Offer the initial weights of a model (ignored if the server already has weights), returns the version
+    public long init(int model, double[] weights) throws IOException {
+        writeHeader(ParameterProtocol.OP_INIT, model, 0, weights.length);
+        for (double weight : weights) {
+            out.writeDouble(weight);
+        }
+        out.flush();
+        return readStatus() == ParameterProtocol.STATUS_OK ? lastVersion : -1;
+    }
+
+
+    // Copy the current weights of a model into "weights", returns their version
+    public long pull(int model, double[] weights) throws IOException {
+        writeHeader(ParameterProtocol.OP_PULL, model, 0, 0);
+        out.flush();
+        byte status = in.readByte();
+        lastVersion = in.readLong();
+        int n = in.readInt();
+        if (status != ParameterProtocol.STATUS_OK || n != weights.length) {
+            skipValues(n);
+            throw new IOException("Expected " + weights.length + " weights but " + n + " encountered (status " + status + ")");
+        }
+        for (int i = 0; i < n; i++) {
+            weights[i] = in.readDouble();
+        }
+        return lastVersion;
+    }
+
+
+    /** Push the weight deltas of a model trained since the pull of "baseVersion".
+     *  Returns true if the server applied them, false if they were too stale (pull again and drop them).
+     */
+    public boolean push(int model, long baseVersion, double[] deltas) throws IOException {
+        writeHeader(ParameterProtocol.OP_PUSH, model, baseVersion, deltas.length);
+        for (double delta : deltas) {
+            out.writeFloat((float) delta);
+        }
+        out.flush();
+        byte status = readStatus();
+        if (status == ParameterProtocol.STATUS_ERROR) {
+            throw new IOException("Push of model " + model + " rejected by the parameter server");
+        }
+        return status == ParameterProtocol.STATUS_OK;
+    }
+
+
+    // Returns the version returned by the last request
+    public long getLastVersion() {
+        return lastVersion;
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+
+    // Write the header of a request frame
+    private void writeHeader(byte op, int model, long version, int n) throws IOException {
+        out.writeByte(op);
+        out.writeInt(model);
+        out.writeLong(version);
+        out.writeInt(n);
+    }
+
+
+    // Read a response without values, returns its status
+    private byte readStatus() throws IOException {
+        byte status = in.readByte();
+        lastVersion = in.readLong();
+        skipValues(in.readInt());
+        return status;
+    }
+
+
+    // Skip unexpected values of a response (doubles)
+    private void skipValues(int n) throws IOException {
+        for (int i = 0; i < n; i++) {
+            in.readDouble();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package Models.ParameterServer;
+
+
+/** Binary frames between the ParameterServer and its clients (DataInput / DataOutput, big-endian).
+ *  Request:  op (byte), model (int), version (long), n (int), n values
+ *  Response: status (byte), version (long), n (int), n values
+ *  PULL  -> request n = 0,                     response = all weights of the model (doubles)
+ *  PUSH  -> request = weight deltas (floats),  response n = 0
+ *  INIT  -> request = initial weights (doubles, ignored if the model already has weights), response n = 0
+ */
+final class ParameterProtocol {
+
+    // Operations
+    static final byte OP_PULL = 1;
+    static final byte OP_PUSH = 2;
+    static final byte OP_INIT = 3;
+
+    // Response status
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_STALE = 1;         // Push rejected: too many versions behind the server
+    static final byte STATUS_ERROR = 2;         // Unknown operation, model, or wrong number of weights
+
+    private ParameterProtocol() {
+    }
+}
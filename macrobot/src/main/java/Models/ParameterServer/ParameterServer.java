@@ -0,0 +1,190 @@
+package Models.ParameterServer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+
+/** This class is a lightweight PARAMETER SERVER for the Q-networks (one model for each action).
+ *  It runs as its own local process, listens on a loopback TCP port, and serves any number of workers
+ *  (e.g. the background learners of many battle JVMs), one thread for each connection.
+ *  Workers PULL the current weights of a model, train locally, and PUSH the weight deltas since their pull.
+ *  Bounded staleness: a push based on a version more than "maxStaleness" versions behind is rejected,
+ *  an accepted push is scaled by 1 / (1 + staleness) before being added to the weights.
+ *  Every accepted push increases the version of the model by 1.
+ */
+public class ParameterServer {
+
+    public static final int DEFAULT_PORT = 50200;
+    public static final int DEFAULT_MAX_STALENESS = 16;
+
+    private final int numWeights;               // Number of weights of each model
+    private final int maxStaleness;             // Max versions between the pull and the push of a worker
+    private final double[][] weights;           // Weights of each model
+    private final long[] versions;              // Version of each model (0: not initialized yet)
+    private volatile boolean isStopped = false;
+
+
+    public ParameterServer(int numModels, int numWeights, int maxStaleness) {
+        this.numWeights = numWeights;
+        this.maxStaleness = maxStaleness;
+        this.weights = new double[numModels][numWeights];
+        this.versions = new long[numModels];
+    }
+
+
+    /** Run the server: java Models.ParameterServer.ParameterServer [numModels] [numWeights] [port] [maxStaleness]
+     *  Default: 5 models (actions) of 61 weights (4 inputs, 10 hidden neurons, 1 output).
+     */
+    public static void main(String[] args) throws IOException {
+        int numModels = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int numWeights = args.length > 1 ? Integer.parseInt(args[1]) : 10 * (4 + 1) + (10 + 1);
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PORT;
+        int maxStaleness = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_MAX_STALENESS;
+        ParameterServer server = new ParameterServer(numModels, numWeights, maxStaleness);
+        System.out.printf("Parameter server: %d models of %d weights, port %d, max staleness %d\n",
+                numModels, numWeights, port, maxStaleness);
+        server.serve(new ServerSocket(port, 50, InetAddress.getLoopbackAddress()));
+    }
+
+
+    // Accept connections until stopped (one daemon thread for each worker)
+    public void serve(ServerSocket serverSocket) throws IOException {
+        try (ServerSocket listener = serverSocket) {
+            while (!isStopped) {
+                Socket socket = listener.accept();
+                Thread thread = new Thread(() -> handle(socket), "parameter-server-" + socket.getPort());
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+
+    // Serve the requests of one worker until it disconnects
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            double[] values = new double[numWeights];
+            while (!isStopped) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    return;     // Worker disconnected
+                }
+                int model = in.readInt();
+                long version = in.readLong();
+                int n = in.readInt();
+                boolean isValid = model >= 0 && model < weights.length && (n == 0 || n == numWeights);
+                // Read the values of the frame (floats for deltas, doubles for weights)
+                for (int i = 0; i < n; i++) {
+                    double value = (op == ParameterProtocol.OP_PUSH) ? in.readFloat() : in.readDouble();
+                    if (i < numWeights) {
+                        values[i] = value;
+                    }
+                }
+                if (!isValid) {
+                    writeStatus(out, ParameterProtocol.STATUS_ERROR, -1);
+                    continue;
+                }
+                switch (op) {
+                    case ParameterProtocol.OP_PULL: {
+                        long current = pull(model, values);
+                        out.writeByte(ParameterProtocol.STATUS_OK);
+                        out.writeLong(current);
+                        out.writeInt(numWeights);
+                        for (double value : values) {
+                            out.writeDouble(value);
+                        }
+                        out.flush();
+                        break;
+                    }
+                    case ParameterProtocol.OP_PUSH: {
+                        if (n != numWeights) {
+                            writeStatus(out, ParameterProtocol.STATUS_ERROR, -1);
+                            break;
+                        }
+                        long current = push(model, version, values);
+                        writeStatus(out, current > 0 ? ParameterProtocol.STATUS_OK : ParameterProtocol.STATUS_STALE,
+                                Math.abs(current));
+                        break;
+                    }
+                    case ParameterProtocol.OP_INIT: {
+                        long current = (n == numWeights) ? init(model, values) : -1;
+                        writeStatus(out, current >= 0 ? ParameterProtocol.STATUS_OK : ParameterProtocol.STATUS_ERROR,
+                                current);
+                        break;
+                    }
+                    default:
+                        writeStatus(out, ParameterProtocol.STATUS_ERROR, -1);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("*** Parameter server connection closed: " + e.getMessage());
+        }
+    }
+
+
+    // Write a response without values
+    private static void writeStatus(DataOutputStream out, byte status, long version) throws IOException {
+        out.writeByte(status);
+        out.writeLong(version);
+        out.writeInt(0);
+        out.flush();
+    }
+
+
+    // Copy the weights of a model, returns its version
+    public long pull(int model, double[] into) {
+        synchronized (weights[model]) {
+            System.arraycopy(weights[model], 0, into, 0, numWeights);
+            return versions[model];
+        }
+    }
+
+
+    /** Add the weight deltas of a worker (based on "baseVersion") to a model.
+     *  Returns the new version, or -(current version) if the push is too stale.
+     */
+    public long push(int model, long baseVersion, double[] deltas) {
+        synchronized (weights[model]) {
+            long staleness = Math.max(0, versions[model] - baseVersion);
+            if (staleness > maxStaleness) {
+                return -versions[model];
+            }
+            double scale = 1.0 / (1 + staleness);
+            double[] w = weights[model];
+            for (int i = 0; i < numWeights; i++) {
+                w[i] += scale * deltas[i];
+            }
+            return ++versions[model];
+        }
+    }
+
+
+    // Set the initial weights of a model (only if nobody has done it yet), returns its version
+    public long init(int model, double[] initialWeights) {
+        synchronized (weights[model]) {
+            if (versions[model] == 0) {
+                System.arraycopy(initialWeights, 0, weights[model], 0, numWeights);
+                versions[model] = 1;
+            }
+            return versions[model];
+        }
+    }
+
+
+    // Stop accepting requests (the listener stops after the next connection)
+    public void stop() {
+        isStopped = true;
+    }
+}
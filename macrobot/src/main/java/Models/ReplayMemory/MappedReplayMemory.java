@@ -0,0 +1,235 @@
+package Models.ReplayMemory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+/** This class implements a PERSISTENT replay memory of transitions (state, action, reward, next state)
+ *  in a memory-mapped file, so the experience survives JVM restarts and robot class reloads.
+ *  Opening maps the file and reads the header only (no deserialization), whatever the number of records.
+ *  The memory is circular: when full, the oldest record is replaced.
+ *
+ *  File layout (native byte order):
+ *  1. Header (64 bytes): magic, format version, width, capacity, then TWO commit slots of
+ *     (sequence, head, count, checksum). Each commit writes the slot NOT holding the latest sequence,
+ *     so a crash in the middle of a commit leaves the other slot valid; opening picks the valid slot
+ *     with the highest sequence.
+ *  2. capacity + 1 records (fixed size): state (width doubles), next state (width doubles), reward (double), action (int + padding).
+ *  A record is written into the spare slot before the header commit that makes it visible, so a crash never
+ *  leaves a torn record, or overwrites a committed one.
+ *  The mapped pages survive a JVM crash; call force() to also survive an OS crash.
+ *  Not thread-safe (one writer, e.g. the robot or the learner).
+ */
+public class MappedReplayMemory implements Closeable {
+
+    private static final int MAGIC = 0x52504d31;        // "RPM1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_OFFSET = 16;          // First commit slot (after magic, version, width, capacity)
+    private static final int SLOT_SIZE = 24;            // sequence, head & count (int each), checksum
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int width;                            // Length of each state vector
+    private final int capacity;                         // Max number of records
+    private final int slots;                            // Record slots in the file (one spare)
+    private final int recordSize;                       // Bytes of each record
+
+    private long sequence;                              // Sequence of the latest commit
+    private int head;                                   // Next record to write
+    private int count;                                  // Number of records
+
+
+    private MappedReplayMemory(RandomAccessFile file, MappedByteBuffer buffer, int width, int capacity) {
+        this.file = file;
+        this.buffer = buffer;
+        this.width = width;
+        this.capacity = capacity;
+        this.slots = capacity + 1;
+        this.recordSize = (2 * width + 2) * Double.BYTES;
+    }
+
+
+    /** Open (or create) a replay memory file with the given capacity and state width.
+     *  Throws IOException if an existing file has a different layout.
+     */
+    public static MappedReplayMemory open(File path, int capacity, int width) throws IOException {
+        if (capacity < 1 || width < 1) {
+            throw new IllegalArgumentException("Capacity and width must be at least 1");
+        }
+        boolean isNew = !path.exists() || path.length() == 0;
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try {
+            long size = HEADER_SIZE + (long) (capacity + 1) * (2 * width + 2) * Double.BYTES;
+            if (!isNew && file.length() != size) {
+                throw new IOException("Replay memory file " + path.getName() + " has " + file.length() + " bytes, expected " + size);
+            }
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.nativeOrder());
+            MappedReplayMemory memory = new MappedReplayMemory(file, buffer, width, capacity);
+            if (isNew) {
+                memory.format();
+            } else {
+                memory.readHeader(path.getName());
+            }
+            return memory;
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+
+    // Write the header of a new (empty) file
+    private void format() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, FORMAT_VERSION);
+        buffer.putInt(8, width);
+        buffer.putInt(12, capacity);
+        sequence = 0;
+        head = 0;
+        count = 0;
+        writeSlot(0, 0, 0, 0);
+        writeSlot(1, 0, 0, 0);
+    }
+
+
+    // Check the layout and restore head & count from the latest valid commit slot
+    private void readHeader(String name) throws IOException {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION
+                || buffer.getInt(8) != width || buffer.getInt(12) != capacity) {
+            throw new IOException("Replay memory file " + name + " has a different layout");
+        }
+        long bestSequence = -1;
+        for (int slot = 0; slot < 2; slot++) {
+            int offset = SLOT_OFFSET + slot * SLOT_SIZE;
+            long slotSequence = buffer.getLong(offset);
+            int slotHead = buffer.getInt(offset + 8);
+            int slotCount = buffer.getInt(offset + 12);
+            boolean isValid = buffer.getLong(offset + 16) == checksum(slotSequence, slotHead, slotCount)
+                    && slotHead >= 0 && slotHead < slots && slotCount >= 0 && slotCount <= capacity;
+            if (isValid && slotSequence > bestSequence) {
+                bestSequence = slotSequence;
+                head = slotHead;
+                count = slotCount;
+            }
+        }
+        if (bestSequence < 0) {
+            throw new IOException("Replay memory file " + name + " has no valid header");
+        }
+        sequence = bestSequence;
+    }
+
+
+    // Add a transition (the oldest one is replaced when full), committed before returning
+    public void add(double[] state, int action, double reward, double[] nextState) {
+        int offset = recordOffset(head);
+        for (int i = 0; i < width; i++) {
+            buffer.putDouble(offset + i * Double.BYTES, state[i]);
+            buffer.putDouble(offset + (width + i) * Double.BYTES, nextState[i]);
+        }
+        buffer.putDouble(offset + 2 * width * Double.BYTES, reward);
+        buffer.putInt(offset + (2 * width + 1) * Double.BYTES, action);
+        commit((head + 1) % slots, Math.min(count + 1, capacity));
+    }
+
+
+    // Publish a new head & count in the commit slot not holding the latest sequence
+    private void commit(int newHead, int newCount) {
+        sequence++;
+        writeSlot((int) (sequence & 1), sequence, newHead, newCount);
+        head = newHead;
+        count = newCount;
+    }
+
+
+    // Write one commit slot (checksum last)
+    private void writeSlot(int slot, long slotSequence, int slotHead, int slotCount) {
+        int offset = SLOT_OFFSET + slot * SLOT_SIZE;
+        buffer.putLong(offset, slotSequence);
+        buffer.putInt(offset + 8, slotHead);
+        buffer.putInt(offset + 12, slotCount);
+        buffer.putLong(offset + 16, checksum(slotSequence, slotHead, slotCount));
+    }
+
+
+    // Checksum of a commit slot (detects torn or never written slots)
+    private static long checksum(long slotSequence, int slotHead, int slotCount) {
+        long h = slotSequence * 0x9E3779B97F4A7C15L;
+        h ^= ((long) slotHead << 32) | (slotCount & 0xFFFFFFFFL);
+        h ^= h >>> 29;
+        return h ^ MAGIC;
+    }
+
+
+    /** Copy n random records (uniform, with replacement) into row-major arrays (one row of "width" values each).
+     *  Returns the number of rows written (0 if the memory is empty).
+     */
+    public int sample(Random random, int n, double[] states, double[] nextStates, int[] actions, double[] rewards) {
+        if (count == 0) {
+            return 0;
+        }
+        for (int r = 0; r < n; r++) {
+            read(random.nextInt(count), states, nextStates, r * width, actions, rewards, r);
+        }
+        return n;
+    }
+
+
+    /** Copy record i (0 is the oldest) into row "row" of the given arrays. */
+    public void read(int i, double[] states, double[] nextStates, int offset, int[] actions, double[] rewards, int row) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("Record " + i + " of " + count);
+        }
+        int recordOffset = recordOffset((head - count + i + slots) % slots);
+        for (int k = 0; k < width; k++) {
+            states[offset + k] = buffer.getDouble(recordOffset + k * Double.BYTES);
+            nextStates[offset + k] = buffer.getDouble(recordOffset + (width + k) * Double.BYTES);
+        }
+        rewards[row] = buffer.getDouble(recordOffset + 2 * width * Double.BYTES);
+        actions[row] = buffer.getInt(recordOffset + (2 * width + 1) * Double.BYTES);
+    }
+
+
+    // Byte offset of a record slot
+    private int recordOffset(int slot) {
+        return HEADER_SIZE + slot * recordSize;
+    }
+
+
+    // Write the mapped pages to the storage device (survives an OS crash)
+    public void force() {
+        buffer.force();
+    }
+
+
+    // Returns the number of records
+    public int size() {
+        return count;
+    }
+
+
+    // Returns the max number of records
+    public int getCapacity() {
+        return capacity;
+    }
+
+
+    // Returns the length of each state vector
+    public int getWidth() {
+        return width;
+    }
+
+
+    // Flush and close the file (the mapping stays valid until it is garbage collected)
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        file.close();
+    }
+}
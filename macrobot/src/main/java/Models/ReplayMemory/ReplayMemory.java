@@ -1,7 +1,9 @@
 package Models.ReplayMemory;
 
+import Tools.RandomStreams;
+
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.Random;
 
 /** This class implements a replay memory for any type T.
  *  The capacity of the memory must be specified upon construction.
@@ -39,8 +41,15 @@ public class ReplayMemory<T> {
         }
     }
 
-    // Retrieve a random sample of n items from the memory and return it as an array
+    // Retrieve a random sample of n items from the memory and return it as an array (generator of the calling thread)
     public Object[] randomSample(int n) {
+        return randomSample(n, RandomStreams.shared().forThread());
+    }
+
+    /** Retrieve a random sample of n distinct items from the memory, drawn with the given generator.
+     *  Only the last n positions of a copy are shuffled (partial Fisher-Yates), not the whole memory.
+     */
+    public Object[] randomSample(int n, Random random) {
         if (memory.isEmpty())
             return EMPTYARRAY;
         else {
@@ -48,10 +57,13 @@ public class ReplayMemory<T> {
             // See the unit tests to see how to use this tyle - no additional effort necessary
             // .... see here for more : https://stackoverflow.com/questions/1115230/casting-object-array-to-integer-array-error
             int size = memory.size();
-            CircularQueue shuffledMemory = new CircularQueue<T>(size);
-            shuffledMemory.addAll(memory); // This does a deep copy
-            Collections.shuffle(shuffledMemory);
-            Object[] objectArray = shuffledMemory.toArray();
+            Object[] objectArray = memory.toArray();
+            for (int i = size - 1; i >= size - n; i--) {
+                int j = random.nextInt(i + 1);
+                Object item = objectArray[i];
+                objectArray[i] = objectArray[j];
+                objectArray[j] = item;
+            }
             Object[] sampleObjectArray = Arrays.copyOfRange(objectArray, size-n, size);
             return sampleObjectArray;
         }
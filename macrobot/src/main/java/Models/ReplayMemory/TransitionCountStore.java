@@ -0,0 +1,181 @@
+package Models.ReplayMemory;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** This class implements an AGGREGATED replay memory for discretized transitions.
+ *  Each distinct transition (packed States & Action key, packed next States key) is stored ONCE,
+ *  with the number of times it has been seen and the sum of its rewards, in primitive arrays
+ *  (open-addressing hash table of entry ids, no boxing, no Experience objects).
+ *  Memory is bounded by the number of distinct transitions instead of the length of the battles.
+ *  Sampling picks entries weighted by their count (Fenwick tree of counts, O(log n) for each sample),
+ *  so replaying an entry with its mean reward matches replaying the raw experiences on average.
+ *  Not thread-safe (one writer & reader, e.g. the robot or the learner).
+ */
+public class TransitionCountStore {
+
+    private static final int EMPTY = -1;                // Free slot of the hash table
+
+    // Entries (dense, in insertion order)
+    private int[] stateActionKeys;                      // Packed States & Action key of each entry
+    private int[] nextStateKeys;                        // Packed next States key of each entry
+    private long[] counts;                              // Times each entry has been seen
+    private double[] rewardSums;                        // Sum of the rewards of each entry
+    private long[] tree;                                // Fenwick tree of the counts (1-based)
+    private int size = 0;                               // Number of entries
+    private long totalCount = 0;                        // Sum of the counts
+
+    // Hash table: entry id of each slot (power of 2 slots, linear probing)
+    private int[] slots;
+    private int mask;
+
+
+    public TransitionCountStore(int initialCapacity) {
+        int capacity = Math.max(16, Integer.highestOneBit(Math.max(1, initialCapacity - 1)) << 1);
+        stateActionKeys = new int[capacity];
+        nextStateKeys = new int[capacity];
+        counts = new long[capacity];
+        rewardSums = new double[capacity];
+        tree = new long[capacity + 1];
+        slots = new int[2 * capacity];
+        Arrays.fill(slots, EMPTY);
+        mask = slots.length - 1;
+    }
+
+
+    // Add one observation of a transition, returns its entry id
+    public int add(int stateActionKey, int nextStateKey, double reward) {
+        int slot = slotOf(stateActionKey, nextStateKey);
+        int entry = slots[slot];
+        if (entry == EMPTY) {
+            if (size == counts.length) {
+                grow();
+                slot = slotOf(stateActionKey, nextStateKey);
+            }
+            entry = size++;
+            slots[slot] = entry;
+            stateActionKeys[entry] = stateActionKey;
+            nextStateKeys[entry] = nextStateKey;
+        }
+        counts[entry]++;
+        rewardSums[entry] += reward;
+        totalCount++;
+        for (int i = entry + 1; i < tree.length; i += i & -i) {
+            tree[i]++;
+        }
+        return entry;
+    }
+
+
+    // Returns the id of an entry, or -1 if the transition has not been seen
+    public int find(int stateActionKey, int nextStateKey) {
+        return slots[slotOf(stateActionKey, nextStateKey)];
+    }
+
+
+    // Returns the hash slot of a transition (its slot, or the free slot where it would go)
+    private int slotOf(int stateActionKey, int nextStateKey) {
+        long key = ((long) stateActionKey << 32) | (nextStateKey & 0xFFFFFFFFL);
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (true) {
+            int entry = slots[slot];
+            if (entry == EMPTY || (stateActionKeys[entry] == stateActionKey && nextStateKeys[entry] == nextStateKey)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+
+    // Double the entries and the hash table, then rebuild both indexes
+    private void grow() {
+        int capacity = 2 * counts.length;
+        stateActionKeys = Arrays.copyOf(stateActionKeys, capacity);
+        nextStateKeys = Arrays.copyOf(nextStateKeys, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        rewardSums = Arrays.copyOf(rewardSums, capacity);
+
+        // Fenwick tree in O(n): each node adds itself to its parent
+        tree = new long[capacity + 1];
+        for (int i = 1; i <= size; i++) {
+            tree[i] += counts[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= capacity) {
+                tree[parent] += tree[i];
+            }
+        }
+
+        slots = new int[2 * capacity];
+        Arrays.fill(slots, EMPTY);
+        mask = slots.length - 1;
+        for (int entry = 0; entry < size; entry++) {
+            slots[slotOf(stateActionKeys[entry], nextStateKeys[entry])] = entry;
+        }
+    }
+
+
+    /** Pick n entry ids (with replacement) weighted by their counts.
+     *  Returns the number of ids written (0 if the store is empty).
+     */
+    public int sample(Random random, int n, int[] entries) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        for (int k = 0; k < n; k++) {
+            long target = Math.min((long) (random.nextDouble() * totalCount), totalCount - 1);
+            entries[k] = entryAt(target);
+        }
+        return n;
+    }
+
+
+    // Returns the entry holding the given position of the cumulative counts (Fenwick tree descent)
+    private int entryAt(long target) {
+        int pos = 0;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next < tree.length && tree[next] <= target) {
+                pos = next;
+                target -= tree[next];
+            }
+        }
+        return pos;
+    }
+
+
+    // Returns the packed States & Action key of an entry
+    public int getStateActionKey(int entry) {
+        return stateActionKeys[entry];
+    }
+
+
+    // Returns the packed next States key of an entry
+    public int getNextStateKey(int entry) {
+        return nextStateKeys[entry];
+    }
+
+
+    // Returns the times an entry has been seen
+    public long getCount(int entry) {
+        return counts[entry];
+    }
+
+
+    // Returns the mean reward of an entry
+    public double getMeanReward(int entry) {
+        return rewardSums[entry] / counts[entry];
+    }
+
+
+    // Returns the number of distinct transitions
+    public int size() {
+        return size;
+    }
+
+
+    // Returns the number of observed transitions (duplicates included)
+    public long getTotalCount() {
+        return totalCount;
+    }
+}
@@ -0,0 +1,106 @@
+package Models.ReplayMemory;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** This class implements a bounded lock-free ring of transitions (state, action, reward, next state)
+ *  for MANY producers (robots / actors) and ONE consumer (the learner).
+ *  Transitions are copied into preallocated primitive arrays, so offering one does not allocate.
+ *  Each slot has a sequence number: producers claim a slot with one CAS on the tail,
+ *  and publish it by advancing its sequence; the consumer releases it for the next lap the same way.
+ *  When the ring is full, offer() returns false and the transition is dropped (the actor never blocks).
+ */
+
+
+public class TransitionRing {
+
+    // Receives the transitions drained from the ring (states are rows at the given offsets)
+    public interface Sink {
+        void accept(double[] states, int stateOffset, int action, double reward, double[] nextStates, int nextOffset);
+    }
+
+    private final int capacity;                 // Number of slots (power of 2)
+    private final int mask;                     // capacity - 1
+    private final int width;                    // Length of each state vector
+    private final AtomicLongArray sequences;    // Sequence number of each slot
+    private final AtomicLong tail = new AtomicLong();   // Next position to claim (producers)
+    private long head = 0;                      // Next position to read (single consumer)
+
+    private final double[] states;              // State of each slot (row of "width" values)
+    private final int[] actions;                // Action of each slot
+    private final double[] rewards;             // Reward of each slot
+    private final double[] nextStates;          // Next state of each slot (row of "width" values)
+
+
+    public TransitionRing(int capacity, int width) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of 2: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.width = width;
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.states = new double[capacity * width];
+        this.actions = new int[capacity];
+        this.rewards = new double[capacity];
+        this.nextStates = new double[capacity * width];
+    }
+
+
+    // Add a transition (any thread), returns false if the ring is full
+    public boolean offer(double[] state, int action, double reward, double[] nextState) {
+        long pos = tail.get();
+        int index;
+        while (true) {
+            index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                // The slot is free for this lap, try to claim it
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                // The consumer has not released this slot yet: the ring is full
+                return false;
+            } else {
+                // Another producer claimed this position, try the next one
+                pos = tail.get();
+            }
+        }
+        System.arraycopy(state, 0, states, index * width, width);
+        System.arraycopy(nextState, 0, nextStates, index * width, width);
+        actions[index] = action;
+        rewards[index] = reward;
+        // Publish the slot to the consumer
+        sequences.set(index, pos + 1);
+        return true;
+    }
+
+
+    // Pass up to "max" transitions to the sink (consumer thread only), returns the number drained
+    public int drainTo(Sink sink, int max) {
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                break;      // Empty (or the producer has not finished writing this slot)
+            }
+            sink.accept(states, index * width, actions[index], rewards[index], nextStates, index * width);
+            // Release the slot for the next lap
+            sequences.set(index, head + capacity);
+            head++;
+            drained++;
+        }
+        return drained;
+    }
+
+
+    // Returns the length of each state vector
+    public int getWidth() {
+        return width;
+    }
+}
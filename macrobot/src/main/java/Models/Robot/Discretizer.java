@@ -0,0 +1,154 @@
+package Models.Robot;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Properties;
+
+
+/** This class maps raw State values (energy, distance, ...) to State levels (0, 1, 2, ...) by bin edges.
+ *  The level of a value is the number of edges that are less than or equal to the value:
+ *  e.g. edges {75, 200, 500, 700}: 50 -> 0, 75 -> 1, 300 -> 2, 600 -> 3, 900 -> 4.
+ *  A few edges are checked by a branch-free count, many edges by binary search.
+ *  The same instance serves the robots (one value per scan) and offline dataset preparation (bulk arrays).
+ */
+public class Discretizer {
+
+    // Default bin edges of our robots (same thresholds as the original if/else chains)
+    public static final double[] ENERGY_EDGES = {Double.MIN_VALUE, 15, 35, 65};    // zero, dangerous, low, medium, high
+    public static final double[] DISTANCE_EDGES = {75, 200, 500, 700};            // veryNear, near, normal, far, veryFar
+
+    // Name of the optional properties file (robot data directory) to tune the bin edges without code changes
+    public static final String PROPERTIES_FILENAME = "discretizer.properties";
+
+    private static final int LINEAR_SEARCH_MAX = 16;    // Up to this many edges, use the branch-free count
+
+    private final double[] edges;           // Bin edges (ascending)
+
+
+    public Discretizer(double[] edges) {
+        for (int i = 1; i < edges.length; i++) {
+            if (!(edges[i - 1] < edges[i])) {
+                throw new IllegalArgumentException("Bin edges must be strictly ascending: " + Arrays.toString(edges));
+            }
+        }
+        this.edges = edges.clone();
+    }
+
+
+    // Returns the level (0 to number of edges) of a raw value
+    public int levelOf(double value) {
+        if (edges.length <= LINEAR_SEARCH_MAX) {
+            // Branch-free count of the edges less than or equal to the value (compiles to compare & add)
+            int level = 0;
+            for (double edge : edges) {
+                level += (value >= edge) ? 1 : 0;
+            }
+            return level;
+        }
+        // Binary search: first edge greater than the value
+        int low = 0;
+        int high = edges.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (edges[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+
+    // Bulk path: discretize all raw values into levels (levels must be at least as long as values)
+    public void levelsOf(double[] values, int[] levels) {
+        levelsOf(values, 0, levels, 0, values.length);
+    }
+
+
+    // Bulk path: discretize "length" raw values starting at "from" into levels starting at "to"
+    public void levelsOf(double[] values, int from, int[] levels, int to, int length) {
+        for (int i = 0; i < length; i++) {
+            levels[to + i] = levelOf(values[from + i]);
+        }
+    }
+
+
+    // Returns the number of levels (number of edges + 1)
+    public int numLevels() {
+        return edges.length + 1;
+    }
+
+
+    // Returns a copy of the bin edges
+    public double[] getEdges() {
+        return edges.clone();
+    }
+
+
+    // Returns the State discretizers of our robots with the default edges
+    public static StateDiscretizers defaults() {
+        return new StateDiscretizers(new Discretizer(ENERGY_EDGES), new Discretizer(DISTANCE_EDGES));
+    }
+
+
+    // Load the State discretizers of our robots ("energy" & "distance" edges) from a properties file
+    public static StateDiscretizers loadDefaults(File propertiesFile) {
+        return new StateDiscretizers(load(propertiesFile, "energy", ENERGY_EDGES), load(propertiesFile, "distance", DISTANCE_EDGES));
+    }
+
+
+    /** Load the bin edges "<name>.edges" (comma separated) from a properties file.
+     *  Uses the default edges if the file or the key does not exist,
+     *  or if the number of levels does not match (the LUT / NN structure depends on it).
+     */
+    public static Discretizer load(File propertiesFile, String name, double[] defaultEdges) {
+        if (propertiesFile == null || !propertiesFile.exists()) {
+            return new Discretizer(defaultEdges);
+        }
+        Properties properties = new Properties();
+        try (InputStream input = new FileInputStream(propertiesFile)) {
+            properties.load(input);
+        } catch (IOException e) {
+            System.out.println("*** Could not read " + propertiesFile.getName() + ", default " + name + " edges are used");
+            return new Discretizer(defaultEdges);
+        }
+        String value = properties.getProperty(name + ".edges");
+        if (value == null) {
+            return new Discretizer(defaultEdges);
+        }
+        try {
+            String[] tokens = value.split(",");
+            double[] edges = new double[tokens.length];
+            for (int i = 0; i < tokens.length; i++) {
+                edges[i] = Double.parseDouble(tokens[i].trim());
+            }
+            if (edges.length != defaultEdges.length) {
+                System.out.printf("*** %d %s edges expected but %d encountered, default edges are used\n",
+                        defaultEdges.length, name, edges.length);
+                return new Discretizer(defaultEdges);
+            }
+            return new Discretizer(edges);
+        } catch (IllegalArgumentException e) {
+            System.out.println("*** Invalid " + name + " edges (" + e.getMessage() + "), default edges are used");
+            return new Discretizer(defaultEdges);
+        }
+    }
+
+
+    // Discretizers of the energy & distance States (both robots use the same pair)
+    public static final class StateDiscretizers {
+
+        public final Discretizer energy;
+        public final Discretizer distance;
+
+
+        public StateDiscretizers(Discretizer energy, Discretizer distance) {
+            this.energy = energy;
+            this.distance = distance;
+        }
+    }
+}
@@ -1,9 +1,23 @@
 package Models.Robot.LUTRobot;
 
+import Models.Cache.OpponentModelCache;
+import Models.LUT.DynaPlanner;
+import Models.LUT.EligibilityTraces;
+import Models.LUT.QStorage;
 import Models.LUT.StateActionTable;
+import Models.LUT.StepSizeSchedule;
+import Models.LUT.TableJournal;
+import Models.Robot.Discretizer;
+import Models.Robot.RobotDataStorage;
+import Models.Robot.StateEncoder;
 import Tools.LogFile;
+import Tools.RandomStreams;
 import java.awt.*;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Random;
+import java.util.function.IntFunction;
 
 import robocode.*;
 import static robocode.util.Utils.normalRelativeAngleDegrees;
@@ -15,6 +29,10 @@ public class LUT_RobotRunner extends AdvancedRobot {
     public enum enumEnergy {zero, dangerous, low, medium, high}             // States for energy
     public enum enumDistance {veryNear, near, normal, far, veryFar}         // States for distance
     public enum enumActions {circle, retreat, advance, goCenter, fire}      // Actions
+    private static final enumActions[] ACTIONS = enumActions.values();     // Cached (values() copies the array)
+
+    // Storage of the Q-values & visits (QStorage::half or size -> QStorage.fixedPoint(size, 8) keep 4 bytes per cell)
+    private static final IntFunction<QStorage> Q_STORAGE = QStorage::doubles;
 
     // Pick the 5 features (States & Action) for Q-learning
     static private StateActionTable stateActionTable5 = new StateActionTable(
@@ -22,37 +40,82 @@ public class LUT_RobotRunner extends AdvancedRobot {
             enumDistance.values().length,       // Distance to enemy
             enumEnergy.values().length,         // Enemy's HP
             enumDistance.values().length,       // Distance to the field center
-            enumActions.values().length         // Our actions
+            enumActions.values().length,        // Our actions
+            Q_STORAGE
     );
 
-    // Initialize current and previous States & Action
-    private enumEnergy currMyEnergy = enumEnergy.high;
-    private enumEnergy currEnemyEnergy = enumEnergy.high;
-    private enumDistance currDistanceToEnemy = enumDistance.near;
-    private enumDistance currDistanceToCenter = enumDistance.near;
-    private enumActions currAction = enumActions.circle;
+    // One State-Action table for each enemy (loaded on its first scan, least recently used ones spilled to disk)
+    // (off by default: the shared table is the one saved for the NN training of LUT_NNRunner)
+    private static final boolean PER_OPPONENT_ON = false;
+    // Memory of the tables kept (4 full-precision tables, more with a compact Q_STORAGE)
+    private static final long OPPONENT_CACHE_BYTES = 4L * stateActionTable5.size() * (Double.BYTES + Integer.BYTES);
+    static String OPPONENT_FILE_PREFIX = "LUTRobot_StateActionTable_";
+    static OpponentModelCache<StateActionTable> opponentTables = null;
+    static String currentOpponent = null;
+
+    // Save the shared table incrementally: base snapshot + journal of the cells changed in each round
+    // (no text LUT file then: LUT_NNRunner reads the bases & the journal; false writes the text file each round)
+    // Data quota (200,000 bytes): 2 bases (12 bytes/cell) + a journal of up to size/4 records (16 bytes each) ~ 28 bytes/cell
+    private static final boolean JOURNAL_ON = true;
+    private static final int JOURNAL_COMPACTION_RECORDS = stateActionTable5.size() / 4;  // Records before a new base
+    static String BASE_Filename = "LUTRobot_StateActionTable.bin";     // Bases in LUTRobot_StateActionTable_0.bin & _1.bin
+    static String JOURNAL_Filename = "LUTRobot_StateActionTable.journal";
+    static TableJournal journal = null;
+
+    // Dyna-Q: a background thread replays a learned model of the battles between ticks (prioritized sweeping)
+    private static final boolean DYNA_PLANNING_ON = false;
+    private static final int PLANNING_STEPS = 10;               // K: simulated backups for each real step
+    private static final double PLANNING_THRESHOLD = 1e-4;      // Min TD error to queue a State & Action
+    static DynaPlanner planner = null;
+    static Thread plannerThread = null;
+
+    // Current and previous States (discretized levels, no allocation per turn)
+    private final StateEncoder encoder = new StateEncoder(
+            enumEnergy.values().length,
+            enumDistance.values().length,
+            ACTIONS.length
+    );
 
-    private enumEnergy prevMyEnergy = enumEnergy.high;
-    private enumEnergy prevEnemyEnergy = enumEnergy.high;
-    private enumDistance prevDistanceToEnemy = enumDistance.near;
-    private enumDistance prevDistanceToCenter = enumDistance.near;
+    // Initialize current and previous Action
+    private enumActions currAction = enumActions.circle;
     private enumActions prevAction = enumActions.circle;
 
+    // Discretizers of the raw State values (bin edges can be tuned in the robot data directory)
+    static Discretizer.StateDiscretizers discretizers = Discretizer.defaults();
+    static boolean isDiscretizerLoaded = false;
+    private static final enumEnergy[] ENERGY_LEVELS = enumEnergy.values();
+    private static final enumDistance[] DISTANCE_LEVELS = enumDistance.values();
+
+    // Random generator of this robot & round (seeded from the experiment seed, see RandomStreams)
+    private Random random = null;
+
     // Set the hyperparameters
     private final boolean IS_ONPOLICY = false;      // To implement on-policy or off-policy learning
     private final int EXPLORING_EPISODES = 1000;    // Total episodes before epsilon = 0
     // (no exploration later)
 
     private final double LEARNING_RATE = 0.5;       // ALPHA: Learning rate
+    // Step size of each update from the visit count of its cell (e.g. StepSizeSchedule.polynomial(0.6).withFloor(0.1) to decay)
+    private final StepSizeSchedule STEP_SIZE = StepSizeSchedule.constant(LEARNING_RATE);
     private final double DISCOUNT_RATE  = 0.8;      // GAMMA: Discount rate
     private double epsilon = 0.75;                  // Epsilon: Explore rate
 
+    // Q(lambda): each TD error also updates the recently visited States & Actions (sparse eligibility traces)
+    private final boolean TRACES_ON = false;
+    private final boolean IS_WATKINS = true;        // Cut the traces after an exploratory Action (false: never cut)
+    private final double LAMBDA = 0.9;              // LAMBDA: Trace decay (traces decay by GAMMA * LAMBDA)
+    private final int MAX_TRACES = 64;              // Max active traces
+    private final double TRACE_THRESHOLD = 0.01;    // Traces under this value are dropped
+    private final EligibilityTraces traces = new EligibilityTraces(stateActionTable5.size(), MAX_TRACES, TRACE_THRESHOLD);
+    private boolean isExploring = false;            // The current Action is exploratory
+
     // Set the Rewards
     private final double goodTerminalReward = 1.0;          // Good reward of winning one episode
     private final double badTerminalReward = -1.0;          // Bad reward of losing one episode
     private final double goodIntermediateReward = 0.5;      // Good reward within each episode
     private final double badIntermediateReward = -0.25;     // Bad reward within each episode
     private double currReward = 0.0;                        // Record the current reward for each episode
+    private double observedReward = 0.0;                    // Part of currReward already handed to the planner
 
     // Initialize current State Values
     double myX = 0.0;
@@ -81,6 +144,8 @@ public class LUT_RobotRunner extends AdvancedRobot {
     // Main method of the robot, operations should be in this section
     @Override
     public void run() {
+        random = RandomStreams.shared().forKey(getName() + "/" + getRoundNum());
+
         // Set our robot style
         setBodyColor(Color.black);
         setGunColor(Color.darkGray);
@@ -88,6 +153,54 @@ public class LUT_RobotRunner extends AdvancedRobot {
         setBulletColor(Color.magenta);
         setScanColor(Color.green);
 
+        // Load the bin edges of the States once (default edges if there is no properties file)
+        if (!isDiscretizerLoaded) {
+            discretizers = Discretizer.loadDefaults(getDataFile(Discretizer.PROPERTIES_FILENAME));
+            isDiscretizerLoaded = true;
+        }
+
+        // Create the per-enemy tables once, the files are resolved through the robot of this round
+        if (PER_OPPONENT_ON) {
+            if (opponentTables == null) {
+                opponentTables = new OpponentModelCache<>(newTableCodec(), new RobotDataStorage(this),
+                        OPPONENT_FILE_PREFIX, OPPONENT_CACHE_BYTES);
+            } else {
+                opponentTables.setStorage(new RobotDataStorage(this));
+            }
+        }
+
+        // Load the shared table once from its base snapshot & journal
+        if (!PER_OPPONENT_ON && JOURNAL_ON) {
+            if (journal == null) {
+                journal = new TableJournal(stateActionTable5, new RobotDataStorage(this), BASE_Filename,
+                        JOURNAL_Filename, JOURNAL_COMPACTION_RECORDS);
+                try {
+                    journal.load();
+                } catch (IOException e) {
+                    System.out.println("*** Could not load the LUT journal, starting a new table: " + e);
+                }
+            } else {
+                journal.setStorage(new RobotDataStorage(this));
+            }
+        }
+
+        // Start the planner thread (again if Robocode has stopped it at the end of a round)
+        if (DYNA_PLANNING_ON && (plannerThread == null || !plannerThread.isAlive())) {
+            if (planner == null) {
+                planner = new DynaPlanner(stateActionTable5, ACTIONS.length, LEARNING_RATE, DISCOUNT_RATE,
+                        PLANNING_STEPS, PLANNING_THRESHOLD);
+            }
+            plannerThread = planner.start();
+        }
+
+        // Initialize current and previous States
+        encoder.reset(
+                enumEnergy.high.ordinal(),
+                enumDistance.near.ordinal(),
+                enumEnergy.high.ordinal(),
+                enumDistance.near.ordinal()
+        );
+
         // Get the location of the battlefield center
         xMid = (int) getBattleFieldWidth() / 2;
         yMid = (int) getBattleFieldHeight() / 2;
@@ -98,9 +211,11 @@ public class LUT_RobotRunner extends AdvancedRobot {
             log.stream.print("----------HYPERPARAMETERS----------\n");
             log.stream.printf("ON-POLICY, %s\n", IS_ONPOLICY ? "TRUE":"FALSE");
             log.stream.printf("EXPLORING EPISODES, %d\n", EXPLORING_EPISODES);
-            log.stream.printf("LEARNING RATE (ALPHA), %2.2f\n", LEARNING_RATE);
+            log.stream.printf("STEP SIZE (ALPHA), %s\n", STEP_SIZE);
             log.stream.printf("DISCOUNT RATE (GAMMA), %2.2f\n", DISCOUNT_RATE);
-            log.stream.printf("EXPLORE RATE (EPSILON), %2.2f\n\n", epsilon);
+            log.stream.printf("TRACE DECAY (LAMBDA), %2.2f\n", TRACES_ON ? LAMBDA : 0);
+            log.stream.printf("EXPLORE RATE (EPSILON), %2.2f\n", epsilon);
+            log.stream.printf("RANDOM SEED, %d\n\n", RandomStreams.shared().getSeed());
             log.stream.print("--------------REWARDS--------------\n");
             log.stream.printf("GOOD TERMINAL REWARD, %2.2f\n", goodTerminalReward);
             log.stream.printf("BAD TERMINAL REWARD, %2.2f\n", badTerminalReward);
@@ -128,7 +243,8 @@ public class LUT_RobotRunner extends AdvancedRobot {
 
     // Pick the current action of our robot
     private void robotAction() {
-        if (Math.random() < epsilon) {
+        isExploring = random.nextDouble() < epsilon;
+        if (isExploring) {
             // Exploration
             currAction = getRandomAction();
         } else {
@@ -195,26 +311,94 @@ public class LUT_RobotRunner extends AdvancedRobot {
         enemyEnergyValue = e.getEnergy();
         enemyBearingValue = e.getBearing();
 
+        // Use the State-Action table of this enemy
+        selectOpponent(e.getName());
+
         // Update States and Action (t to t+1)
-        prevMyEnergy = currMyEnergy;
-        prevDistanceToEnemy = currDistanceToEnemy;
-        prevEnemyEnergy = currEnemyEnergy;
-        prevDistanceToCenter = currDistanceToCenter;
         prevAction = currAction;
-
-        currMyEnergy = enumEnergyOf(myEnergyValue);
-        currDistanceToEnemy = enumDistanceOf(enemyDistanceValue);
-        currEnemyEnergy = enumEnergyOf(enemyEnergyValue);
-        currDistanceToCenter = enumDistanceOf(distanceToCenter(myX, myY, xMid, yMid));
+        encoder.update(
+                discretizers.energy.levelOf(myEnergyValue),
+                discretizers.distance.levelOf(enemyDistanceValue),
+                discretizers.energy.levelOf(enemyEnergyValue),
+                discretizers.distance.levelOf(distanceToCenter(myX, myY, xMid, yMid))
+        );
 
         // Update Q-value for previous states & action (t)
-        double[] prevStateActionIndex = getPrevStateActionIndex();
-        stateActionTable5.train(prevStateActionIndex, computeQ(currReward));
+        updateQ(false);
+    }
+
+
+    // Switch to the State-Action table of the scanned enemy (loaded or created on its first scan)
+    private void selectOpponent(String name) {
+        if (!PER_OPPONENT_ON || name.equals(currentOpponent)) {
+            return;
+        }
+        currentOpponent = name;
+        stateActionTable5 = opponentTables.get(name);
+        // The traces & the planner model belong to the previous table
+        traces.clear();
+        if (planner != null) {
+            planner.setTable(stateActionTable5);
+        }
     }
 
 
-    // Input current total reward to compute the Q-value of previous states & action (t)
-    public double computeQ(double reward) {
+    // Binary format of the per-enemy tables
+    private static OpponentModelCache.Codec<StateActionTable> newTableCodec() {
+        return new OpponentModelCache.Codec<>() {
+            @Override
+            public StateActionTable create() {
+                return new StateActionTable(ENERGY_LEVELS.length, DISTANCE_LEVELS.length, ENERGY_LEVELS.length,
+                        DISTANCE_LEVELS.length, ACTIONS.length, Q_STORAGE);
+            }
+
+            @Override
+            public long byteSize(StateActionTable table) {
+                return table.getStorage().getNumBytes();        // In memory (not the binary file size)
+            }
+
+            @Override
+            public void write(StateActionTable table, DataOutputStream out) throws IOException {
+                table.writeBinary(out);
+            }
+
+            @Override
+            public StateActionTable read(DataInputStream in) throws IOException {
+                StateActionTable table = create();
+                table.readBinary(in);
+                return table;
+            }
+        };
+    }
+
+
+    // Update the Q-value of previous states & action (t), then hand the transition (reward of this step) to the planner
+    private void updateQ(boolean isTerminal) {
+        int prevStateActionIndex = getPrevStateActionIndex();
+        double target = computeTarget(currReward);
+        double tdError;
+        double change;
+        synchronized (stateActionTable5) {      // No simulated backup between the read and the update
+            tdError = target - stateActionTable5.outputFor(prevStateActionIndex);
+            change = stateActionTable5.update(prevStateActionIndex, target, STEP_SIZE);
+        }
+        if (TRACES_ON) {
+            // Watkins's Q(lambda): the earlier States & Actions get no credit past an exploratory Action
+            if (IS_WATKINS && isExploring) {
+                traces.clear();
+            }
+            traces.update(stateActionTable5, prevStateActionIndex, tdError, STEP_SIZE, DISCOUNT_RATE * LAMBDA);
+        }
+        if (planner != null) {
+            planner.observe(prevStateActionIndex, encoder.stateOf(encoder.currKey(0)), currReward - observedReward,
+                    isTerminal, change);
+            observedReward = currReward;
+        }
+    }
+
+
+    // Input current total reward to compute the TD target of previous states & action (t)
+    public double computeTarget(double reward) {
         /** Determine on-policy or off-policy.
          *  Follow different policy to pick the next Action (t+1)
          *  for computing the Q-value of previous states & action (t).
@@ -223,7 +407,7 @@ public class LUT_RobotRunner extends AdvancedRobot {
 
         if (IS_ONPOLICY) {
             // On-policy: Use the epsilon-greedy policy to pick next action (t+1) for c Q-value
-            if (Math.random() < epsilon) {
+            if (random.nextDouble() < epsilon) {
                 // Exploration
                 nextAction = getRandomAction();
             } else {
@@ -235,24 +419,11 @@ public class LUT_RobotRunner extends AdvancedRobot {
             nextAction = getBestAction();
         }
 
-        // Get the array of index for previous states & action (t)
-        double[] prevStateActionIndex = getPrevStateActionIndex();
-
-        // Get the array of index for current states & action (t+1)
-        double[] currStateActionIndex = new double[]{
-                currMyEnergy.ordinal(),
-                currDistanceToEnemy.ordinal(),
-                currEnemyEnergy.ordinal(),
-                currDistanceToCenter.ordinal(),
-                nextAction.ordinal()
-        };
-
-        // Get the Q-value for previous and current states & action
-        double prevQ = stateActionTable5.outputFor(prevStateActionIndex);
-        double currQ = stateActionTable5.outputFor(currStateActionIndex);
+        // Get the Q-value for current states & action (t+1)
+        double currQ = stateActionTable5.outputFor(encoder.currKey(nextAction.ordinal()));
 
-        // Compute and return the NEW Q-VALUE for previous states & action (t)
-        return prevQ + LEARNING_RATE * (reward + DISCOUNT_RATE * currQ - prevQ);
+        // Compute and return the TD TARGET for previous states & action (t), the table applies the step size
+        return reward + DISCOUNT_RATE * currQ;
     }
 
 
@@ -268,15 +439,14 @@ public class LUT_RobotRunner extends AdvancedRobot {
         currReward += goodTerminalReward;
 
         // Update Q-value (need to do this since our robot cannot scan after the end of the game)
-        double[] prevStateActionIndex = getPrevStateActionIndex();
-        stateActionTable5.train(prevStateActionIndex, computeQ(currReward));
+        updateQ(true);
 
         // Update the win rate for each batch to the log file
         isWin = true;
         recordLog(isWin);
 
         // Save and update the LUT file after Q-learning
-        stateActionTable5.save(getDataFile(LUT_Filename));
+        saveTables();
     }
 
 
@@ -292,27 +462,36 @@ public class LUT_RobotRunner extends AdvancedRobot {
         currReward += badTerminalReward;
 
         // Update Q-value (need to do this since our robot cannot scan after the end of the game)
-        double[] prevStateActionIndex = getPrevStateActionIndex();
-        stateActionTable5.train(prevStateActionIndex, computeQ(currReward));
+        updateQ(true);
 
         // Update the win rate for each batch to the log file
         isWin = false;
         recordLog(isWin);
 
         // Save and update the LUT file after Q-learning
-        stateActionTable5.save(getDataFile(LUT_Filename));
+        saveTables();
     }
 
 
-    // Returns the array of indices for previous States & Action
-    public double[] getPrevStateActionIndex() {
-        return new double[] {
-                prevMyEnergy.ordinal(),
-                prevDistanceToEnemy.ordinal(),
-                prevEnemyEnergy.ordinal(),
-                prevDistanceToCenter.ordinal(),
-                prevAction.ordinal()
-        };
+    // Save the LUT file, the journal of the changed cells, or the binary files of all per-enemy tables in memory
+    private void saveTables() {
+        if (PER_OPPONENT_ON) {
+            opponentTables.saveAll();
+        } else if (journal != null) {
+            try {
+                journal.save();
+            } catch (IOException e) {
+                System.out.println("*** Could not save the LUT journal: " + e);
+            }
+        } else {
+            stateActionTable5.save(getDataFile(LUT_Filename));
+        }
+    }
+
+
+    // Returns the index (packed key) of previous States & Action
+    public int getPrevStateActionIndex() {
+        return encoder.prevKey(prevAction.ordinal());
     }
 
 
@@ -392,9 +571,7 @@ public class LUT_RobotRunner extends AdvancedRobot {
 
     // Get a random action
     public enumActions getRandomAction() {
-        Random rand = new Random();
-        int r = rand.nextInt(enumActions.values().length);
-        return enumActions.values()[r];
+        return ACTIONS[random.nextInt(ACTIONS.length)];
     }
 
 
@@ -412,29 +589,30 @@ public class LUT_RobotRunner extends AdvancedRobot {
     // Input the STATE VALUES, and will return the best action
     public enumActions selectBestAction(double e, double d, double e2, double d2) {
         // Get the index of each state
-        int energyStateIndex = enumEnergyOf(e).ordinal();
-        int distanceStateIndex = enumDistanceOf(d).ordinal();
-        int enemyEnergyStateIndex = enumEnergyOf(e2).ordinal();
-        int distanceToCenterStateIndex = enumDistanceOf(d2).ordinal();
+        int energyStateIndex = discretizers.energy.levelOf(e);
+        int distanceStateIndex = discretizers.distance.levelOf(d);
+        int enemyEnergyStateIndex = discretizers.energy.levelOf(e2);
+        int distanceToCenterStateIndex = discretizers.distance.levelOf(d2);
         // Initialize the best Q-value (set to the smallest value)
         double bestQ = -Double.MAX_VALUE;
         enumActions bestAction = null;
         // Find the Q-value (highest) for the best action
-        for (int actionIndex = 0; actionIndex < enumActions.values().length; actionIndex++) {
-            // Get the index array (state & action) for each Action
-            double[] stateActionIndex = new double[] {
+        for (int actionIndex = 0; actionIndex < ACTIONS.length; actionIndex++) {
+            // Get the index (state & action) for each Action
+            int stateActionIndex = encoder.keyOf(
                     energyStateIndex,
                     distanceStateIndex,
                     enemyEnergyStateIndex,
                     distanceToCenterStateIndex,
                     actionIndex
-            };
+            );
             // Compare the Q-value of each Action, and get the best action
-            if (stateActionTable5.outputFor(stateActionIndex) > bestQ) {
+            double q = stateActionTable5.outputFor(stateActionIndex);
+            if (q > bestQ) {
                 // Update Q-value for finding another higher Q-value
-                bestQ = stateActionTable5.outputFor(stateActionIndex);
+                bestQ = q;
                 // Get the best action
-                bestAction = enumActions.values()[actionIndex];
+                bestAction = ACTIONS[actionIndex];
             }
         }
         return bestAction;
@@ -443,47 +621,13 @@ public class LUT_RobotRunner extends AdvancedRobot {
 
     // Define the distance state
     public enumDistance enumDistanceOf(double distance) {
-        enumDistance distanceState = null;
-        if (distance < 75) {
-            // For veryNear state
-            distanceState = enumDistance.veryNear;
-        } else if (distance >= 75 && distance < 200) {
-            // For near state
-            distanceState = enumDistance.near;
-        } else if (distance >= 200 && distance < 500) {
-            // For normal state
-            distanceState = enumDistance.normal;
-        } else if (distance >= 500 && distance < 700) {
-            // For far state
-            distanceState = enumDistance.far;
-        } else if (distance >= 700) {
-            // For veryFar state
-            distanceState = enumDistance.veryFar;
-        }
-        return distanceState;
+        return DISTANCE_LEVELS[discretizers.distance.levelOf(distance)];
     }
 
 
     // Define the energy state
     public enumEnergy enumEnergyOf(double energy) {
-        enumEnergy energyState = null;
-        if (energy == 0) {
-            // For zero state
-            energyState = enumEnergy.zero;
-        } else if (energy > 0 && energy < 15) {
-            // For dangerous state
-            energyState = enumEnergy.dangerous;
-        } else if (energy >= 15 && energy < 35) {
-            // For low state
-            energyState = enumEnergy.low;
-        } else if (energy >= 35 && energy < 65) {
-            // For medium state
-            energyState = enumEnergy.medium;
-        } else if (energy >= 65) {
-            // For high state
-            energyState = enumEnergy.high;
-        }
-        return energyState;
+        return ENERGY_LEVELS[discretizers.energy.levelOf(energy)];
     }
 
 
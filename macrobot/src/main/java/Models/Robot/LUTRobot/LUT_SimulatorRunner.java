@@ -0,0 +1,131 @@
+package Models.Robot.LUTRobot;
+
+import Models.LUT.QStorage;
+import Models.LUT.StateActionTable;
+import Models.LUT.StepSizeSchedule;
+import Models.Robot.Discretizer;
+import Models.Robot.StateEncoder;
+import Models.Simulator.BattleSimulator;
+import Tools.RandomInit;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+
+/** Pre-train the State-Action table of the LUT robot in the BattleSimulator (no Robocode engine).
+ *  Same States, Actions, and off-policy Q-learning as LUT_RobotRunner, one Q-update for each step.
+ *  The LUT is written in the usual format, so it can be copied to the robot data directory
+ *  (LUTRobot_StateActionTable.txt) and fine-tuned in real Robocode battles.
+ *  The Q-values can be kept in a compact storage (double, half or fixed) to compare the win rates and the memory.
+ *  Usage: java Models.Robot.LUTRobot.LUT_SimulatorRunner [episodes] [output file] [storage]
+ */
+public class LUT_SimulatorRunner {
+
+    private static final double LEARNING_RATE = 0.5;        // ALPHA: Learning rate
+    private static final StepSizeSchedule STEP_SIZE = StepSizeSchedule.constant(LEARNING_RATE);
+    private static final double DISCOUNT_RATE = 0.8;        // GAMMA: Discount rate
+    private static final double START_EPSILON = 0.75;       // Epsilon: Explore rate
+    private static final int EXPLORING_EPISODES_PERCENT = 80;   // Episodes with exploration (the rest is greedy)
+    private static final int TICKS_PER_STEP = 1;            // The robots pick an Action every turn
+    private static final int BATCH = 1000;                  // Episodes for each line of statistics
+    private static final long SEED = 502;
+    private static final double FIXED_POINT_RANGE = 8;      // Max |Q-value| of the fixed-point storage (rewards are within +-1)
+
+    public static void main(String[] args) throws IOException {
+        int episodes = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        String outputFile = args.length > 1 ? args[1] : "out/statistics/LUT/LUTRobot_StateActionTable_sim.txt";
+        String storage = args.length > 2 ? args[2] : "double";
+        int exploringEpisodes = episodes / 100 * EXPLORING_EPISODES_PERCENT;
+
+        int numEnergyLevels = LUT_RobotRunner.enumEnergy.values().length;
+        int numDistanceLevels = LUT_RobotRunner.enumDistance.values().length;
+        int numActions = BattleSimulator.NUM_ACTIONS;
+        StateActionTable lut = new StateActionTable(numEnergyLevels, numDistanceLevels, numEnergyLevels, numDistanceLevels,
+                numActions, storageOf(storage));
+        lut.initializeLUT(new RandomInit(SEED));
+        StateEncoder encoder = new StateEncoder(numEnergyLevels, numDistanceLevels, numActions);
+        Discretizer energy = new Discretizer(Discretizer.ENERGY_EDGES);
+        Discretizer distance = new Discretizer(Discretizer.DISTANCE_EDGES);
+        BattleSimulator sim = new BattleSimulator(TICKS_PER_STEP, SEED);
+        Random random = new Random(SEED);
+
+        long totalSteps = 0;
+        int numWins = 0;
+        long startTime = System.nanoTime();
+        long batchStartTime = startTime;
+        long batchSteps = 0;
+        System.out.println("episodes, winRate, stepsPerSec");
+        for (int episode = 1; episode <= episodes; episode++) {
+            double epsilon = (episode <= exploringEpisodes) ? START_EPSILON : 0;
+            sim.reset();
+            encoder.reset(energy.levelOf(sim.getMyEnergy()), distance.levelOf(sim.getEnemyDistance()),
+                    energy.levelOf(sim.getEnemyEnergy()), distance.levelOf(sim.getDistanceToCenter()));
+            while (!sim.isDone()) {
+                // Pick the Action (epsilon-greedy)
+                int action = (random.nextDouble() < epsilon) ? random.nextInt(numActions) : bestAction(lut, encoder);
+                double reward = sim.step(action);
+                encoder.update(energy.levelOf(sim.getMyEnergy()), distance.levelOf(sim.getEnemyDistance()),
+                        energy.levelOf(sim.getEnemyEnergy()), distance.levelOf(sim.getDistanceToCenter()));
+                // Off-policy Q-learning update of the previous States & Action
+                double nextQ = sim.isDone() ? 0 : lut.outputFor(encoder.currKey(bestAction(lut, encoder)));
+                lut.update(encoder.prevKey(action), reward + DISCOUNT_RATE * nextQ, STEP_SIZE);
+                batchSteps++;
+            }
+            if (sim.isWin()) {
+                numWins++;
+            }
+            if (episode % BATCH == 0) {
+                long now = System.nanoTime();
+                System.out.printf("%d, %2.1f, %.0f\n", episode, 100.0 * numWins / BATCH, batchSteps / ((now - batchStartTime) / 1e9));
+                totalSteps += batchSteps;
+                batchSteps = 0;
+                numWins = 0;
+                batchStartTime = now;
+            }
+        }
+        totalSteps += batchSteps;
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.printf("%d episodes, %d steps in %.1f s (%.0f steps/s)\n", episodes, totalSteps, seconds, totalSteps / seconds);
+        QStorage cells = lut.getStorage();
+        System.out.printf("%s storage: %d bytes, max rounding error %.3g, %d saturated writes\n",
+                storage, cells.getNumBytes(), cells.getMaxAbsError(), cells.getNumSaturated());
+
+        try (PrintStream out = new PrintStream(new FileOutputStream(outputFile))) {
+            lut.write(out);
+        }
+        System.out.println("-------------------- LUT pre-training is done! --------------------");
+    }
+
+
+    // Returns the Action with the highest Q-value for the CURRENT States
+    private static int bestAction(StateActionTable lut, StateEncoder encoder) {
+        int bestAction = 0;
+        double bestQ = lut.outputFor(encoder.currKey(0));
+        for (int a = 1; a < BattleSimulator.NUM_ACTIONS; a++) {
+            double q = lut.outputFor(encoder.currKey(a));
+            if (q > bestQ) {
+                bestQ = q;
+                bestAction = a;
+            }
+        }
+        return bestAction;
+    }
+
+
+    // Storage of the Q-values from its name
+    private static IntFunction<QStorage> storageOf(String name) {
+        switch (name) {
+            case "double":
+                return QStorage::doubles;
+            case "half":
+                return QStorage::half;
+            case "fixed":
+                return size -> QStorage.fixedPoint(size, FIXED_POINT_RANGE);
+            default:
+                throw new IllegalArgumentException("Unknown storage (double, half or fixed): " + name);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package Models.Robot;
+
+import Models.Cache.OpponentModelCache;
+import robocode.AdvancedRobot;
+import robocode.RobocodeFileOutputStream;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+
+/** Model files in the Robocode data directory of a robot (writes need a RobocodeFileOutputStream).
+ *  Create one for each round: the files are resolved through the robot instance of that round.
+ */
+public class RobotDataStorage implements OpponentModelCache.Storage {
+
+    private final AdvancedRobot robot;
+
+
+    public RobotDataStorage(AdvancedRobot robot) {
+        this.robot = robot;
+    }
+
+
+    @Override
+    public InputStream openInput(String fileName) throws IOException {
+        return new FileInputStream(robot.getDataFile(fileName));
+    }
+
+
+    @Override
+    public OutputStream openOutput(String fileName) throws IOException {
+        return new RobocodeFileOutputStream(robot.getDataFile(fileName));
+    }
+
+
+    @Override
+    public OutputStream openAppend(String fileName) throws IOException {
+        return new RobocodeFileOutputStream(robot.getDataFile(fileName).getPath(), true);
+    }
+}
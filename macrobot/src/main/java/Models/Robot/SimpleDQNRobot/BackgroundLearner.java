@@ -0,0 +1,245 @@
+package Models.Robot.SimpleDQNRobot;
+
+import Models.NeuralNet.NN_OneHiddenLayer;
+import Models.NeuralNet.WeightSnapshot;
+import Models.ParameterServer.ParameterClient;
+import Models.ReplayMemory.TransitionRing;
+import Tools.RandomStreams;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+
+/** This class is the LEARNER of the actor-learner split of the DQN robot.
+ *  The robot (actor) only runs inference, and pushes its transitions into a TransitionRing.
+ *  This learner runs on its own thread:
+ *  1. Drain the new transitions from the ring into its replay memory (primitive arrays)
+ *  2. Train its own copy of the NNs (one NN per action) on random batches of the replay memory
+ *  3. Publish new weight snapshots every few batches (one volatile reference swap)
+ *  The actor runs inference directly on the latest snapshots (wait-free, no copy).
+ *  With a ParameterClient, the weights are also shared with the learners of other JVMs before each publish:
+ *  push the deltas trained since the last pull, then continue from the pulled server weights.
+ */
+public class BackgroundLearner implements Runnable, TransitionRing.Sink {
+
+    private static final int MAX_DRAIN = 256;               // Max transitions drained between batches
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final NN_OneHiddenLayer[] nets;                 // Learner's own NNs (one for each action)
+    private final TransitionRing ring;                      // Transitions pushed by the actors
+    private final double learningRate;                      // ALPHA: Q-learning rate
+    private final double discountRate;                      // GAMMA: Discount rate
+    private final int batchSize;                            // Transitions for each training batch
+    private final int publishInterval;                      // Batches between two snapshots
+    private final int replayRatio;                          // Max trained samples for each new transition
+    private final Random random;
+
+    // Replay memory (circular, row by row)
+    private final int replayCapacity;
+    private final int width;
+    private final double[] replayStates;
+    private final int[] replayActions;
+    private final double[] replayRewards;
+    private final double[] replayNextStates;
+    private int replaySize = 0;
+    private int replayNext = 0;
+
+    private volatile Published published;                   // Latest published weights (one for each action)
+    private volatile boolean isStopped = false;
+    private long numTransitions = 0;                        // Transitions received so far
+    private long numTrained = 0;                            // Samples trained so far
+
+    // Optional parameter server (learner thread only)
+    private ParameterClient client = null;
+    private double[][] pulledWeights;                       // Weights of the last pull (one for each action)
+    private long[] pulledVersions;                          // Server versions of the last pull
+    private double[] deltas;                                // Scratch array for the pushed deltas
+
+
+    public BackgroundLearner(NN_OneHiddenLayer[] nets, TransitionRing ring, int replayCapacity, int batchSize,
+                             int publishInterval, int replayRatio, double learningRate, double discountRate, long seed) {
+        this.nets = nets;
+        this.ring = ring;
+        this.replayCapacity = replayCapacity;
+        this.batchSize = batchSize;
+        this.publishInterval = publishInterval;
+        this.replayRatio = replayRatio;
+        this.learningRate = learningRate;
+        this.discountRate = discountRate;
+        this.random = RandomStreams.newGenerator(seed);     // Unsynchronized, used by the learner thread only
+        this.width = ring.getWidth();
+        this.replayStates = new double[replayCapacity * width];
+        this.replayActions = new int[replayCapacity];
+        this.replayRewards = new double[replayCapacity];
+        this.replayNextStates = new double[replayCapacity * width];
+        publish();
+    }
+
+
+    // Learner loop: drain, train, publish (until stopped)
+    @Override
+    public void run() {
+        if (client != null) {
+            initParameters();
+        }
+        int numBatches = 0;
+        while (!isStopped && !Thread.currentThread().isInterrupted()) {
+            ring.drainTo(this, MAX_DRAIN);
+            // Wait for new transitions when the replay memory is empty or has been replayed enough
+            if (replaySize == 0 || numTrained >= numTransitions * replayRatio) {
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            trainBatch();
+            numBatches++;
+            if (numBatches % publishInterval == 0) {
+                publish();
+            }
+        }
+    }
+
+
+    // Keep a drained transition in the replay memory (oldest one is replaced when full)
+    @Override
+    public void accept(double[] states, int stateOffset, int action, double reward, double[] nextStates, int nextOffset) {
+        System.arraycopy(states, stateOffset, replayStates, replayNext * width, width);
+        System.arraycopy(nextStates, nextOffset, replayNextStates, replayNext * width, width);
+        replayActions[replayNext] = action;
+        replayRewards[replayNext] = reward;
+        replayNext = (replayNext + 1) % replayCapacity;
+        replaySize = Math.min(replaySize + 1, replayCapacity);
+        numTransitions++;
+    }
+
+
+    // Train a random batch of the replay memory (same Q-learning update as the inline robot)
+    private void trainBatch() {
+        for (int n = 0; n < batchSize; n++) {
+            int i = random.nextInt(replaySize);
+            int offset = i * width;
+            // Best Q-value of the next state
+            double bestNextQ = -Double.MAX_VALUE;
+            for (NN_OneHiddenLayer net : nets) {
+                bestNextQ = Math.max(bestNextQ, net.outputFor(replayNextStates, offset));
+            }
+            // Train the NN of the action toward the corrected Q-value
+            NN_OneHiddenLayer net = nets[replayActions[i]];
+            double prevQ = net.outputFor(replayStates, offset);
+            double error = learningRate * (replayRewards[i] + discountRate * bestNextQ - prevQ);
+            net.train(replayStates, offset, prevQ + error);
+        }
+        numTrained += batchSize;
+    }
+
+
+    // Publish a snapshot of the current weights of all NNs (never modified after this)
+    private void publish() {
+        if (client != null) {
+            syncParameters();
+        }
+        WeightSnapshot[] snapshots = new WeightSnapshot[nets.length];
+        double[][] prevWeights = new double[nets.length][nets[0].getNumWeights()];
+        for (int i = 0; i < nets.length; i++) {
+            snapshots[i] = nets[i].publishSnapshot();
+            nets[i].getPrevWeights(prevWeights[i]);
+        }
+        published = new Published(snapshots, prevWeights);
+    }
+
+
+    // Share the weights through a parameter server (call before start)
+    public void setParameterClient(ParameterClient client) {
+        this.client = client;
+        this.pulledWeights = new double[nets.length][nets[0].getNumWeights()];
+        this.pulledVersions = new long[nets.length];
+        this.deltas = new double[nets[0].getNumWeights()];
+    }
+
+
+    // Offer our weights as the initial weights of the server, then start from the server weights
+    private void initParameters() {
+        try {
+            for (int i = 0; i < nets.length; i++) {
+                nets[i].getWeights(deltas);
+                client.init(i, deltas);
+                pulledVersions[i] = client.pull(i, pulledWeights[i]);
+                nets[i].setWeights(pulledWeights[i]);
+            }
+        } catch (IOException e) {
+            disconnect(e);
+        }
+    }
+
+
+    // Push the weight changes since the last pull (dropped if too stale), then pull the latest weights
+    private void syncParameters() {
+        try {
+            for (int i = 0; i < nets.length; i++) {
+                double[] pulled = pulledWeights[i];
+                nets[i].getWeights(deltas);
+                for (int j = 0; j < deltas.length; j++) {
+                    deltas[j] -= pulled[j];
+                }
+                client.push(i, pulledVersions[i], deltas);
+                pulledVersions[i] = client.pull(i, pulled);
+                nets[i].setWeights(pulled);
+            }
+        } catch (IOException e) {
+            disconnect(e);
+        }
+    }
+
+
+    // Keep training locally when the parameter server is gone
+    private void disconnect(IOException e) {
+        System.out.println("*** Parameter server not reachable (" + e.getMessage() + "), training locally");
+        try {
+            client.close();
+        } catch (IOException ignored) {
+        }
+        client = null;
+    }
+
+
+    // Returns the latest published snapshots (one for each action), any thread
+    public WeightSnapshot[] getSnapshots() {
+        return published.snapshots;
+    }
+
+
+    // Copy the weights & the momentum state (previous weights) of an action from the same publish, any thread
+    public void copyPublished(int action, double[] weights, double[] prevWeights) {
+        Published latest = published;
+        latest.snapshots[action].copyWeights(weights);
+        System.arraycopy(latest.prevWeights[action], 0, prevWeights, 0, prevWeights.length);
+    }
+
+
+    // Stop the learner loop
+    public void stop() {
+        isStopped = true;
+    }
+
+
+    // Start the learner on a new daemon thread
+    public Thread start() {
+        Thread thread = new Thread(this, "dqn-learner");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+
+    // Weights of one publish: the snapshots for inference & the previous weights of the NNs (momentum state, for saving)
+    private static final class Published {
+        final WeightSnapshot[] snapshots;
+        final double[][] prevWeights;
+
+        Published(WeightSnapshot[] snapshots, double[][] prevWeights) {
+            this.snapshots = snapshots;
+            this.prevWeights = prevWeights;
+        }
+    }
+}
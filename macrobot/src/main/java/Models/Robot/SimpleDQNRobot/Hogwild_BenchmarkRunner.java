@@ -0,0 +1,126 @@
+package Models.Robot.SimpleDQNRobot;
+
+import Models.LUT.StateActionTable;
+import Models.NeuralNet.HogwildTrainer;
+import Models.NeuralNet.NN_OneHiddenLayer;
+import Models.NeuralNet.TrainingSet;
+
+import java.io.IOException;
+
+
+/** Benchmark of the Hogwild training (lock-free, shared weights) on the LUT training set.
+ *  Every run starts from the SAME initial weights and trains a fixed number of epochs:
+ *  1. Serial training of the NN (SGD with momentum), for reference
+ *  2. Hogwild training with 1 thread (serial plain SGD, the baseline of the speedup)
+ *  3. Hogwild training with 2, 4, ... threads up to the given maximum
+ *  For each run, prints the throughput (patterns per second), the speedup, the final error,
+ *  and the first epoch that reaches 99% of the error reduction of the 1-thread run (convergence effect of the races).
+ */
+public class Hogwild_BenchmarkRunner {
+
+    private static final int BENCH_EPOCHS = 300;        // Training epochs of each run
+    private static final int WARMUP_EPOCHS = 30;        // Untimed epochs before each run (JIT warm-up)
+    private static final double TARGET_REDUCTION = 0.99;    // Fraction of the 1-thread error reduction to reach
+
+    public static void main(String[] args) throws IOException {
+
+        // Maximum number of worker threads (default: all processors)
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+
+        // Initialize Neural Net structure (same as the pre-training)
+        NN_OneHiddenLayer nn = new NN_OneHiddenLayer(4, 10, 1, LUT_NNRunner.LEARNING_RATE, LUT_NNRunner.MOMENTUM_TERM,
+                -1, 1, true);
+        nn.initializeWeights();
+        double[] initialWeights = new double[nn.getNumWeights()];
+        nn.getWeights(initialWeights);
+
+        // Load LUT, normalize the Q-values and build the training set
+        StateActionTable trainedLUT = LUT_NNRunner.loadTrainedLUT();
+        trainedLUT.normalizeQ();
+        TrainingSet trainingSet = LUT_NNRunner.buildTrainingSet(trainedLUT);
+
+        System.out.println("mode, threads, epochs, elapsedMs, patternsPerSec, speedup, finalError, epochToTarget");
+
+        // Serial training with momentum (reference only)
+        nn.setWeights(initialWeights);
+        runSerial(nn, trainingSet, WARMUP_EPOCHS, null);
+        nn.setWeights(initialWeights);
+        double[] errors = new double[BENCH_EPOCHS];
+        long elapsed = runSerial(nn, trainingSet, BENCH_EPOCHS, errors);
+        print("serial", 1, elapsed, trainingSet.size(), 0, errors, 0);
+
+        // Hogwild with 1 thread: baseline throughput and target error
+        elapsed = runHogwild(nn, initialWeights, trainingSet, 1, errors);
+        long baselineElapsed = elapsed;
+        double targetError = errors[0] - TARGET_REDUCTION * (errors[0] - errors[BENCH_EPOCHS - 1]);
+        print("hogwild", 1, elapsed, trainingSet.size(), baselineElapsed, errors, targetError);
+
+        // Hogwild with more threads
+        for (int numThreads = 2; numThreads <= maxThreads; numThreads = nextThreads(numThreads, maxThreads)) {
+            elapsed = runHogwild(nn, initialWeights, trainingSet, numThreads, errors);
+            print("hogwild", numThreads, elapsed, trainingSet.size(), baselineElapsed, errors, targetError);
+        }
+    }
+
+
+    // Serial training of the NN (one weight update with momentum for each pattern), returns the elapsed nanoseconds
+    private static long runSerial(NN_OneHiddenLayer nn, TrainingSet set, int epochs, double[] errors) {
+        double[] features = set.getFeatures();
+        long startTime = System.nanoTime();
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            double totalLoss = 0;
+            for (int i = 0; i < set.size(); i++) {
+                totalLoss += nn.train(features, set.offsetOf(i), set.getTarget(i));
+            }
+            if (errors != null) {
+                errors[epoch] = Math.sqrt(totalLoss / set.size());
+            }
+        }
+        return System.nanoTime() - startTime;
+    }
+
+
+    // Hogwild training from the initial weights (after a warm-up), returns the elapsed nanoseconds
+    private static long runHogwild(NN_OneHiddenLayer nn, double[] initialWeights, TrainingSet set, int numThreads,
+                                   double[] errors) {
+        HogwildTrainer trainer = new HogwildTrainer(nn, numThreads);
+        nn.setWeights(initialWeights);
+        for (int epoch = 0; epoch < WARMUP_EPOCHS; epoch++) {
+            trainer.trainEpoch(set);
+        }
+        nn.setWeights(initialWeights);
+        long startTime = System.nanoTime();
+        for (int epoch = 0; epoch < errors.length; epoch++) {
+            errors[epoch] = Math.sqrt(trainer.trainEpoch(set) / set.size());
+        }
+        long elapsed = System.nanoTime() - startTime;
+        trainer.shutdown();
+        return elapsed;
+    }
+
+
+    // Print one CSV row of results (speedup and target are skipped when 0)
+    private static void print(String mode, int numThreads, long elapsedNanos, int numPatterns, long baselineNanos,
+                              double[] errors, double targetError) {
+        int epochToTarget = -1;
+        for (int epoch = 0; targetError > 0 && epoch < errors.length; epoch++) {
+            if (errors[epoch] <= targetError) {
+                epochToTarget = epoch + 1;
+                break;
+            }
+        }
+        double patternsPerSec = (double) numPatterns * errors.length / (elapsedNanos / 1e9);
+        System.out.printf("%s, %d, %d, %d, %.0f, %s, %.6f, %s\n", mode, numThreads, errors.length, elapsedNanos / 1000000,
+                patternsPerSec, baselineNanos > 0 ? String.format("%.2f", (double) baselineNanos / elapsedNanos) : "-",
+                errors[errors.length - 1], targetError > 0 ? (epochToTarget > 0 ? epochToTarget : "never") : "-");
+    }
+
+
+    // Thread counts 2, 4, 8, ... and finally the maximum itself
+    private static int nextThreads(int numThreads, int maxThreads) {
+        if (numThreads == maxThreads) {
+            return maxThreads + 1;
+        }
+        return Math.min(numThreads * 2, maxThreads);
+    }
+}
@@ -1,12 +1,16 @@
 package Models.Robot.SimpleDQNRobot;
 
+import Models.Cache.OpponentModelCache;
 import Models.LUT.StateActionTable;
+import Models.LUT.TableJournal;
 import Models.NeuralNet.NN_OneHiddenLayer;
+import Models.NeuralNet.ParallelTrainer;
+import Models.NeuralNet.TrainingLoop;
+import Models.NeuralNet.TrainingSet;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Random;
 
 
 public class LUT_NNRunner {
@@ -15,6 +19,28 @@ public class LUT_NNRunner {
     public static final double LEARNING_RATE = 0.4;
     public static final double MOMENTUM_TERM = 0.8;
 
+    // Data directory of LUTRobot: the text LUT (JOURNAL_ON = false), or the bases & journal (JOURNAL_ON = true)
+    private static final File LUT_DIRECTORY = new File("out/statistics/LUT");
+    private static final String LUT_FILENAME = "LUTRobot_StateActionTable.txt";
+    private static final String BASE_FILENAME = "LUTRobot_StateActionTable.bin";
+    private static final String JOURNAL_FILENAME = "LUTRobot_StateActionTable.journal";
+
+    // Data-parallel training settings
+    public static final int BATCH_SIZE = 125;           // Training patterns for each weight update
+    private static final int NUM_ROWS = 3125;           // Total rows of the LUT (5^5)
+    private static final int NUM_COLS = 5;              // 4 normalized states + 1 bias input
+    public static final boolean SHUFFLE_EACH_EPOCH = false;     // Shuffle the training set before each epoch
+    private static final long SHUFFLE_SEED = 502;
+
+    // Bipolar value (-1 to 1) of each state level (0 to 4)
+    private static final double[] NORMALIZED_LEVELS = {-1.0, -0.5, 0.0, 0.5, 1.0};
+
+    // Training loop settings
+    public static final int MAX_EPOCHS = 1000;          // Epoch guard
+    public static final int PATIENCE = 50;              // Epochs without improvement before stopping
+    public static final double MIN_DELTA = 1e-5;        // Minimum decrease of the error to count as improvement
+    public static final int CHECKPOINT_INTERVAL = 25;   // Minimum epochs between two checkpoint writes
+
     public static void main(String[] args) throws IOException {
 
         // Initialize Neural Net structure
@@ -30,67 +56,104 @@ public class LUT_NNRunner {
         );
 
         // Load LUT and normalize the Q-values
-        StateActionTable trainedLUT = new StateActionTable(5, 5, 5, 5, 5);
-        trainedLUT.load("out/statistics/LUT/LUTRobot_StateActionTable.txt");
+        StateActionTable trainedLUT = loadTrainedLUT();
         trainedLUT.normalizeQ();
 
-        // Initialize parameters and NN weights
-        int epoch = 0;
-        double totalLoss;
+        // Initialize NN weights
         nn.initializeWeights();
 
-        // Use LUT to train the weights of NN
-        do {
-            // Reset the total loss for each epoch
-            totalLoss = 0;
-            for (int a = 0; a < 5; a++) {
-                for (int b = 0; b < 5; b++) {
-                    for (int c = 0; c < 5; c++) {
-                        for (int d = 0; d < 5; d++) {
-                            for (int e = 0; e < 5; e++) {
-                                // Normalize input states
-                                double[] X = normalizeStates(a, b, c, d);
-                                // Get the original index for each state
-                                double[] lutIndex = {a, b, c, d, e};
-                                // Train and calculate the total loss
-                                double singleLoss = nn.train(X, trainedLUT.outputFor(lutIndex));
-                                totalLoss += singleLoss;
-                            }
-                        }
-                    }
+        // Number of worker threads (default 1: the serial online training, one weight update for each pattern)
+        // More threads switch to averaged minibatches of BATCH_SIZE (opt-in: far fewer weight updates for each epoch)
+        int numThreads = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        ParallelTrainer trainer = (numThreads > 1) ? new ParallelTrainer(nn, numThreads, BATCH_SIZE) : null;
+
+        // Build the normalized training set once (same order as the LUT)
+        TrainingSet trainingSet = buildTrainingSet(trainedLUT);
+        Random shuffleRandom = new Random(SHUFFLE_SEED);
+
+        // Use LUT to train the weights of NN (stops early once the error has plateaued)
+        TrainingLoop loop = new TrainingLoop(nn, MAX_EPOCHS, PATIENCE, MIN_DELTA, 0);
+        loop.setCheckpoint(new File("preTrainedWeights.txt"), CHECKPOINT_INTERVAL);
+        loop.setMetrics(System.out);
+        long startTime = System.currentTimeMillis();
+        loop.run(epoch -> {
+            if (SHUFFLE_EACH_EPOCH) {
+                trainingSet.shuffle(shuffleRandom);
+            }
+            double totalLoss = 0;
+            if (trainer != null) {
+                // Data-parallel training: one weight update for each batch
+                totalLoss = trainer.trainEpoch(trainingSet);
+            } else {
+                // Serial training: one weight update for each training pattern
+                double[] features = trainingSet.getFeatures();
+                for (int i = 0; i < trainingSet.size(); i++) {
+                    totalLoss += nn.train(features, trainingSet.offsetOf(i), trainingSet.getTarget(i));
                 }
             }
             // Get the Root Mean Square Error of each epoch
-            double totalError = Math.pow(totalLoss/3125, 0.5);
-            System.out.println("Epoch: " + epoch + ", total error: " + totalError);
-            // Epoch finished
-            epoch++;
-        } while (epoch < 1000);
-        // Save the weights of NN
-        File weights = new File("preTrainedWeights.txt");
-        nn.saveWeights(weights);
+            return Math.pow(totalLoss/NUM_ROWS, 0.5);
+        });
+        if (trainer != null) {
+            trainer.shutdown();
+        }
+        System.out.println("Threads: " + numThreads + ", training time: " + (System.currentTimeMillis() - startTime) + " ms");
+        // The best weights of NN have been saved by the training loop
+        System.out.println("Stopped (" + loop.getStopReason() + ") after " + loop.getEpochs() + " epochs, best error: "
+                + loop.getBestError() + " at epoch " + loop.getBestEpoch());
         // End pre-training
         System.out.println("-------------------- NN pre-training is done! --------------------");
     }
 
 
-    // Normalize the inputs of LUT for NN training
-    private static double[] normalizeStates(int energy1, int dist1, int energy2, int dist2) {
-
-        Map<Integer, Double> normalizeBipolar = new HashMap<Integer, Double>() {{
-            put(0, -1.0);
-            put(1, -0.5);
-            put(2, 0.0);
-            put(3, 0.5);
-            put(4, 1.0);
-        }};
-
-        return new double[] {
-                normalizeBipolar.get(energy1),
-                normalizeBipolar.get(dist1),
-                normalizeBipolar.get(energy2),
-                normalizeBipolar.get(dist2),
-                1.0                      // bias for NN training
-        };
+    // Load the LUT of LUTRobot from its text file, or from its bases & journal if there is no text file
+    static StateActionTable loadTrainedLUT() throws IOException {
+        StateActionTable lut = new StateActionTable(5, 5, 5, 5, 5);
+        File textFile = new File(LUT_DIRECTORY, LUT_FILENAME);
+        if (textFile.exists()) {
+            lut.load(textFile.getPath());
+            return lut;
+        }
+        TableJournal journal = new TableJournal(lut, OpponentModelCache.Storage.inDirectory(LUT_DIRECTORY),
+                BASE_FILENAME, JOURNAL_FILENAME, Integer.MAX_VALUE);
+        journal.load();
+        if (journal.getGeneration() < 0) {
+            throw new IOException("No LUT in " + LUT_DIRECTORY + " (" + LUT_FILENAME + " or " + BASE_FILENAME + " & journal)");
+        }
+        return lut;
+    }
+
+
+    /** Normalize the inputs of LUT for NN training, and build the whole training set once.
+     *  Each row is (energy1, dist1, energy2, dist2, bias) with the target Q-value of the LUT.
+     */
+    static TrainingSet buildTrainingSet(StateActionTable lut) {
+        TrainingSet set = new TrainingSet(NUM_ROWS, NUM_COLS);
+        double[] row = new double[NUM_COLS];
+        double[] lutIndex = new double[5];
+        row[NUM_COLS - 1] = 1.0;        // bias for NN training
+        for (int a = 0; a < 5; a++) {
+            for (int b = 0; b < 5; b++) {
+                for (int c = 0; c < 5; c++) {
+                    for (int d = 0; d < 5; d++) {
+                        for (int e = 0; e < 5; e++) {
+                            // Normalize input states
+                            row[0] = NORMALIZED_LEVELS[a];
+                            row[1] = NORMALIZED_LEVELS[b];
+                            row[2] = NORMALIZED_LEVELS[c];
+                            row[3] = NORMALIZED_LEVELS[d];
+                            // Get the original index for each state
+                            lutIndex[0] = a;
+                            lutIndex[1] = b;
+                            lutIndex[2] = c;
+                            lutIndex[3] = d;
+                            lutIndex[4] = e;
+                            set.add(row, lut.outputFor(lutIndex));
+                        }
+                    }
+                }
+            }
+        }
+        return set;
     }
-}
\ No newline at end of file
+}
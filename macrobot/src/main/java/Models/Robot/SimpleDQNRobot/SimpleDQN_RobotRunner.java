@@ -1,13 +1,33 @@
 package Models.Robot.SimpleDQNRobot;
 
+import Models.Bundle.BundleStore;
+import Models.Bundle.ModelBundle;
+import Models.Bundle.ModelBundleWriter;
+import Models.Cache.OpponentModelCache;
+import Models.NeuralNet.BatchWorkspace;
+import Models.NeuralNet.InferenceWorkspace;
 import Models.NeuralNet.NN_OneHiddenLayer;
+import Models.NeuralNet.WeightSnapshot;
+import Models.ParameterServer.ParameterClient;
+import Models.ParameterServer.ParameterServer;
+import Models.ReplayMemory.MappedReplayMemory;
 import Models.ReplayMemory.ReplayMemory;
+import Models.ReplayMemory.TransitionCountStore;
+import Models.ReplayMemory.TransitionRing;
 import Models.Robot.LUTRobot.LUT_RobotRunner;
+import Models.Robot.Discretizer;
+import Models.Robot.RobotDataStorage;
+import Models.Robot.StateEncoder;
 import Tools.LogFile;
+import Tools.RandomStreams;
 import robocode.*;
 
 import java.awt.*;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Random;
 
 import static Models.NeuralNet.NN_OneHiddenLayer.fixedWeightMax;
@@ -21,27 +41,36 @@ public class SimpleDQN_RobotRunner extends AdvancedRobot {
      public enum enumEnergy {zero, dangerous, low, medium, high}             // States for energy
      public enum enumDistance {veryNear, near, normal, far, veryFar}         // States for distance
      public enum enumActions {circle, retreat, advance, goCenter, fire}      // Actions
+     private static final int NUM_ACTIONS = enumActions.values().length;
+     private static final LUT_RobotRunner.enumActions[] LUT_ACTIONS = LUT_RobotRunner.enumActions.values();
 
-     // Initialize current and previous States & Action
-     private LUT_RobotRunner.enumEnergy currMyEnergy = LUT_RobotRunner.enumEnergy.high;
-     private LUT_RobotRunner.enumEnergy currEnemyEnergy = LUT_RobotRunner.enumEnergy.high;
-     private LUT_RobotRunner.enumDistance currDistanceToEnemy = LUT_RobotRunner.enumDistance.near;
-     private LUT_RobotRunner.enumDistance currDistanceToCenter = LUT_RobotRunner.enumDistance.near;
-     private LUT_RobotRunner.enumActions currAction = LUT_RobotRunner.enumActions.circle;
+     // Current and previous States (discretized levels, written into reusable NN input buffers)
+     private final StateEncoder encoder = new StateEncoder(
+             enumEnergy.values().length,
+             enumDistance.values().length,
+             NUM_ACTIONS
+     );
 
-     private LUT_RobotRunner.enumEnergy prevMyEnergy = LUT_RobotRunner.enumEnergy.high;
-     private LUT_RobotRunner.enumEnergy prevEnemyEnergy = LUT_RobotRunner.enumEnergy.high;
-     private LUT_RobotRunner.enumDistance prevDistanceToEnemy = LUT_RobotRunner.enumDistance.near;
-     private LUT_RobotRunner.enumDistance prevDistanceToCenter = LUT_RobotRunner.enumDistance.near;
+     // Initialize current and previous Action
+     private LUT_RobotRunner.enumActions currAction = LUT_RobotRunner.enumActions.circle;
      private LUT_RobotRunner.enumActions prevAction = LUT_RobotRunner.enumActions.circle;
 
+     // Discretizers of the raw State values (bin edges can be tuned in the robot data directory)
+     static Discretizer.StateDiscretizers discretizers = Discretizer.defaults();
+     static boolean isDiscretizerLoaded = false;
+     private static final LUT_RobotRunner.enumEnergy[] ENERGY_LEVELS = LUT_RobotRunner.enumEnergy.values();
+     private static final LUT_RobotRunner.enumDistance[] DISTANCE_LEVELS = LUT_RobotRunner.enumDistance.values();
+
+     // Random generator of this robot & round (seeded from the experiment seed, see RandomStreams)
+     private Random random = null;
+
      int currActionNum;
 
      // NN structure
      private static final int INPUT_LAYERS_NUM = 4;
      private static final int HIDDEN_LAYERS_NUM = 10;
      private static final int OUTPUT_LAYERS_NUM = 1;
-     public static NN_OneHiddenLayer[] nn = new NN_OneHiddenLayer[enumActions.values().length];
+     public static NN_OneHiddenLayer[] nn = new NN_OneHiddenLayer[NUM_ACTIONS];
      private double RMSError = 0.0;
 
      // NN training hyperparameters
@@ -76,7 +105,7 @@ public class SimpleDQN_RobotRunner extends AdvancedRobot {
      private static String scoreListFile = "scoreList_LR_" + NN_LEARNING_RATE + "_MT_" + NN_MOMENTUM + "_HidNum_" + HIDDEN_LAYERS_NUM + "_epsilon_" + epsilon + ".txt";
      static String LOG_Filename = "NNRobot_Statistics.txt";
      static LogFile log = null;
-     private File weights[] = new File[enumActions.values().length];
+     private File weights[] = new File[NUM_ACTIONS];
      private static final int BATCH = 100;
 
      // Initialize statistic parameters
@@ -93,6 +122,62 @@ public class SimpleDQN_RobotRunner extends AdvancedRobot {
      private static final boolean RECORD_MEMORY_ON = false;
      private static final int RECORD_MEMORY_N = 15;
      public static ReplayMemory<Experience> memory = new ReplayMemory<>(RECORD_MEMORY_N);
+     private static final int REPLAY_BATCH_SIZE = RECORD_MEMORY_N;      // Experiences for each replay step
+     // Keep the replay memory in a memory-mapped file of the data directory, so it survives across battles
+     // (needs the Robocode security manager to be off: -DNOSECURITY=true; mind the data directory quota)
+     private static final boolean PERSISTENT_MEMORY_ON = false;
+     private static final int PERSISTENT_MEMORY_N = 1000;
+     static String PERSISTENT_MEMORY_Filename = "NNRobot_ReplayMemory.bin";
+     static MappedReplayMemory persistentMemory = null;
+     static boolean isPersistentMemoryOpened = false;
+     // Store each distinct discretized transition once with its count & reward sum, and replay by count
+     private static final boolean AGGREGATED_MEMORY_ON = false;
+     static TransitionCountStore transitionCounts = new TransitionCountStore(1024);
+
+     // Preallocated minibatch matrices of the replay step (one row for each experience)
+     private final double[] replayStates = new double[REPLAY_BATCH_SIZE * (INPUT_LAYERS_NUM + 1)];
+     private final double[] replayNextStates = new double[REPLAY_BATCH_SIZE * (INPUT_LAYERS_NUM + 1)];
+     private final int[] replayActions = new int[REPLAY_BATCH_SIZE];
+     private final double[] replayRewards = new double[REPLAY_BATCH_SIZE];
+     private final int[] replayEntries = new int[REPLAY_BATCH_SIZE];
+     private final double[] replayBestNextQ = new double[REPLAY_BATCH_SIZE];
+     private final double[] replayQ = new double[REPLAY_BATCH_SIZE];
+     private final double[] actionStates = new double[REPLAY_BATCH_SIZE * (INPUT_LAYERS_NUM + 1)];
+     private final double[] actionTargets = new double[REPLAY_BATCH_SIZE];
+     private final int[] actionRows = new int[REPLAY_BATCH_SIZE];
+     private BatchWorkspace replayWorkspace = null;
+
+     // Actor-learner split: the robot only runs inference, a background thread trains the NNs
+     private static final boolean ASYNC_LEARNER_ON = true;
+     private static final int RING_CAPACITY = 1024;           // Transitions waiting for the learner
+     private static final int LEARNER_MEMORY_N = 10000;       // Replay memory size of the learner
+     private static final int LEARNER_BATCH = 32;             // Transitions for each training batch
+     private static final int LEARNER_PUBLISH_INTERVAL = 10;  // Batches between two weight snapshots
+     private static final int LEARNER_REPLAY_RATIO = 16;      // Max trained samples for each new transition
+     // Share the learner weights with other battle JVMs through a local ParameterServer
+     // (needs the Robocode security manager to be off: -DNOSECURITY=true)
+     private static final boolean PARAMETER_SERVER_ON = false;
+     private static final int PARAMETER_SERVER_PORT = ParameterServer.DEFAULT_PORT;
+     static TransitionRing ring = new TransitionRing(RING_CAPACITY, INPUT_LAYERS_NUM + 1);
+     static BackgroundLearner learner = null;
+     static Thread learnerThread = null;
+     private WeightSnapshot[] snapshots = null;               // Learner weights used for this turn (immutable)
+
+     // One set of NNs for each enemy (loaded on its first scan, least recently used ones spilled to disk)
+     // (inline learning only: the background learner trains one shared set of NNs)
+     private static final boolean PER_OPPONENT_ON = false;
+     private static final int OPPONENT_CACHE_MODELS = 8;      // Sets of NNs kept in memory
+     static String OPPONENT_FILE_PREFIX = "NNRobot_Weights_";
+     static OpponentModelCache<NN_OneHiddenLayer[]> opponentNets = null;
+     static String currentOpponent = null;
+     static NN_OneHiddenLayer[] sharedNets = null;            // NNs loaded at the start of the round (start of each new enemy)
+
+     // Keep all NN weights & momentum state in one bundle file (instead of 5 text files)
+     // (two alternating files NNRobot_Models_0.bundle & _1.bundle: a crash while saving keeps the previous one)
+     private static final boolean BUNDLE_ON = true;
+     static String BUNDLE_Filename = "NNRobot_Models.bundle";
+     private BundleStore bundles = null;                      // Bundle files of this round
+     private InferenceWorkspace workspace = null;             // Scratch buffers of this robot for inference
 
      // Initialize Experience
      public static class Experience {
@@ -106,12 +191,49 @@ public class SimpleDQN_RobotRunner extends AdvancedRobot {
      // Main method of the robot, operations should be in this section
      @Override
      public void run() {
+          random = RandomStreams.shared().forKey(getName() + "/" + getRoundNum());
 
           // Create a new NN for training
           setNeuralNets();
 
           // Load previous NN weights
           loadWeights();
+          sharedNets = nn;
+
+          // Create the per-enemy NNs once, the files are resolved through the robot of this round
+          if (PER_OPPONENT_ON && !ASYNC_LEARNER_ON) {
+               if (opponentNets == null) {
+                    long budget = OPPONENT_CACHE_MODELS * (long) NUM_ACTIONS * nn[0].getNumWeights() * Double.BYTES;
+                    opponentNets = new OpponentModelCache<>(newNetsCodec(), new RobotDataStorage(this),
+                            OPPONENT_FILE_PREFIX, budget);
+               } else {
+                    opponentNets.setStorage(new RobotDataStorage(this));
+               }
+               // The shared NNs have just been loaded, switch again on the first scan
+               currentOpponent = null;
+          }
+
+          // Start the learner thread (again if Robocode has stopped it at the end of a round)
+          if (ASYNC_LEARNER_ON && (learnerThread == null || !learnerThread.isAlive())) {
+               startLearner();
+          }
+          if (ASYNC_LEARNER_ON && workspace == null) {
+               workspace = learner.getSnapshots()[0].newWorkspace();
+          }
+
+          // Load the bin edges of the States once (default edges if there is no properties file)
+          if (!isDiscretizerLoaded) {
+               discretizers = Discretizer.loadDefaults(getDataFile(Discretizer.PROPERTIES_FILENAME));
+               isDiscretizerLoaded = true;
+          }
+
+          // Initialize current and previous States
+          encoder.reset(
+                  LUT_RobotRunner.enumEnergy.high.ordinal(),
+                  LUT_RobotRunner.enumDistance.near.ordinal(),
+                  LUT_RobotRunner.enumEnergy.high.ordinal(),
+                  LUT_RobotRunner.enumDistance.near.ordinal()
+          );
 
           // Set our robot style
           setBodyColor(Color.black);
@@ -124,6 +246,17 @@ public class SimpleDQN_RobotRunner extends AdvancedRobot {
           xMid = (int) getBattleFieldWidth() / 2;
           yMid = (int) getBattleFieldHeight() / 2;
 
+          // Open the persistent replay memory once (reads the header only)
+          if (RECORD_MEMORY_ON && PERSISTENT_MEMORY_ON && !isPersistentMemoryOpened) {
+               isPersistentMemoryOpened = true;
+               try {
+                    persistentMemory = MappedReplayMemory.open(getDataFile(PERSISTENT_MEMORY_Filename),
+                            PERSISTENT_MEMORY_N, INPUT_LAYERS_NUM + 1);
+               } catch (IOException | RuntimeException e) {
+                    System.out.println("*** Cannot open the persistent replay memory, using the in-memory one: " + e);
+               }
+          }
+
           // Create the log file for statistics
           if (log == null) {
                log = new LogFile(getDataFile(LOG_Filename));
@@ -132,7 +265,8 @@ public class SimpleDQN_RobotRunner extends AdvancedRobot {
                log.stream.printf("EXPLORING EPISODES, %d\n", EXPLORING_EPISODES);
                log.stream.printf("LEARNING RATE (ALPHA), %2.2f\n", Q_LEARNING_RATE);
                log.stream.printf("DISCOUNT RATE (GAMMA), %2.2f\n", Q_DISCOUNT_RATE);
-               log.stream.printf("EXPLORE RATE (EPSILON), %2.2f\n\n", epsilon);
+               log.stream.printf("EXPLORE RATE (EPSILON), %2.2f\n", epsilon);
+               log.stream.printf("RANDOM SEED, %d\n\n", RandomStreams.shared().getSeed());
                log.stream.print("--------------REWARDS--------------\n");
                log.stream.printf("GOOD TERMINAL REWARD, %2.2f\n", goodTerminalReward);
                log.stream.printf("BAD TERMINAL REWARD, %2.2f\n", badTerminalReward);
@@ -161,8 +295,9 @@ public class SimpleDQN_RobotRunner extends AdvancedRobot {
      // Pick the current action of our robot
      private void robotAction() {
 
-          // Get current action
+          // Get current action (kept as the enum too: it is the action taken in the previous state at the next scan)
           currActionNum = getAction();
+          currAction = LUT_ACTIONS[currActionNum];
 
           // Turn body and move robot will be conducted simultaneously (AdvancedRobot)
           switch (currActionNum) {
@@ -208,8 +343,10 @@ public class SimpleDQN_RobotRunner extends AdvancedRobot {
      }
 
 
+     // Create new NNs for this round (a new array: the previous one may be the NNs of an enemy, kept by the cache)
      public void setNeuralNets(){
-          for(int i = 0; i< enumActions.values().length; i++){
+          nn = new NN_OneHiddenLayer[NUM_ACTIONS];
+          for(int i = 0; i< NUM_ACTIONS; i++){
                nn[i]=new NN_OneHiddenLayer(INPUT_LAYERS_NUM, HIDDEN_LAYERS_NUM, OUTPUT_LAYERS_NUM, NN_LEARNING_RATE, NN_MOMENTUM, fixedWeightMin, fixedWeightMax, true);
           }
      }
@@ -218,54 +355,57 @@ public class SimpleDQN_RobotRunner extends AdvancedRobot {
      // Get the next action
      public int getAction() {
 
-          // Save the current and previous state
-          double[] currStates = new double[5];
-          currStates[0] = currMyEnergy.ordinal();
-          currStates[1] = currDistanceToEnemy.ordinal();
-          currStates[2] = currEnemyEnergy.ordinal();
-          currStates[3] = currDistanceToCenter.ordinal();
+          // Use the latest weights published by the learner (no copy, no lock)
+          if (ASYNC_LEARNER_ON) {
+               snapshots = learner.getSnapshots();
+          }
 
-          double[] prevStates = new double[5];
-          prevStates[0] = prevMyEnergy.ordinal();
-          prevStates[1] = prevDistanceToEnemy.ordinal();
-          prevStates[2] = prevEnemyEnergy.ordinal();
-          prevStates[3] = prevDistanceToCenter.ordinal();
+          // Get the current and previous state (reusable buffers, no allocation)
+          double[] currStates = encoder.currStates();
+          double[] prevStates = encoder.prevStates();
 
-          // Get the current and previous best action
+          // Get the current and previous best action, and the action actually taken in the previous state
           int nextAction = getBestAction(currStates);
-          int prevAction = getBestAction(prevStates);
+          int bestPrevAction = getBestAction(prevStates);
+          int takenAction = prevAction.ordinal();
 
           // Get the current and previous Q-values
-          double currQ = nn[nextAction].outputFor(currStates);
-          double prevQ = nn[prevAction].outputFor(prevStates);
+          double currQ = qValue(nextAction, currStates);
+          double prevQ = qValue(bestPrevAction, prevStates);
 
           // Calculate the error
           double error = Q_LEARNING_RATE * (currReward + Q_DISCOUNT_RATE * currQ - prevQ);
           RMSError += error * error;
 
-          // Train the weights of NN
-          double correctPrevQ = prevQ + error;
-          nn[prevAction].train(prevStates, correctPrevQ);
+          if (ASYNC_LEARNER_ON) {
+               // Hand the transition to the learner (dropped if the learner is too far behind)
+               ring.offer(prevStates, takenAction, currReward, currStates);
+          } else {
+               // Train the weights of NN
+               double correctPrevQ = prevQ + error;
+               nn[bestPrevAction].train(prevStates, correctPrevQ);
+          }
 
           // Train replay memory
-          if(RECORD_MEMORY_ON) {
-               // Create and save the experiences
+          if(RECORD_MEMORY_ON && AGGREGATED_MEMORY_ON) {
+               // Count the transition (no allocation, duplicates are merged)
+               transitionCounts.add(encoder.prevKey(takenAction), encoder.stateOf(encoder.currKey(0)), currReward);
+          } else if(RECORD_MEMORY_ON && persistentMemory != null) {
+               // Write the experience straight into the mapped file
+               persistentMemory.add(prevStates, takenAction, currReward, currStates);
+          } else if(RECORD_MEMORY_ON) {
+               // Create and save the experiences (copy the states, the buffers are reused)
                Experience exp = new Experience();
-               exp.currState = prevStates;
-               exp.action = prevAction;
+               exp.currState = prevStates.clone();
+               exp.action = takenAction;
                exp.reward = currReward;
-               exp.nextState = currStates;
+               exp.nextState = currStates.clone();
                memory.add(exp);
           }
 
-          // Keep the current states
-          for (int i = 0; i < INPUT_LAYERS_NUM; i++) {
-               prevStates[i] = currStates[i];
-          }
-
           // Exploration or exploitation
-          if(Math.random() < epsilon) {
-               return (int)(Math.random() * enumActions.values().length);
+          if(random.nextDouble() < epsilon) {
+               return random.nextInt(NUM_ACTIONS);
           }
           return nextAction;
      }
@@ -273,14 +413,25 @@ public class SimpleDQN_RobotRunner extends AdvancedRobot {
      // Get the best action
      public int getBestAction(double[] currState) {
           int nextAction = 0;
-          for(int i = 0; i < enumActions.values().length; i++) {
-               if(nn[i].outputFor(currState) > nn[nextAction].outputFor(currState)) {
+          double bestQ = qValue(0, currState);
+          for(int i = 1; i < NUM_ACTIONS; i++) {
+               double q = qValue(i, currState);
+               if(q > bestQ) {
+                    bestQ = q;
                     nextAction = i;
                }
           }
           return nextAction;
      }
 
+     // Returns the Q-value of the action (learner snapshot when async, own NN otherwise)
+     private double qValue(int action, double[] state) {
+          if (snapshots != null) {
+               return snapshots[action].outputFor(state, workspace);
+          }
+          return nn[action].outputFor(state);
+     }
+
      /** When enemy is scanned by our radar each turn:
       *  1. Update the States (previous and current) and Action (only previous).
       *  2. The picked Action has been executed, so the States and Action should be "previous" (t to t+1).
@@ -296,17 +447,17 @@ public class SimpleDQN_RobotRunner extends AdvancedRobot {
           enemyEnergyValue = e.getEnergy();
           enemyBearingValue = e.getBearing();
 
+          // Use the NNs of this enemy
+          selectOpponent(e.getName());
+
           // Update States and Action (t to t+1)
-          prevMyEnergy = currMyEnergy;
-          prevDistanceToEnemy = currDistanceToEnemy;
-          prevEnemyEnergy = currEnemyEnergy;
-          prevDistanceToCenter = currDistanceToCenter;
           prevAction = currAction;
-
-          currMyEnergy = enumEnergyOf(myEnergyValue);
-          currDistanceToEnemy = enumDistanceOf(enemyDistanceValue);
-          currEnemyEnergy = enumEnergyOf(enemyEnergyValue);
-          currDistanceToCenter = enumDistanceOf(distanceToCenter(myX, myY, xMid, yMid));
+          encoder.update(
+                  discretizers.energy.levelOf(myEnergyValue),
+                  discretizers.distance.levelOf(enemyDistanceValue),
+                  discretizers.energy.levelOf(enemyEnergyValue),
+                  discretizers.distance.levelOf(distanceToCenter(myX, myY, xMid, yMid))
+          );
 
      }
 
@@ -323,7 +474,6 @@ public class SimpleDQN_RobotRunner extends AdvancedRobot {
           currReward += goodTerminalReward;
 
           // Update Q-value (need to do this since our robot cannot scan after the end of the game)
-          double[] prevStateActionIndex = getPrevStateActionIndex();
           getAction();
 
           // Save the win rate for each batch to the log file
@@ -345,7 +495,6 @@ public class SimpleDQN_RobotRunner extends AdvancedRobot {
           currReward += badTerminalReward;
 
           // Update Q-value (need to do this since our robot cannot scan after the end of the game)
-          double[] prevStateActionIndex = getPrevStateActionIndex();
           getAction();
 
           // Save the win rate for each batch to the log file
@@ -355,15 +504,9 @@ public class SimpleDQN_RobotRunner extends AdvancedRobot {
      }
 
 
-     // Returns the array of indices for previous States & Action
-     public double[] getPrevStateActionIndex() {
-          return new double[] {
-                  prevMyEnergy.ordinal(),
-                  prevDistanceToEnemy.ordinal(),
-                  prevEnemyEnergy.ordinal(),
-                  prevDistanceToCenter.ordinal(),
-                  prevAction.ordinal()
-          };
+     // Returns the index (packed key) of previous States & Action
+     public int getPrevStateActionIndex() {
+          return encoder.prevKey(prevAction.ordinal());
      }
 
 
@@ -453,55 +596,19 @@ public class SimpleDQN_RobotRunner extends AdvancedRobot {
 
      // Get a random action
      public LUT_RobotRunner.enumActions getRandomAction() {
-          Random rand = new Random();
-          int r = rand.nextInt(LUT_RobotRunner.enumActions.values().length);
-          return LUT_RobotRunner.enumActions.values()[r];
+          return LUT_ACTIONS[random.nextInt(LUT_ACTIONS.length)];
      }
 
 
      // Define the distance state
      public LUT_RobotRunner.enumDistance enumDistanceOf(double distance) {
-          LUT_RobotRunner.enumDistance distanceState = null;
-          if (distance < 75) {
-               // For veryNear state
-               distanceState = LUT_RobotRunner.enumDistance.veryNear;
-          } else if (distance >= 75 && distance < 200) {
-               // For near state
-               distanceState = LUT_RobotRunner.enumDistance.near;
-          } else if (distance >= 200 && distance < 500) {
-               // For normal state
-               distanceState = LUT_RobotRunner.enumDistance.normal;
-          } else if (distance >= 500 && distance < 700) {
-               // For far state
-               distanceState = LUT_RobotRunner.enumDistance.far;
-          } else if (distance >= 700) {
-               // For veryFar state
-               distanceState = LUT_RobotRunner.enumDistance.veryFar;
-          }
-          return distanceState;
+          return DISTANCE_LEVELS[discretizers.distance.levelOf(distance)];
      }
 
 
      // Define the energy state
      public LUT_RobotRunner.enumEnergy enumEnergyOf(double energy) {
-          LUT_RobotRunner.enumEnergy energyState = null;
-          if (energy == 0) {
-               // For zero state
-               energyState = LUT_RobotRunner.enumEnergy.zero;
-          } else if (energy > 0 && energy < 15) {
-               // For dangerous state
-               energyState = LUT_RobotRunner.enumEnergy.dangerous;
-          } else if (energy >= 15 && energy < 35) {
-               // For low state
-               energyState = LUT_RobotRunner.enumEnergy.low;
-          } else if (energy >= 35 && energy < 65) {
-               // For medium state
-               energyState = LUT_RobotRunner.enumEnergy.medium;
-          } else if (energy >= 65) {
-               // For high state
-               energyState = LUT_RobotRunner.enumEnergy.high;
-          }
-          return energyState;
+          return ENERGY_LEVELS[discretizers.energy.levelOf(energy)];
      }
 
 
@@ -532,41 +639,214 @@ public class SimpleDQN_RobotRunner extends AdvancedRobot {
      }
 
 
-     // Replay memory Training
+     // Create the learner with a copy of the current NNs, and start its thread
+     private void startLearner() {
+          NN_OneHiddenLayer[] learnerNets = new NN_OneHiddenLayer[NUM_ACTIONS];
+          double[] weights = new double[nn[0].getNumWeights()];
+          for (int i = 0; i < NUM_ACTIONS; i++) {
+               learnerNets[i] = new NN_OneHiddenLayer(INPUT_LAYERS_NUM, HIDDEN_LAYERS_NUM, OUTPUT_LAYERS_NUM, NN_LEARNING_RATE, NN_MOMENTUM, fixedWeightMin, fixedWeightMax, true);
+               nn[i].getWeights(weights);
+               learnerNets[i].setWeights(weights);
+          }
+          learner = new BackgroundLearner(learnerNets, ring, LEARNER_MEMORY_N, LEARNER_BATCH, LEARNER_PUBLISH_INTERVAL,
+                  LEARNER_REPLAY_RATIO, Q_LEARNING_RATE, Q_DISCOUNT_RATE, System.nanoTime());
+          if (PARAMETER_SERVER_ON) {
+               try {
+                    learner.setParameterClient(ParameterClient.connect(PARAMETER_SERVER_PORT));
+               } catch (IOException e) {
+                    System.out.println("*** Could not connect to the parameter server, training locally");
+               }
+          }
+          learnerThread = learner.start();
+     }
+
+
+     /** Replay memory Training (the background learner replays continuously instead).
+      *  The sampled experiences are copied into preallocated minibatch matrices once, then:
+      *  1. Best Q-value of each next state: one batched forward pass for each action NN
+      *  2. For each action NN: one batched forward pass over its experiences, and ONE batched update
+      *     toward the corrected Q-values
+      */
      public void replayMemoryTraining() {
-          // Create experience slots
-          Object[] experiences = memory.randomSample(RECORD_MEMORY_N);
-          // Train experiences
-          for(Object e: experiences) {
-               // Cast the data type
-               Experience x = (Experience) e;
-               // Get the best action
-               int nextAction = getBestAction(x.currState);
-               // Get the Q-values and calculate the error
-               double currentQ = nn[nextAction].outputFor(x.nextState);
-               double previousQ = nn[x.action].outputFor(x.currState);
-               double error = Q_LEARNING_RATE * (x.reward + Q_DISCOUNT_RATE * currentQ - previousQ);
-               // Train the NN weights for replay memory
-               double correctPreviousQ = previousQ + error;
-               nn[currActionNum].train(x.currState, correctPreviousQ);
+          if (ASYNC_LEARNER_ON) {
+               return;
           }
+          int width = INPUT_LAYERS_NUM + 1;
+          int rows;
+          if (AGGREGATED_MEMORY_ON) {
+               // Sample distinct transitions by count, and decode their keys into the minibatch matrices
+               rows = transitionCounts.sample(random, REPLAY_BATCH_SIZE, replayEntries);
+               for (int r = 0; r < rows; r++) {
+                    int entry = replayEntries[r];
+                    int stateActionKey = transitionCounts.getStateActionKey(entry);
+                    encoder.writeState(encoder.stateOf(stateActionKey), replayStates, r * width);
+                    encoder.writeState(transitionCounts.getNextStateKey(entry), replayNextStates, r * width);
+                    replayActions[r] = encoder.actionOf(stateActionKey);
+                    replayRewards[r] = transitionCounts.getMeanReward(entry);
+               }
+          } else if (persistentMemory != null) {
+               // Copy the sampled records from the mapped file straight into the minibatch matrices
+               rows = persistentMemory.sample(random, Math.min(REPLAY_BATCH_SIZE, persistentMemory.size()),
+                       replayStates, replayNextStates, replayActions, replayRewards);
+          } else {
+               // Create experience slots
+               Object[] experiences = memory.randomSample(Math.min(REPLAY_BATCH_SIZE, memory.sizeOf()), random);
+               rows = experiences.length;
+
+               // Copy the experiences into the minibatch matrices
+               for (int r = 0; r < rows; r++) {
+                    Experience x = (Experience) experiences[r];
+                    System.arraycopy(x.currState, 0, replayStates, r * width, width);
+                    System.arraycopy(x.nextState, 0, replayNextStates, r * width, width);
+                    replayActions[r] = x.action;
+                    replayRewards[r] = x.reward;
+               }
+          }
+          if (rows == 0) {
+               return;
+          }
+          if (replayWorkspace == null) {
+               replayWorkspace = nn[0].newBatchWorkspace(REPLAY_BATCH_SIZE);
+          }
+
+          // Get the best Q-value of each next state
+          Arrays.fill(replayBestNextQ, 0, rows, -Double.MAX_VALUE);
+          for (int a = 0; a < NUM_ACTIONS; a++) {
+               nn[a].outputsFor(replayNextStates, rows, replayWorkspace, replayQ);
+               for (int r = 0; r < rows; r++) {
+                    replayBestNextQ[r] = Math.max(replayBestNextQ[r], replayQ[r]);
+               }
+          }
+
+          // Train the NN of each action on its experiences (one batched update each)
+          for (int a = 0; a < NUM_ACTIONS; a++) {
+               int count = 0;
+               for (int r = 0; r < rows; r++) {
+                    if (replayActions[r] == a) {
+                         System.arraycopy(replayStates, r * width, actionStates, count * width, width);
+                         actionRows[count++] = r;
+                    }
+               }
+               if (count == 0) {
+                    continue;
+               }
+               // Get the Q-values and calculate the corrected Q-values
+               nn[a].outputsFor(actionStates, count, replayWorkspace, replayQ);
+               for (int k = 0; k < count; k++) {
+                    int r = actionRows[k];
+                    double error = Q_LEARNING_RATE * (replayRewards[r] + Q_DISCOUNT_RATE * replayBestNextQ[r] - replayQ[k]);
+                    actionTargets[k] = replayQ[k] + error;
+               }
+               nn[a].trainBatch(actionStates, actionTargets, count, replayWorkspace);
+          }
+     }
+
+
+     // Switch to the NNs of the scanned enemy (loaded or created on its first scan)
+     private void selectOpponent(String name) {
+          if (opponentNets == null || name.equals(currentOpponent)) {
+               return;
+          }
+          currentOpponent = name;
+          nn = opponentNets.get(name);
+     }
+
+
+     // Binary format of the per-enemy NNs (number of weights, then the flat weights of each action NN)
+     private OpponentModelCache.Codec<NN_OneHiddenLayer[]> newNetsCodec() {
+          return new OpponentModelCache.Codec<>() {
+               @Override
+               public NN_OneHiddenLayer[] create() {
+                    // A new enemy starts from a copy of the shared (pretrained) NNs, random weights without them
+                    NN_OneHiddenLayer[] nets = new NN_OneHiddenLayer[NUM_ACTIONS];
+                    double[] flat = new double[sharedNets != null ? sharedNets[0].getNumWeights() : 0];
+                    for (int i = 0; i < NUM_ACTIONS; i++) {
+                         nets[i] = new NN_OneHiddenLayer(INPUT_LAYERS_NUM, HIDDEN_LAYERS_NUM, OUTPUT_LAYERS_NUM, NN_LEARNING_RATE, NN_MOMENTUM, fixedWeightMin, fixedWeightMax, true);
+                         if (sharedNets != null) {
+                              sharedNets[i].getWeights(flat);
+                              nets[i].setWeights(flat);
+                         } else {
+                              nets[i].initializeWeights();
+                         }
+                    }
+                    return nets;
+               }
+
+               @Override
+               public long byteSize(NN_OneHiddenLayer[] nets) {
+                    return (long) nets.length * nets[0].getNumWeights() * Double.BYTES;
+               }
+
+               @Override
+               public void write(NN_OneHiddenLayer[] nets, DataOutputStream out) throws IOException {
+                    double[] flat = new double[nets[0].getNumWeights()];
+                    for (NN_OneHiddenLayer net : nets) {
+                         net.getWeights(flat);
+                         out.writeInt(flat.length);
+                         for (double w : flat) {
+                              out.writeDouble(w);
+                         }
+                    }
+               }
+
+               @Override
+               public NN_OneHiddenLayer[] read(DataInputStream in) throws IOException {
+                    NN_OneHiddenLayer[] nets = create();
+                    double[] flat = new double[nets[0].getNumWeights()];
+                    for (NN_OneHiddenLayer net : nets) {
+                         int numWeights = in.readInt();
+                         if (numWeights != flat.length) {
+                              throw new IOException("Binary NN has " + numWeights + " weights, expected " + flat.length);
+                         }
+                         for (int k = 0; k < flat.length; k++) {
+                              flat[k] = in.readDouble();
+                         }
+                         net.setWeights(flat);
+                    }
+                    return nets;
+               }
+          };
      }
 
 
      // Save all NN weights
      public void saveWeights() {
-          for(int i = 0; i < enumActions.values().length; i++) {
-               String fileName = "weights" + i + ".txt";
-               // Save the NN weights for each action
-               weights[i] = getDataFile(fileName);
-               nn[i].saveWeights(weights[i]);
+          // Take the latest learner weights & momentum state first (the robot's own NNs are not trained when async)
+          if (ASYNC_LEARNER_ON) {
+               double[] flat = new double[nn[0].getNumWeights()];
+               double[] prevFlat = new double[nn[0].getNumWeights()];
+               for (int i = 0; i < NUM_ACTIONS; i++) {
+                    learner.copyPublished(i, flat, prevFlat);
+                    nn[i].setWeights(flat);
+                    nn[i].setPrevWeights(prevFlat);
+               }
+          }
+          if (opponentNets != null) {
+               // Save the binary files of all per-enemy NNs in memory
+               opponentNets.saveAll();
+          } else if (BUNDLE_ON) {
+               saveBundle();
+          } else {
+               for(int i = 0; i < NUM_ACTIONS; i++) {
+                    String fileName = "weights" + i + ".txt";
+                    // Save the NN weights for each action
+                    weights[i] = getDataFile(fileName);
+                    nn[i].saveWeights(weights[i]);
+               }
+          }
+          // Flush the persistent replay memory to the disk (it is already consistent in the mapped pages)
+          if (persistentMemory != null) {
+               persistentMemory.force();
           }
      }
 
 
-     // Load all NN weights
+     // Load all NN weights (from the bundle if there is one)
      public void loadWeights() {
-          for(int i = 0; i < enumActions.values().length; i++) {
+          if (BUNDLE_ON && loadBundle()) {
+               return;
+          }
+          for(int i = 0; i < NUM_ACTIONS; i++) {
                String fileName = "weights" + i + ".txt";
                // Load the NN weights for each action
                weights[i] = getDataFile(fileName);
@@ -574,5 +854,61 @@ public class SimpleDQN_RobotRunner extends AdvancedRobot {
           }
      }
 
-}
 
+     // Write the weights & momentum state of all NNs as the next bundle generation, returns false if it fails
+     private boolean saveBundle() {
+          double[] flat = new double[nn[0].getNumWeights()];
+          ModelBundleWriter writer = new ModelBundleWriter();
+          try {
+               writer.addText("metadata", bundleMetadata());
+               for (int i = 0; i < NUM_ACTIONS; i++) {
+                    nn[i].getWeights(flat);
+                    writer.addDoubles("weights" + i, flat);
+                    nn[i].getPrevWeights(flat);
+                    writer.addDoubles("optimizer" + i, flat);
+               }
+               bundles.save(writer);
+               return true;
+          } catch (IOException e) {
+               System.out.println("*** Could not save the NN bundle: " + e.getMessage());
+               return false;
+          }
+     }
+
+
+     /** Load the weights & momentum state of all NNs from the newest complete bundle (read into the heap, no text parsing).
+      *  The files are not memory-mapped: a mapping lives until GC, and it would stop a later round from
+      *  rewriting the file on some systems (Windows).
+      *  Returns false if there is no bundle or it does not match the NN structure (the text files are used instead).
+      */
+     private boolean loadBundle() {
+          bundles = new BundleStore(new RobotDataStorage(this), BUNDLE_Filename);
+          ModelBundle bundle = bundles.load();
+          if (bundle == null) {
+               return false;
+          }
+          try {
+               if (!bundle.getText("metadata").equals(bundleMetadata())) {
+                    System.out.println("*** NN bundle does not match the NN structure, loading the text files");
+                    return false;
+               }
+               for (int i = 0; i < NUM_ACTIONS; i++) {
+                    nn[i].setWeights(bundle.getDoubles("weights" + i));
+                    if (bundle.has("optimizer" + i)) {
+                         nn[i].setPrevWeights(bundle.getDoubles("optimizer" + i));
+                    }
+               }
+               return true;
+          } catch (IOException | RuntimeException e) {
+               System.out.println("*** Could not load the NN bundle, loading the text files: " + e.getMessage());
+               return false;
+          }
+     }
+
+
+     // Structure of the NNs in the bundle (checked when loading)
+     private String bundleMetadata() {
+          return "actions=" + NUM_ACTIONS + ", inputs=" + INPUT_LAYERS_NUM + ", hidden=" + HIDDEN_LAYERS_NUM + ", outputs=" + OUTPUT_LAYERS_NUM;
+     }
+
+}
@@ -0,0 +1,73 @@
+package Models.Robot.SimpleDQNRobot;
+
+import Models.NeuralNet.BatchWorkspace;
+import Models.NeuralNet.NN_OneHiddenLayer;
+import Models.Robot.Discretizer;
+import Models.Simulator.VectorEnvironment;
+import Tools.RandomInit;
+
+import java.util.Random;
+
+
+/** Benchmark of the experience collection with vectorized environments.
+ *  For each batch width (number of environments) and number of threads, the DQN action NNs pick the Actions
+ *  of all environments with batched Q evaluations, and the environments are stepped in lockstep.
+ *  Prints the collected transitions per second (the transitions are only counted, not trained).
+ *  Usage: java Models.Robot.SimpleDQNRobot.VectorEnv_BenchmarkRunner [max threads]
+ */
+public class VectorEnv_BenchmarkRunner {
+
+    private static final int[] BATCH_WIDTHS = {1, 8, 64, 256};
+    private static final int TRANSITIONS = 2000000;         // Transitions collected by each run
+    private static final int WARMUP_TRANSITIONS = 200000;   // Untimed transitions before each run (JIT warm-up)
+    private static final double EPSILON = 0.1;
+    private static final int NUM_ACTIONS = 5;
+    private static final long SEED = 502;
+
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+
+        // Action NNs (same structure as the DQN robot)
+        NN_OneHiddenLayer[] nets = new NN_OneHiddenLayer[NUM_ACTIONS];
+        RandomInit weightInit = new RandomInit(SEED);       // Same initial weights for each benchmark run
+        for (int a = 0; a < NUM_ACTIONS; a++) {
+            nets[a] = new NN_OneHiddenLayer(4, 10, 1, 0.1, 0.9, NN_OneHiddenLayer.fixedWeightMin, NN_OneHiddenLayer.fixedWeightMax, true);
+            nets[a].setWeightInit(weightInit, null);
+            nets[a].initializeWeights();
+        }
+        Discretizer energy = new Discretizer(Discretizer.ENERGY_EDGES);
+        Discretizer distance = new Discretizer(Discretizer.DISTANCE_EDGES);
+
+        System.out.println("envs, threads, transitions, elapsedMs, transitionsPerSec, rounds, winRate");
+        for (int numEnvs : BATCH_WIDTHS) {
+            for (int numThreads = 1; numThreads <= maxThreads; numThreads = (numThreads == maxThreads) ? maxThreads + 1 : Math.min(2 * numThreads, maxThreads)) {
+                VectorEnvironment envs = new VectorEnvironment(numEnvs, numThreads, 1, SEED, energy, distance);
+                BatchWorkspace workspace = nets[0].newBatchWorkspace(numEnvs);
+                Random random = new Random(SEED);
+                collect(envs, nets, workspace, random, WARMUP_TRANSITIONS);
+                long steps = envs.getNumSteps();
+                int rounds = envs.getNumRounds();
+                int wins = envs.getNumWins();
+                long startTime = System.nanoTime();
+                collect(envs, nets, workspace, random, TRANSITIONS);
+                long elapsed = System.nanoTime() - startTime;
+                long transitions = envs.getNumSteps() - steps;
+                int numRounds = envs.getNumRounds() - rounds;
+                System.out.printf("%d, %d, %d, %d, %.0f, %d, %2.1f\n", numEnvs, numThreads, transitions, elapsed / 1000000,
+                        transitions / (elapsed / 1e9), numRounds, numRounds > 0 ? 100.0 * (envs.getNumWins() - wins) / numRounds : 0);
+                envs.shutdown();
+            }
+        }
+    }
+
+
+    // Collect at least the given number of transitions (select the Actions, then step all environments)
+    private static void collect(VectorEnvironment envs, NN_OneHiddenLayer[] nets, BatchWorkspace workspace, Random random,
+                                long transitions) {
+        long target = envs.getNumSteps() + transitions;
+        while (envs.getNumSteps() < target) {
+            envs.selectActions(nets, workspace, EPSILON, random);
+            envs.step();
+        }
+    }
+}
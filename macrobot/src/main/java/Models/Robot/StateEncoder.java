@@ -0,0 +1,142 @@
+package Models.Robot;
+
+
+/** This class keeps the CURRENT and PREVIOUS discretized States of our robot
+ *  (our energy, distance to enemy, enemy's energy, distance to the field center) in primitive fields.
+ *  States are written into reusable buffers (NN input vectors) or packed into one int key
+ *  (same layout as the flat index of StateActionTable), so the turn loop does not allocate anything.
+ *  Each robot owns its own encoder (not thread-safe).
+ */
+public class StateEncoder {
+
+    public static final int NUM_STATES = 4;         // Number of State dimensions (Action not included)
+
+    private final int numEnergyLevels;              // Levels of the energy States
+    private final int numDistanceLevels;            // Levels of the distance States
+    private final int numActions;                   // Number of Actions
+
+    private final int[] currStates = new int[NUM_STATES];   // CURRENT State levels (t+1)
+    private final int[] prevStates = new int[NUM_STATES];   // PREVIOUS State levels (t)
+
+    // Reusable input vectors (4 States + 1 slot for the bias input), rewritten on every call
+    private final double[] currBuffer = new double[NUM_STATES + 1];
+    private final double[] prevBuffer = new double[NUM_STATES + 1];
+
+
+    public StateEncoder(int numEnergyLevels, int numDistanceLevels, int numActions) {
+        this.numEnergyLevels = numEnergyLevels;
+        this.numDistanceLevels = numDistanceLevels;
+        this.numActions = numActions;
+    }
+
+
+    // Set the CURRENT States (without moving them to PREVIOUS)
+    public void set(int myEnergy, int distanceToEnemy, int enemyEnergy, int distanceToCenter) {
+        currStates[0] = myEnergy;
+        currStates[1] = distanceToEnemy;
+        currStates[2] = enemyEnergy;
+        currStates[3] = distanceToCenter;
+    }
+
+
+    // Set both the CURRENT and PREVIOUS States (start of a round)
+    public void reset(int myEnergy, int distanceToEnemy, int enemyEnergy, int distanceToCenter) {
+        set(myEnergy, distanceToEnemy, enemyEnergy, distanceToCenter);
+        System.arraycopy(currStates, 0, prevStates, 0, NUM_STATES);
+    }
+
+
+    // Move the CURRENT States to PREVIOUS (t to t+1), then set the new CURRENT States
+    public void update(int myEnergy, int distanceToEnemy, int enemyEnergy, int distanceToCenter) {
+        System.arraycopy(currStates, 0, prevStates, 0, NUM_STATES);
+        set(myEnergy, distanceToEnemy, enemyEnergy, distanceToCenter);
+    }
+
+
+    // Returns the level of the selected CURRENT State
+    public int getCurr(int dim) {
+        return currStates[dim];
+    }
+
+
+    // Returns the level of the selected PREVIOUS State
+    public int getPrev(int dim) {
+        return prevStates[dim];
+    }
+
+
+    // Returns the packed key of the CURRENT States & the given Action
+    public int currKey(int action) {
+        return keyOf(currStates[0], currStates[1], currStates[2], currStates[3], action);
+    }
+
+
+    // Returns the packed key of the PREVIOUS States & the given Action
+    public int prevKey(int action) {
+        return keyOf(prevStates[0], prevStates[1], prevStates[2], prevStates[3], action);
+    }
+
+
+    /** Pack the State levels & Action into one int key.
+     *  The Action changes fastest, same as the flat index of StateActionTable
+     *  (energy, distance, energy, distance, action).
+     */
+    public int keyOf(int myEnergy, int distanceToEnemy, int enemyEnergy, int distanceToCenter, int action) {
+        return (((myEnergy * numDistanceLevels + distanceToEnemy) * numEnergyLevels + enemyEnergy)
+                * numDistanceLevels + distanceToCenter) * numActions + action;
+    }
+
+
+    // Returns the Action of a packed key
+    public int actionOf(int key) {
+        return key % numActions;
+    }
+
+
+    // Returns the packed key of the States only (Action removed)
+    public int stateOf(int key) {
+        return key / numActions;
+    }
+
+
+    /** Write the State levels of a packed States key (Action removed, see stateOf) into a row of the buffer.
+     *  The slot after the States (bias input) is not touched.
+     */
+    public void writeState(int stateKey, double[] buffer, int offset) {
+        buffer[offset + 3] = stateKey % numDistanceLevels;
+        stateKey /= numDistanceLevels;
+        buffer[offset + 2] = stateKey % numEnergyLevels;
+        stateKey /= numEnergyLevels;
+        buffer[offset + 1] = stateKey % numDistanceLevels;
+        buffer[offset] = stateKey / numDistanceLevels;
+    }
+
+
+    // Returns the total number of packed keys (States & Actions)
+    public int numKeys() {
+        return numEnergyLevels * numDistanceLevels * numEnergyLevels * numDistanceLevels * numActions;
+    }
+
+
+    /** Returns the CURRENT States as levels (0, 1, 2, ...) in the reusable buffer.
+     *  The last slot (bias input) is not touched.
+     */
+    public double[] currStates() {
+        return write(currStates, currBuffer);
+    }
+
+
+    // Returns the PREVIOUS States as levels in the reusable buffer (the last slot is not touched)
+    public double[] prevStates() {
+        return write(prevStates, prevBuffer);
+    }
+
+
+    // Copy the State levels into the buffer
+    private static double[] write(int[] states, double[] buffer) {
+        for (int i = 0; i < NUM_STATES; i++) {
+            buffer[i] = states[i];
+        }
+        return buffer;
+    }
+}
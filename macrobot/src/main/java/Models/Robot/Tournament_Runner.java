@@ -0,0 +1,117 @@
+package Models.Robot;
+
+import Models.Bundle.ModelBundle;
+import Models.LUT.StateActionTable;
+import Models.NeuralNet.NN_OneHiddenLayer;
+import Models.NeuralNet.WeightSnapshot;
+import Models.Simulator.BattleSimulator;
+import Models.Simulator.Contestant;
+import Models.Simulator.LUTPolicy;
+import Models.Simulator.NNPolicy;
+import Models.Simulator.Tournament;
+import Tools.RandomStreams;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/** Evaluate many learned policies against each other and against scripted opponents in the BattleSimulator.
+ *  Usage: java Models.Robot.Tournament_Runner [rounds] [policy ...]
+ *  Each policy is a LUT file (LUTRobot_StateActionTable.txt format), a directory with the DQN weight files
+ *  (weights0.txt ... weights4.txt), or a DQN model bundle (NNRobot_Models_0.bundle or _1.bundle, the newest generation). Scripted opponents are always added: the built-in simulator enemy,
+ *  a random policy (seeded for each agent), and fixed-Action policies (always fire, always go to the center).
+ *  A policy whose files are missing is skipped (instead of playing with random weights).
+ *  Run on Java 21+ to get one virtual thread for each agent.
+ */
+public class Tournament_Runner {
+
+    private static final int MAX_PLATFORM_DUELS = 2 * Runtime.getRuntime().availableProcessors();
+    private static final int TICKS_PER_STEP = 1;
+    private static final long SEED = 502;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+
+        int numEnergyLevels = Models.Robot.LUTRobot.LUT_RobotRunner.enumEnergy.values().length;
+        int numDistanceLevels = Models.Robot.LUTRobot.LUT_RobotRunner.enumDistance.values().length;
+        StateEncoder encoder = new StateEncoder(numEnergyLevels, numDistanceLevels, BattleSimulator.NUM_ACTIONS);
+
+        List<Contestant> contestants = new ArrayList<>();
+        for (int k = 1; k < args.length; k++) {
+            File file = new File(args[k]);
+            if (file.isDirectory()) {
+                WeightSnapshot[] nets = loadNets(file);
+                if (nets == null) {
+                    continue;
+                }
+                contestants.add(new Contestant(file.getName(), () -> new NNPolicy(nets)));
+            } else if (file.getName().endsWith(".bundle")) {
+                WeightSnapshot[] nets = loadBundleNets(file);
+                contestants.add(new Contestant(file.getName(), () -> new NNPolicy(nets)));
+            } else {
+                StateActionTable lut = new StateActionTable(numEnergyLevels, numDistanceLevels, numEnergyLevels,
+                        numDistanceLevels, BattleSimulator.NUM_ACTIONS);
+                lut.load(file.getPath());
+                contestants.add(new Contestant(file.getName(), () -> new LUTPolicy(lut, encoder)));
+            }
+        }
+        contestants.add(Contestant.scripted("scripted"));
+        RandomStreams streams = new RandomStreams(SEED);
+        contestants.add(Contestant.seeded("random", seed -> {
+            Random random = streams.forKey("random/" + seed);
+            return states -> random.nextInt(BattleSimulator.NUM_ACTIONS);
+        }));
+        contestants.add(new Contestant("alwaysFire", () -> states -> BattleSimulator.FIRE));
+        contestants.add(new Contestant("alwaysGoCenter", () -> states -> BattleSimulator.GO_CENTER));
+
+        Tournament tournament = new Tournament(contestants, rounds, TICKS_PER_STEP, SEED,
+                new Discretizer(Discretizer.ENERGY_EDGES), new Discretizer(Discretizer.DISTANCE_EDGES));
+        long startTime = System.currentTimeMillis();
+        tournament.run(MAX_PLATFORM_DUELS);
+        long elapsed = System.currentTimeMillis() - startTime;
+
+        System.out.printf("%d contestants, %d rounds for each duel, %s threads, %d ms (%d failed duels)\n",
+                contestants.size(), rounds, tournament.isVirtual() ? "virtual" : "platform", elapsed, tournament.getFailedDuels());
+        System.out.println("contestant, wins, played, winRate");
+        for (int i = 0; i < contestants.size(); i++) {
+            int played = tournament.getTotalPlayed(i);
+            System.out.printf("%s, %d, %d, %2.1f\n", contestants.get(i).getName(), tournament.getTotalWins(i), played,
+                    played > 0 ? 100.0 * tournament.getTotalWins(i) / played : 0);
+        }
+    }
+
+
+    // Load the weight files of the DQN action NNs from a directory, and return their snapshots (null if a file is missing)
+    private static WeightSnapshot[] loadNets(File directory) {
+        WeightSnapshot[] nets = new WeightSnapshot[BattleSimulator.NUM_ACTIONS];
+        for (int a = 0; a < nets.length; a++) {
+            File weights = new File(directory, "weights" + a + ".txt");
+            if (!weights.isFile()) {
+                System.out.println("*** Missing " + weights.getPath() + ", contestant " + directory.getName() + " skipped");
+                return null;
+            }
+            NN_OneHiddenLayer nn = new NN_OneHiddenLayer(4, 10, 1, 0.1, 0.9,
+                    NN_OneHiddenLayer.fixedWeightMin, NN_OneHiddenLayer.fixedWeightMax, true);
+            nn.loadWeights(weights);
+            nets[a] = nn.publishSnapshot();
+        }
+        return nets;
+    }
+
+
+    // Load the weights of the DQN action NNs from a model bundle, and return their snapshots
+    private static WeightSnapshot[] loadBundleNets(File file) throws IOException {
+        ModelBundle bundle = ModelBundle.open(file);
+        WeightSnapshot[] nets = new WeightSnapshot[BattleSimulator.NUM_ACTIONS];
+        for (int a = 0; a < nets.length; a++) {
+            NN_OneHiddenLayer nn = new NN_OneHiddenLayer(4, 10, 1, 0.1, 0.9,
+                    NN_OneHiddenLayer.fixedWeightMin, NN_OneHiddenLayer.fixedWeightMax, true);
+            nn.setWeights(bundle.getDoubles("weights" + a));
+            nets[a] = nn.publishSnapshot();
+        }
+        return nets;
+    }
+}
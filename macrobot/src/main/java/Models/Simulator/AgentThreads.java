@@ -0,0 +1,52 @@
+package Models.Simulator;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/** Thread factory for simulated robot agents.
+ *  Uses VIRTUAL threads when the running JVM has them (Java 21+, looked up by reflection because
+ *  this project is compiled for Java 15), so thousands of agents can block on their per-tick step
+ *  while a few carrier threads do the work. Otherwise falls back to platform daemon threads.
+ */
+public final class AgentThreads {
+
+    private AgentThreads() {
+    }
+
+
+    // Returns a factory of virtual threads if available, otherwise of platform daemon threads
+    public static ThreadFactory newFactory(String prefix) {
+        ThreadFactory virtual = newVirtualFactory(prefix);
+        if (virtual != null) {
+            return virtual;
+        }
+        AtomicLong counter = new AtomicLong();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+
+    // Returns true if the running JVM can create virtual threads
+    public static boolean isVirtualAvailable() {
+        return newVirtualFactory("probe") != null;
+    }
+
+
+    // Thread.ofVirtual().name(prefix, 0).factory(), or null if not supported (older JVM, or preview not enabled)
+    private static ThreadFactory newVirtualFactory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method name = builderClass.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package Models.Simulator;
+
+import java.util.Random;
+
+
+/** This class is a lightweight in-process 1v1 tank battle for pre-training the robots without Robocode.
+ *  It keeps the Robocode rules that matter for our State features and rewards:
+ *  battlefield size, velocity / acceleration / turn rate limits, gun heat, bullet speed & damage,
+ *  energy gained by hits, wall damage, and robot collisions. Radar, scan arcs, and events are left out:
+ *  every State value is read directly, which is what our robots see with a radar spinning every turn.
+ *  Our tank is driven by the same five Actions as the robots (circle, retreat, advance, goCenter, fire),
+ *  the enemy circles around us and fires head-on (its gun turns like ours),
+ *  or is driven by the same five Actions (step with an enemy Action, e.g. policy against policy).
+ *  Each step() runs the Action for a few ticks and returns the reward of the step (same rewards as our robots).
+ *  One simulator is NOT thread-safe, use one for each thread.
+ */
+public class BattleSimulator {
+
+    // Actions of our tank (same order as LUT_RobotRunner.enumActions)
+    public static final int CIRCLE = 0;
+    public static final int RETREAT = 1;
+    public static final int ADVANCE = 2;
+    public static final int GO_CENTER = 3;
+    public static final int FIRE = 4;
+    public static final int NUM_ACTIONS = 5;
+    public static final int SCRIPTED = -1;                      // Enemy Action: use the built-in enemy behavior
+
+    // Rewards (same as our robots)
+    public static final double GOOD_TERMINAL_REWARD = 1.0;
+    public static final double BAD_TERMINAL_REWARD = -1.0;
+    public static final double GOOD_INTERMEDIATE_REWARD = 0.5;
+    public static final double BAD_INTERMEDIATE_REWARD = -0.25;
+
+    // Robocode rules
+    public static final double FIELD_WIDTH = 800;
+    public static final double FIELD_HEIGHT = 600;
+    private static final double TANK_HALF_SIZE = 18;            // Tanks are 36 x 36
+    private static final double MAX_VELOCITY = 8;
+    private static final double ACCELERATION = 1;
+    private static final double DECELERATION = 2;
+    private static final double GUN_TURN_RATE = Math.toRadians(20);
+    private static final double GUN_COOLING_RATE = 0.1;
+    private static final double INITIAL_GUN_HEAT = 3;
+    private static final double START_ENERGY = 100;
+    private static final double COLLISION_DAMAGE = 0.6;
+    private static final int MAX_BULLETS = 64;
+    private static final int MAX_TICKS = 20000;                 // Round guard (counted as a loss)
+
+    // Enemy behavior
+    private static final double ENEMY_FIRE_POWER = 2;
+    private static final int ENEMY_DIRECTION_TICKS = 40;        // Ticks before the enemy may reverse direction
+
+    private final int ticksPerStep;
+    private final Random random;
+    private final Tank me = new Tank();
+    private final Tank enemy = new Tank();
+
+    // Bullets in flight (struct of arrays, no allocation)
+    private final double[] bulletX = new double[MAX_BULLETS];
+    private final double[] bulletY = new double[MAX_BULLETS];
+    private final double[] bulletDx = new double[MAX_BULLETS];
+    private final double[] bulletDy = new double[MAX_BULLETS];
+    private final double[] bulletPower = new double[MAX_BULLETS];
+    private final boolean[] bulletIsMine = new boolean[MAX_BULLETS];
+    private int numBullets = 0;
+
+    private int tick = 0;
+    private int enemyDirection = 1;
+    private boolean isDone = false;
+    private boolean isWin = false;
+    private boolean isEnemyWin = false;
+
+    // Events of the last step
+    private int bulletHits = 0;
+    private int hitByBullets = 0;
+    private int wallHits = 0;
+
+
+    // State of one tank (angles in radians, 0 = north, clockwise, same as Robocode)
+    private static final class Tank {
+        double x, y, heading, velocity, gunHeading, gunHeat, energy;
+        double turnRemaining;       // Body turn still to do
+        double distanceRemaining;   // Distance still to move (negative: back)
+        double firePower;           // Fire when the gun is cool (0: do not fire)
+    }
+
+
+    public BattleSimulator(int ticksPerStep, long seed) {
+        if (ticksPerStep < 1) {
+            throw new IllegalArgumentException("Ticks per step must be at least 1");
+        }
+        this.ticksPerStep = ticksPerStep;
+        this.random = new Random(seed);
+        reset();
+    }
+
+
+    // Start a new round (random positions and headings, full energy)
+    public void reset() {
+        place(me);
+        do {
+            place(enemy);
+        } while (Math.abs(me.x - enemy.x) < 4 * TANK_HALF_SIZE && Math.abs(me.y - enemy.y) < 4 * TANK_HALF_SIZE);
+        numBullets = 0;
+        tick = 0;
+        enemyDirection = 1;
+        isDone = false;
+        isWin = false;
+        isEnemyWin = false;
+        bulletHits = 0;
+        hitByBullets = 0;
+        wallHits = 0;
+    }
+
+
+    /** Run one Action of our tank for the ticks of one step, returns the reward of the step.
+     *  The movement of an Action keeps going while the next Actions do not move (e.g. fire), same as Robocode.
+     */
+    public double step(int action) {
+        return step(action, SCRIPTED);
+    }
+
+
+    // Run one Action of our tank and one Action of the enemy (SCRIPTED: built-in behavior), returns our reward
+    public double step(int action, int enemyAction) {
+        if (isDone) {
+            throw new IllegalStateException("Round is over, call reset()");
+        }
+        bulletHits = 0;
+        hitByBullets = 0;
+        wallHits = 0;
+        setAction(me, enemy, action);
+        if (enemyAction != SCRIPTED) {
+            setAction(enemy, me, enemyAction);
+        }
+        for (int t = 0; t < ticksPerStep && !isDone; t++) {
+            runTick(action == FIRE, enemyAction);
+        }
+        double reward = bulletHits * GOOD_INTERMEDIATE_REWARD + (hitByBullets + wallHits) * BAD_INTERMEDIATE_REWARD;
+        if (isDone) {
+            reward += isWin ? GOOD_TERMINAL_REWARD : BAD_TERMINAL_REWARD;
+        }
+        return reward;
+    }
+
+
+    // Set the commands of a tank for an Action against the other tank (same moves as the robots)
+    private static void setAction(Tank tank, Tank other, int action) {
+        double bearing = Math.toDegrees(bearingOf(tank, other));
+        switch (action) {
+            case CIRCLE:
+                tank.turnRemaining = Math.toRadians(bearing + 90);
+                tank.distanceRemaining = 40;
+                break;
+            case RETREAT:
+                tank.turnRemaining = Math.toRadians(bearing + 135);
+                tank.distanceRemaining = -50;
+                break;
+            case ADVANCE:
+                tank.turnRemaining = Math.toRadians(bearing);
+                tank.distanceRemaining = 80;
+                break;
+            case GO_CENTER:
+                tank.turnRemaining = normalize(Math.atan2(FIELD_WIDTH / 2 - tank.x, FIELD_HEIGHT / 2 - tank.y) - tank.heading);
+                tank.distanceRemaining = 80;
+                break;
+            case FIRE:
+                tank.firePower = 3;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown action: " + action);
+        }
+    }
+
+
+    // One tick of the battle: enemy commands, guns, movement, collisions, bullets
+    private void runTick(boolean isAiming, int enemyAction) {
+        tick++;
+        double toMe = Math.atan2(me.x - enemy.x, me.y - enemy.y);
+        if (enemyAction == SCRIPTED) {
+            // Enemy: circle around us (sometimes reversing), and keep firing head-on
+            if (tick % ENEMY_DIRECTION_TICKS == 0 && random.nextBoolean()) {
+                enemyDirection = -enemyDirection;
+            }
+            enemy.turnRemaining = normalize(toMe + Math.PI / 2 - enemy.heading);
+            enemy.distanceRemaining = 100 * enemyDirection;
+            enemy.firePower = ENEMY_FIRE_POWER;
+        }
+
+        // Guns turn toward the target (only while aiming, the scripted enemy always aims), then fire when cool
+        if (enemyAction == SCRIPTED || enemyAction == FIRE) {
+            aim(enemy, toMe);
+        }
+        if (isAiming) {
+            aim(me, Math.atan2(enemy.x - me.x, enemy.y - me.y));
+        }
+        fire(me, true);
+        fire(enemy, false);
+
+        // Movement and wall hits
+        double meX = me.x, meY = me.y, enemyX = enemy.x, enemyY = enemy.y;
+        move(me);
+        move(enemy);
+        if (hitWall(me)) {
+            wallHits++;
+        }
+        if (hitWall(enemy)) {
+            enemyDirection = -enemyDirection;       // Enemy backs off the wall
+        }
+
+        // Robot collision: both stop and lose a little energy
+        if (Math.abs(me.x - enemy.x) < 2 * TANK_HALF_SIZE && Math.abs(me.y - enemy.y) < 2 * TANK_HALF_SIZE) {
+            me.x = meX;
+            me.y = meY;
+            enemy.x = enemyX;
+            enemy.y = enemyY;
+            me.velocity = 0;
+            enemy.velocity = 0;
+            me.energy -= COLLISION_DAMAGE;
+            enemy.energy -= COLLISION_DAMAGE;
+        }
+
+        moveBullets();
+
+        // Round over
+        if (me.energy <= 0 || enemy.energy <= 0 || tick >= MAX_TICKS) {
+            isDone = true;
+            isWin = me.energy > 0 && enemy.energy <= 0;
+            isEnemyWin = enemy.energy > 0 && me.energy <= 0;
+        }
+    }
+
+
+    // Turn the gun of a tank toward an absolute angle (limited by the gun turn rate)
+    private static void aim(Tank tank, double angle) {
+        double turn = normalize(angle - tank.gunHeading);
+        tank.gunHeading += Math.max(-GUN_TURN_RATE, Math.min(GUN_TURN_RATE, turn));
+    }
+
+
+    // Fire a bullet along the gun heading when the gun is cool, then cool the gun
+    private void fire(Tank tank, boolean isMine) {
+        if (tank.firePower > 0 && tank.gunHeat <= 0 && tank.energy > tank.firePower && numBullets < MAX_BULLETS) {
+            double power = tank.firePower;
+            double speed = 20 - 3 * power;
+            bulletX[numBullets] = tank.x;
+            bulletY[numBullets] = tank.y;
+            bulletDx[numBullets] = Math.sin(tank.gunHeading) * speed;
+            bulletDy[numBullets] = Math.cos(tank.gunHeading) * speed;
+            bulletPower[numBullets] = power;
+            bulletIsMine[numBullets] = isMine;
+            numBullets++;
+            tank.energy -= power;
+            tank.gunHeat = 1 + power / 5;
+            tank.firePower = 0;
+        }
+        tank.gunHeat = Math.max(0, tank.gunHeat - GUN_COOLING_RATE);
+    }
+
+
+    // Turn and move a tank by its remaining commands (Robocode velocity and turn rate limits)
+    private static void move(Tank tank) {
+        // Body turn rate depends on the velocity
+        double maxTurn = Math.toRadians(10 - 0.75 * Math.abs(tank.velocity));
+        double turn = Math.max(-maxTurn, Math.min(maxTurn, tank.turnRemaining));
+        tank.heading = normalize(tank.heading + turn);
+        tank.turnRemaining -= turn;
+
+        // Accelerate toward the remaining distance, brake hard when it must slow down or reverse
+        double target = Math.max(-MAX_VELOCITY, Math.min(MAX_VELOCITY, tank.distanceRemaining));
+        double velocity = tank.velocity;
+        if (velocity * target < 0 || Math.abs(target) < Math.abs(velocity)) {
+            velocity = (velocity > target) ? Math.max(target, velocity - DECELERATION) : Math.min(target, velocity + DECELERATION);
+        } else {
+            velocity = (velocity < target) ? Math.min(target, velocity + ACCELERATION) : Math.max(target, velocity - ACCELERATION);
+        }
+        tank.velocity = velocity;
+        tank.x += Math.sin(tank.heading) * velocity;
+        tank.y += Math.cos(tank.heading) * velocity;
+        tank.distanceRemaining -= velocity;
+    }
+
+
+    // Keep a tank inside the battlefield, returns true if it has hit a wall (wall damage, stops)
+    private static boolean hitWall(Tank tank) {
+        double x = Math.max(TANK_HALF_SIZE, Math.min(FIELD_WIDTH - TANK_HALF_SIZE, tank.x));
+        double y = Math.max(TANK_HALF_SIZE, Math.min(FIELD_HEIGHT - TANK_HALF_SIZE, tank.y));
+        if (x == tank.x && y == tank.y) {
+            return false;
+        }
+        tank.x = x;
+        tank.y = y;
+        tank.energy -= Math.max(0, Math.abs(tank.velocity) * 0.5 - 1);
+        tank.velocity = 0;
+        tank.distanceRemaining = 0;
+        return true;
+    }
+
+
+    // Move all bullets, remove the ones that hit a tank or leave the battlefield
+    private void moveBullets() {
+        int i = 0;
+        while (i < numBullets) {
+            bulletX[i] += bulletDx[i];
+            bulletY[i] += bulletDy[i];
+            Tank target = bulletIsMine[i] ? enemy : me;
+            boolean isHit = Math.abs(bulletX[i] - target.x) <= TANK_HALF_SIZE && Math.abs(bulletY[i] - target.y) <= TANK_HALF_SIZE;
+            boolean isOut = bulletX[i] < 0 || bulletX[i] > FIELD_WIDTH || bulletY[i] < 0 || bulletY[i] > FIELD_HEIGHT;
+            if (isHit) {
+                double power = bulletPower[i];
+                target.energy -= 4 * power + 2 * Math.max(0, power - 1);
+                (bulletIsMine[i] ? me : enemy).energy += 3 * power;
+                if (bulletIsMine[i]) {
+                    bulletHits++;
+                } else {
+                    hitByBullets++;
+                }
+            }
+            if (isHit || isOut) {
+                // Replace with the last bullet (order does not matter)
+                numBullets--;
+                bulletX[i] = bulletX[numBullets];
+                bulletY[i] = bulletY[numBullets];
+                bulletDx[i] = bulletDx[numBullets];
+                bulletDy[i] = bulletDy[numBullets];
+                bulletPower[i] = bulletPower[numBullets];
+                bulletIsMine[i] = bulletIsMine[numBullets];
+            } else {
+                i++;
+            }
+        }
+    }
+
+
+    // Put a tank at a random position with a random heading, full energy and no commands
+    private void place(Tank tank) {
+        tank.x = TANK_HALF_SIZE + random.nextDouble() * (FIELD_WIDTH - 2 * TANK_HALF_SIZE);
+        tank.y = TANK_HALF_SIZE + random.nextDouble() * (FIELD_HEIGHT - 2 * TANK_HALF_SIZE);
+        tank.heading = random.nextDouble() * 2 * Math.PI;
+        tank.gunHeading = tank.heading;
+        tank.velocity = 0;
+        tank.gunHeat = INITIAL_GUN_HEAT;
+        tank.energy = START_ENERGY;
+        tank.turnRemaining = 0;
+        tank.distanceRemaining = 0;
+        tank.firePower = 0;
+    }
+
+
+    // Convert a radian to the range of [-Pi, Pi)
+    private static double normalize(double radian) {
+        return radian - 2 * Math.PI * Math.floor((radian + Math.PI) / (2 * Math.PI));
+    }
+
+
+    // Returns our energy
+    public double getMyEnergy() {
+        return me.energy;
+    }
+
+
+    // Returns the energy of the enemy
+    public double getEnemyEnergy() {
+        return enemy.energy;
+    }
+
+
+    // Returns the distance between both tanks
+    public double getEnemyDistance() {
+        return Math.hypot(enemy.x - me.x, enemy.y - me.y);
+    }
+
+
+    // Returns the bearing (degrees, -180 to 180) of the enemy relative to our heading, same as ScannedRobotEvent
+    public double getEnemyBearing() {
+        return Math.toDegrees(bearingOf(me, enemy));
+    }
+
+
+    // Returns the bearing (radians) of the other tank relative to the heading of a tank
+    private static double bearingOf(Tank tank, Tank other) {
+        return normalize(Math.atan2(other.x - tank.x, other.y - tank.y) - tank.heading);
+    }
+
+
+    // Returns the distance between our tank and the battlefield center
+    public double getDistanceToCenter() {
+        return Math.hypot(me.x - FIELD_WIDTH / 2, me.y - FIELD_HEIGHT / 2);
+    }
+
+
+    // Returns the distance between the enemy and the battlefield center (States seen by the enemy)
+    public double getEnemyDistanceToCenter() {
+        return Math.hypot(enemy.x - FIELD_WIDTH / 2, enemy.y - FIELD_HEIGHT / 2);
+    }
+
+
+    // Returns our position
+    public double getX() {
+        return me.x;
+    }
+
+    public double getY() {
+        return me.y;
+    }
+
+
+    // Returns the number of our bullets that hit the enemy during the last step
+    public int getBulletHits() {
+        return bulletHits;
+    }
+
+
+    // Returns the number of enemy bullets that hit us during the last step
+    public int getHitByBullets() {
+        return hitByBullets;
+    }
+
+
+    // Returns the number of wall hits of our tank during the last step
+    public int getWallHits() {
+        return wallHits;
+    }
+
+
+    // Returns the number of ticks of this round
+    public int getTick() {
+        return tick;
+    }
+
+
+    // Returns true if the round is over
+    public boolean isDone() {
+        return isDone;
+    }
+
+
+    // Returns true if we have won the round (only meaningful when the round is over)
+    public boolean isWin() {
+        return isWin;
+    }
+
+
+    // Returns true if the enemy has won the round (neither side wins a draw or a timeout)
+    public boolean isEnemyWin() {
+        return isEnemyWin;
+    }
+}
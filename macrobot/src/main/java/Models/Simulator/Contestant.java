@@ -0,0 +1,56 @@
+package Models.Simulator;
+
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+
+/** A named entry of a Tournament.
+ *  Each agent gets a new Policy from the factory, with a seed of its own for randomized policies; the SCRIPTED contestant is the built-in enemy
+ *  of the BattleSimulator (it has no policy and can only play as the enemy side).
+ */
+public class Contestant {
+
+    private final String name;
+    private final LongFunction<Policy> policyFactory;   // null for the scripted enemy
+
+
+    public Contestant(String name, Supplier<Policy> policyFactory) {
+        this.name = name;
+        this.policyFactory = policyFactory == null ? null : seed -> policyFactory.get();
+    }
+
+
+    private Contestant(String name, LongFunction<Policy> policyFactory) {
+        this.name = name;
+        this.policyFactory = policyFactory;
+    }
+
+
+    // Returns a contestant whose policies depend on a seed (the same agent seed gives the same policy)
+    public static Contestant seeded(String name, LongFunction<Policy> policyFactory) {
+        return new Contestant(name, policyFactory);
+    }
+
+
+    // Returns the built-in scripted enemy of the simulator
+    public static Contestant scripted(String name) {
+        return new Contestant(name, (LongFunction<Policy>) null);
+    }
+
+
+    // Returns a new policy for one agent (seed of the agent, distinct for each agent of a tournament)
+    public Policy newPolicy(long seed) {
+        return policyFactory.apply(seed);
+    }
+
+
+    // Returns true for the built-in scripted enemy
+    public boolean isScripted() {
+        return policyFactory == null;
+    }
+
+
+    public String getName() {
+        return name;
+    }
+}
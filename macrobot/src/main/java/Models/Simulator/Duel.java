@@ -0,0 +1,159 @@
+package Models.Simulator;
+
+import Models.Robot.Discretizer;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/** This class is one battle between two agents in a BattleSimulator, for a fixed number of rounds.
+ *  Each agent runs on its own thread in the Robocode style: observe, pick an Action, then BLOCK in submit()
+ *  until the other agent has submitted its Action too and the step has been run (lockstep rendezvous).
+ *  Against the SCRIPTED enemy only one agent plays, and its steps never wait.
+ *  Locks are ReentrantLocks (not synchronized), so blocked virtual threads release their carrier thread.
+ */
+public class Duel {
+
+    private static final int NONE = Integer.MIN_VALUE;      // No Action submitted yet
+
+    private final BattleSimulator sim;
+    private final boolean isScripted;                       // Enemy side is the built-in behavior
+    private final int rounds;
+    private final Discretizer energyDiscretizer;
+    private final Discretizer distanceDiscretizer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition stepped = lock.newCondition();
+    private final int[] pending = {NONE, NONE};             // Submitted Action of each side
+    private long generation = 0;                            // Number of steps run so far
+    private boolean isAborted = false;
+
+    // Results (side 0 is "me" of the simulator)
+    private int roundsPlayed = 0;
+    private int winsOfSide0 = 0;
+    private int winsOfSide1 = 0;
+
+
+    public Duel(BattleSimulator sim, boolean isScripted, int rounds, Discretizer energyDiscretizer, Discretizer distanceDiscretizer) {
+        this.sim = sim;
+        this.isScripted = isScripted;
+        this.rounds = rounds;
+        this.energyDiscretizer = energyDiscretizer;
+        this.distanceDiscretizer = distanceDiscretizer;
+    }
+
+
+    // Agent loop of one side (runs on the agent's own thread until all rounds are played)
+    public void play(int side, Policy policy) {
+        double[] states = new double[5];
+        try {
+            boolean isPlaying = observe(side, states);
+            while (isPlaying) {
+                isPlaying = submit(side, policy.act(states), states);
+            }
+        } catch (RuntimeException e) {
+            abort();
+            throw e;
+        }
+    }
+
+
+    /** Submit the Action of one side and wait for the step, then observe the new States.
+     *  Returns false when all rounds are played (or the other agent has failed).
+     */
+    private boolean submit(int side, int action, double[] states) {
+        lock.lock();
+        try {
+            if (isAborted || roundsPlayed >= rounds) {
+                return false;
+            }
+            long current = generation;
+            pending[side] = action;
+            if (isScripted || pending[1 - side] != NONE) {
+                runStep();
+            } else {
+                while (generation == current && !isAborted) {
+                    stepped.awaitUninterruptibly();
+                }
+            }
+            return observe(side, states);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    // Run one step with the submitted Actions (lock held), record finished rounds, wake up the other agent
+    private void runStep() {
+        sim.step(pending[0], isScripted ? BattleSimulator.SCRIPTED : pending[1]);
+        pending[0] = NONE;
+        pending[1] = NONE;
+        if (sim.isDone()) {
+            if (sim.isWin()) {
+                winsOfSide0++;
+            } else if (sim.isEnemyWin()) {
+                winsOfSide1++;
+            }
+            roundsPlayed++;
+            if (roundsPlayed < rounds) {
+                sim.reset();
+            }
+        }
+        generation++;
+        stepped.signalAll();
+    }
+
+
+    // Write the discretized States seen by one side, returns false when all rounds are played
+    private boolean observe(int side, double[] states) {
+        lock.lock();
+        try {
+            double myEnergy = (side == 0) ? sim.getMyEnergy() : sim.getEnemyEnergy();
+            double enemyEnergy = (side == 0) ? sim.getEnemyEnergy() : sim.getMyEnergy();
+            double toCenter = (side == 0) ? sim.getDistanceToCenter() : sim.getEnemyDistanceToCenter();
+            states[0] = energyDiscretizer.levelOf(myEnergy);
+            states[1] = distanceDiscretizer.levelOf(sim.getEnemyDistance());
+            states[2] = energyDiscretizer.levelOf(enemyEnergy);
+            states[3] = distanceDiscretizer.levelOf(toCenter);
+            return !isAborted && roundsPlayed < rounds;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    // Stop the duel (an agent has failed), so the other agent does not wait forever
+    private void abort() {
+        lock.lock();
+        try {
+            isAborted = true;
+            stepped.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    // Returns the rounds won by side 0
+    public int getWinsOfSide0() {
+        return winsOfSide0;
+    }
+
+
+    // Returns the rounds won by side 1
+    public int getWinsOfSide1() {
+        return winsOfSide1;
+    }
+
+
+    // Returns the rounds played so far
+    public int getRoundsPlayed() {
+        return roundsPlayed;
+    }
+
+
+    // Returns true if an agent has failed
+    public boolean isAborted() {
+        return isAborted;
+    }
+}
@@ -0,0 +1,35 @@
+package Models.Simulator;
+
+import Models.LUT.StateActionTable;
+import Models.Robot.StateEncoder;
+
+
+/** Greedy policy of a State-Action table (same lookup as the LUT robot).
+ *  The table is only read, so one table can be shared by any number of agents.
+ */
+public class LUTPolicy implements Policy {
+
+    private final StateActionTable lut;
+    private final StateEncoder encoder;     // Only used for its key layout (keyOf has no state)
+
+
+    public LUTPolicy(StateActionTable lut, StateEncoder encoder) {
+        this.lut = lut;
+        this.encoder = encoder;
+    }
+
+
+    @Override
+    public int act(double[] states) {
+        int bestAction = 0;
+        double bestQ = -Double.MAX_VALUE;
+        for (int a = 0; a < BattleSimulator.NUM_ACTIONS; a++) {
+            double q = lut.outputFor(encoder.keyOf((int) states[0], (int) states[1], (int) states[2], (int) states[3], a));
+            if (q > bestQ) {
+                bestQ = q;
+                bestAction = a;
+            }
+        }
+        return bestAction;
+    }
+}
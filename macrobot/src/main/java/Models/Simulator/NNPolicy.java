@@ -0,0 +1,35 @@
+package Models.Simulator;
+
+import Models.NeuralNet.InferenceWorkspace;
+import Models.NeuralNet.WeightSnapshot;
+
+
+/** Greedy policy of the DQN action NNs (one weight snapshot for each action).
+ *  Snapshots are immutable and shared, each policy instance keeps its own inference workspace.
+ */
+public class NNPolicy implements Policy {
+
+    private final WeightSnapshot[] nets;
+    private final InferenceWorkspace workspace;
+
+
+    public NNPolicy(WeightSnapshot[] nets) {
+        this.nets = nets;
+        this.workspace = nets[0].newWorkspace();
+    }
+
+
+    @Override
+    public int act(double[] states) {
+        int bestAction = 0;
+        double bestQ = -Double.MAX_VALUE;
+        for (int a = 0; a < nets.length; a++) {
+            double q = nets[a].outputFor(states, workspace);
+            if (q > bestQ) {
+                bestQ = q;
+                bestAction = a;
+            }
+        }
+        return bestAction;
+    }
+}
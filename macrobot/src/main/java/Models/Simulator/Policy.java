@@ -0,0 +1,10 @@
+package Models.Simulator;
+
+
+/** A policy picks one of the five Actions (BattleSimulator.CIRCLE ... FIRE) for the discretized States
+ *  of its own side: (my energy, distance to enemy, enemy's energy, distance to center, bias slot).
+ *  Each agent owns its own policy instance, so policies may keep per-agent scratch buffers.
+ */
+public interface Policy {
+    int act(double[] states);
+}
@@ -0,0 +1,166 @@
+package Models.Simulator;
+
+import Models.Robot.Discretizer;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/** Round-robin tournament of many contestants in the BattleSimulator, all in one JVM.
+ *  Every ordered pair (i, j) plays one Duel of "rounds" rounds; each agent of a duel is its own thread
+ *  (virtual when available, see AgentThreads) that blocks on its per-step rendezvous.
+ *  With platform threads, the number of duels running at the same time is bounded to keep the JVM light;
+ *  with virtual threads, all duels start at once and the carrier threads stay busy.
+ *  Results: wins[i][j] = rounds won by contestant i against contestant j.
+ */
+public class Tournament {
+
+    private final List<Contestant> contestants;
+    private final int rounds;                   // Rounds of each duel
+    private final int ticksPerStep;
+    private final long seed;
+    private final Discretizer energyDiscretizer;
+    private final Discretizer distanceDiscretizer;
+    private final int[][] wins;
+    private final int[][] played;               // Rounds played by each pair (both orders counted)
+    private final AtomicInteger failedDuels = new AtomicInteger();
+    private boolean isVirtual;
+
+
+    public Tournament(List<Contestant> contestants, int rounds, int ticksPerStep, long seed,
+                      Discretizer energyDiscretizer, Discretizer distanceDiscretizer) {
+        this.contestants = contestants;
+        this.rounds = rounds;
+        this.ticksPerStep = ticksPerStep;
+        this.seed = seed;
+        this.energyDiscretizer = energyDiscretizer;
+        this.distanceDiscretizer = distanceDiscretizer;
+        this.wins = new int[contestants.size()][contestants.size()];
+        this.played = new int[contestants.size()][contestants.size()];
+    }
+
+
+    /** Play all duels and wait for them.
+     *  maxPlatformDuels bounds the duels running at the same time when virtual threads are not available.
+     */
+    public void run(int maxPlatformDuels) throws InterruptedException {
+        ThreadFactory factory = AgentThreads.newFactory("agent-");
+        isVirtual = AgentThreads.isVirtualAvailable();
+        Semaphore running = new Semaphore(isVirtual ? Integer.MAX_VALUE : maxPlatformDuels);
+
+        int n = contestants.size();
+        int numDuels = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (isPlayable(i, j)) {
+                    numDuels++;
+                }
+            }
+        }
+        CountDownLatch finished = new CountDownLatch(numDuels);
+        int duelId = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (!isPlayable(i, j)) {
+                    continue;
+                }
+                running.acquire();
+                start(factory, i, j, seed + duelId++, running, finished);
+            }
+        }
+        finished.await();
+    }
+
+
+    // A contestant does not play itself, and the scripted enemy only plays as the enemy side
+    private boolean isPlayable(int i, int j) {
+        return i != j && !contestants.get(i).isScripted();
+    }
+
+
+    // Start the agent threads of one duel (i as side 0, j as side 1)
+    private void start(ThreadFactory factory, int i, int j, long duelSeed, Semaphore running, CountDownLatch finished) {
+        Contestant enemy = contestants.get(j);
+        Duel duel = new Duel(new BattleSimulator(ticksPerStep, duelSeed), enemy.isScripted(), rounds,
+                energyDiscretizer, distanceDiscretizer);
+        int numAgents = enemy.isScripted() ? 1 : 2;
+        AtomicInteger remaining = new AtomicInteger(numAgents);
+        for (int side = 0; side < numAgents; side++) {
+            Contestant contestant = contestants.get(side == 0 ? i : j);
+            int agentSide = side;
+            factory.newThread(() -> {
+                try {
+                    duel.play(agentSide, contestant.newPolicy(2 * duelSeed + agentSide));
+                } catch (RuntimeException e) {
+                    System.out.println("*** Agent " + contestant.getName() + " failed: " + e);
+                } finally {
+                    // The last agent of the duel records the results
+                    if (remaining.decrementAndGet() == 0) {
+                        record(i, j, duel);
+                        running.release();
+                        finished.countDown();
+                    }
+                }
+            }).start();
+        }
+    }
+
+
+    // Add the results of a finished duel
+    private synchronized void record(int i, int j, Duel duel) {
+        if (duel.isAborted()) {
+            failedDuels.incrementAndGet();
+        }
+        wins[i][j] += duel.getWinsOfSide0();
+        wins[j][i] += duel.getWinsOfSide1();
+        played[i][j] += duel.getRoundsPlayed();
+        played[j][i] += duel.getRoundsPlayed();
+    }
+
+
+    // Returns the rounds won by contestant i against contestant j
+    public synchronized int getWins(int i, int j) {
+        return wins[i][j];
+    }
+
+
+    // Returns the rounds played between contestants i and j (both orders)
+    public synchronized int getPlayed(int i, int j) {
+        return played[i][j];
+    }
+
+
+    // Returns the total rounds won by contestant i
+    public synchronized int getTotalWins(int i) {
+        int total = 0;
+        for (int w : wins[i]) {
+            total += w;
+        }
+        return total;
+    }
+
+
+    // Returns the total rounds played by contestant i
+    public synchronized int getTotalPlayed(int i) {
+        int total = 0;
+        for (int p : played[i]) {
+            total += p;
+        }
+        return total;
+    }
+
+
+    // Returns the number of duels stopped by a failed agent
+    public int getFailedDuels() {
+        return failedDuels.get();
+    }
+
+
+    // Returns true if the agents ran on virtual threads
+    public boolean isVirtual() {
+        return isVirtual;
+    }
+}
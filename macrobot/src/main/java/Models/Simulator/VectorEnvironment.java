@@ -0,0 +1,245 @@
+package Models.Simulator;
+
+import Models.NeuralNet.BatchWorkspace;
+import Models.NeuralNet.NN_OneHiddenLayer;
+import Models.ReplayMemory.TransitionRing;
+import Models.Robot.Discretizer;
+import Models.Robot.StateEncoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/** This class steps N independent BattleSimulators in LOCKSTEP for fast experience collection.
+ *  The discretized States of all environments are kept in ONE matrix (one row per environment,
+ *  same input vectors as the DQN robot: 4 State levels + 1 bias slot), so the Actions of all environments
+ *  are picked by one batched Q evaluation for each action NN. The Actions are scattered back and
+ *  the environments are stepped in contiguous shards on a thread pool (one shard per thread).
+ *  Finished rounds are reset automatically; their transition still ends with the terminal State.
+ */
+public class VectorEnvironment {
+
+    private static final int WIDTH = StateEncoder.NUM_STATES + 1;     // Input vector of each environment
+
+    private final BattleSimulator[] envs;
+    private final Discretizer energyDiscretizer;
+    private final Discretizer distanceDiscretizer;
+    private final int numEnvs;
+
+    // One row for each environment
+    private final double[] states;              // CURRENT States (after the automatic reset)
+    private final double[] prevStates;          // States before the last step
+    private final double[] nextStates;          // States right after the last step (terminal States kept)
+    private final int[] actions;                // Actions of the last step
+    private final double[] rewards;             // Rewards of the last step
+    private final boolean[] dones;              // Round over after the last step
+    private final double[] bestQ;               // Scratch: best Q-value of each environment
+    private final double[] q;                   // Scratch: Q-values of one action NN
+
+    private final int numThreads;
+    private final ExecutorService workers;
+    private final List<Callable<Integer>> shards;   // Prebuilt step tasks (one per thread)
+    private long numSteps = 0;                  // Environment steps so far (all environments)
+    private int numWins = 0;                    // Rounds won so far
+    private int numRounds = 0;                  // Rounds finished so far
+
+
+    public VectorEnvironment(int numEnvs, int numThreads, int ticksPerStep, long seed,
+                             Discretizer energyDiscretizer, Discretizer distanceDiscretizer) {
+        if (numEnvs < 1 || numThreads < 1) {
+            throw new IllegalArgumentException("Number of environments and threads must be at least 1");
+        }
+        this.numEnvs = numEnvs;
+        this.energyDiscretizer = energyDiscretizer;
+        this.distanceDiscretizer = distanceDiscretizer;
+        this.envs = new BattleSimulator[numEnvs];
+        for (int i = 0; i < numEnvs; i++) {
+            envs[i] = new BattleSimulator(ticksPerStep, seed + i);
+        }
+        this.states = new double[numEnvs * WIDTH];
+        this.prevStates = new double[numEnvs * WIDTH];
+        this.nextStates = new double[numEnvs * WIDTH];
+        this.actions = new int[numEnvs];
+        this.rewards = new double[numEnvs];
+        this.dones = new boolean[numEnvs];
+        this.bestQ = new double[numEnvs];
+        this.q = new double[numEnvs];
+        for (int i = 0; i < numEnvs; i++) {
+            observe(i, states);
+        }
+
+        this.numThreads = Math.min(numThreads, numEnvs);
+        this.shards = new ArrayList<>(this.numThreads);
+        for (int t = 0; t < this.numThreads; t++) {
+            int shardStart = (int) ((long) numEnvs * t / this.numThreads);
+            int shardEnd = (int) ((long) numEnvs * (t + 1) / this.numThreads);
+            shards.add(() -> stepShard(shardStart, shardEnd));
+        }
+        // Daemon threads, so the JVM can exit even if shutdown() is not called
+        this.workers = Executors.newFixedThreadPool(this.numThreads, runnable -> {
+            Thread thread = new Thread(runnable, "vector-env");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /** Pick the Action of every environment (epsilon-greedy) with ONE batched Q evaluation for each action NN.
+     *  The workspace must hold at least numEnvs rows. Returns the Actions (one per environment).
+     */
+    public int[] selectActions(NN_OneHiddenLayer[] nets, BatchWorkspace workspace, double epsilon, Random random) {
+        Arrays.fill(bestQ, -Double.MAX_VALUE);
+        for (int a = 0; a < nets.length; a++) {
+            nets[a].outputsFor(states, numEnvs, workspace, q);
+            for (int i = 0; i < numEnvs; i++) {
+                if (q[i] > bestQ[i]) {
+                    bestQ[i] = q[i];
+                    actions[i] = a;
+                }
+            }
+        }
+        for (int i = 0; i < numEnvs; i++) {
+            if (random.nextDouble() < epsilon) {
+                actions[i] = random.nextInt(nets.length);
+            }
+        }
+        return actions;
+    }
+
+
+    /** Step all environments with the Actions of selectActions (or written into getActions()).
+     *  Returns the number of rounds finished by this step.
+     */
+    public int step() {
+        System.arraycopy(states, 0, prevStates, 0, states.length);
+        int finished = 0;
+        if (numThreads == 1) {
+            finished = stepShard(0, numEnvs);
+        } else {
+            try {
+                for (Future<Integer> future : workers.invokeAll(shards)) {
+                    finished += future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Environment step was interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Environment worker failed", e.getCause());
+            }
+        }
+        numSteps += numEnvs;
+        numRounds += finished;
+        return finished;
+    }
+
+
+    // Step the environments [start, end), returns the number of finished rounds
+    private int stepShard(int start, int end) {
+        int finished = 0;
+        for (int i = start; i < end; i++) {
+            BattleSimulator env = envs[i];
+            rewards[i] = env.step(actions[i]);
+            observe(i, nextStates);
+            dones[i] = env.isDone();
+            if (dones[i]) {
+                finished++;
+                if (env.isWin()) {
+                    synchronized (this) {
+                        numWins++;
+                    }
+                }
+                env.reset();
+                observe(i, states);
+            } else {
+                System.arraycopy(nextStates, i * WIDTH, states, i * WIDTH, WIDTH);
+            }
+        }
+        return finished;
+    }
+
+
+    // Write the discretized States of environment i into its row (the bias slot is not touched)
+    private void observe(int i, double[] matrix) {
+        BattleSimulator env = envs[i];
+        int row = i * WIDTH;
+        matrix[row] = energyDiscretizer.levelOf(env.getMyEnergy());
+        matrix[row + 1] = distanceDiscretizer.levelOf(env.getEnemyDistance());
+        matrix[row + 2] = energyDiscretizer.levelOf(env.getEnemyEnergy());
+        matrix[row + 3] = distanceDiscretizer.levelOf(env.getDistanceToCenter());
+    }
+
+
+    // Pass the transitions of the last step to a sink (e.g. a learner's replay memory)
+    public void drainTo(TransitionRing.Sink sink) {
+        for (int i = 0; i < numEnvs; i++) {
+            sink.accept(prevStates, i * WIDTH, actions[i], rewards[i], nextStates, i * WIDTH);
+        }
+    }
+
+
+    // Returns the CURRENT States matrix (row i starts at i * getWidth())
+    public double[] getStates() {
+        return states;
+    }
+
+
+    // Returns the Actions of the environments (can be written before step())
+    public int[] getActions() {
+        return actions;
+    }
+
+
+    // Returns the rewards of the last step
+    public double[] getRewards() {
+        return rewards;
+    }
+
+
+    // Returns true for each environment whose round was over after the last step
+    public boolean[] getDones() {
+        return dones;
+    }
+
+
+    // Returns the length of each State row
+    public int getWidth() {
+        return WIDTH;
+    }
+
+
+    // Returns the number of environments
+    public int getNumEnvs() {
+        return numEnvs;
+    }
+
+
+    // Returns the environment steps so far (all environments)
+    public long getNumSteps() {
+        return numSteps;
+    }
+
+
+    // Returns the rounds finished so far
+    public int getNumRounds() {
+        return numRounds;
+    }
+
+
+    // Returns the rounds won so far
+    public synchronized int getNumWins() {
+        return numWins;
+    }
+
+
+    // Stop all worker threads
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
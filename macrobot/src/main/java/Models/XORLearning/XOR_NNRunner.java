@@ -1,9 +1,9 @@
 package Models.XORLearning;
 
 import Models.NeuralNet.NN_OneHiddenLayer;
+import Models.NeuralNet.TrainingLoop;
 
 import java.io.File;
-import java.util.ArrayList;
 
 
 public class XOR_NNRunner {
@@ -12,6 +12,9 @@ public class XOR_NNRunner {
     static private double [][] trainInputVectors;       // Input vectors for XOR NN training
     static private double [] trainTargetVector;         // Target vectors for XOR NN training
 
+    private static final double TARGET_ERROR = 0.05;    // Stop training when the TOTAL ERROR is less than this
+    private static final int MAX_EPOCHS = 100000;       // Stop training a diverging run after this many epochs
+
 
     /** This method provides the TOTAL ERROR for each epoch.
      *  1. Input the NN you want to train
@@ -80,54 +83,62 @@ public class XOR_NNRunner {
         // Initialize all weights
         this.nn.initializeWeights();
 
-        // Initialize totalError (The total error for each epoch)
-        double totalError = 1.0;
-
         // Train for each input pattern and print the TOTAL ERROR for each epoch.
         if (totalRun == 1) {                     // Run only 1 loop
-            for (int epoch = 1; totalError > 0.05; epoch++) {
+            TrainingLoop loop = new TrainingLoop(this.nn, MAX_EPOCHS, 0, 0, TARGET_ERROR);
+            loop.run(epoch -> {
                 // TRAIN the NN and get the TOTAL ERROR for each epoch
-                totalError = Math.pow(this.getTotalError(this.nn)/trainInputVectors.length, 0.5);
+                double totalError = Math.pow(this.getTotalError(this.nn)/trainInputVectors.length, 0.5);
                 // Print the TOTAL ERROR for each epoch
-                if (totalError < 0.05) {
+                if (totalError < TARGET_ERROR) {
                     System.out.println(epoch + " " + totalError + "\n");
                 } else {
                     System.out.println(epoch + " " + totalError);
                 }
                 // Record the total error of each epoch
-                this.nn.arr.add("Epoch: " + epoch + ", total error: " + totalError);
+                this.nn.logRecord.add("Epoch: " + epoch + ", total error: " + totalError);
+                return totalError;
+            });
+            if (loop.getStopReason() != TrainingLoop.StopReason.converged) {
+                System.out.println("Not converged after " + MAX_EPOCHS + " epochs");
             }
         } else {                                // Run more than 1 loop
             // For calculating the average epoch for multi-runs
             int totalEpochs = 0;
 
             for (int run = 0; run < totalRun; run++) {
-                // Initialize all weights & totalError for each run
+                // Initialize all weights for each run
                 this.nn.initializeWeights();
-                totalError = 1.0;
                 // Start each run
-                for (int epoch = 1; totalError > 0.05; epoch++) {
+                TrainingLoop loop = new TrainingLoop(this.nn, MAX_EPOCHS, 0, 0, TARGET_ERROR);
+                loop.run(epoch -> {
                     // TRAIN the NN and get the TOTAL ERROR for each epoch
-                    totalError = this.getTotalError(this.nn);
-                    // Print the TOTAL EPOCHS for each run
-                    if (totalError < 0.05) {
-                        System.out.println(run + 1 + " " + epoch);
-                    }
+                    double totalError = this.getTotalError(this.nn);
                     // Record the total error of each epoch
-                    this.nn.arr.add("Epoch: " + epoch + ", total error: " + totalError);
-                    totalEpochs++;
+                    this.nn.logRecord.add("Epoch: " + epoch + ", total error: " + totalError);
+                    return totalError;
+                });
+                // Print the TOTAL EPOCHS for each run
+                if (loop.getStopReason() == TrainingLoop.StopReason.converged) {
+                    System.out.println(run + 1 + " " + loop.getEpochs());
+                } else {
+                    System.out.println(run + 1 + " not converged after " + MAX_EPOCHS + " epochs");
                 }
+                totalEpochs += loop.getEpochs();
                 // Separate each run in the txt file and record the average epoch for the total runs
                 if (run != totalRun - 1) {
-                    this.nn.arr.add("---------------Next Run---------------");
+                    this.nn.logRecord.add("---------------Next Run---------------");
                 } else {
-                    this.nn.arr.add("---------------" + totalRun + " Runs End---------------");
-                    this.nn.arr.add("Average Epochs: " + totalEpochs/totalRun);
+                    this.nn.logRecord.add("---------------" + totalRun + " Runs End---------------");
+                    this.nn.logRecord.add("Average Epochs: " + totalEpochs/totalRun);
                 }
             }
         }
         // Record the total error of each epoch for each run
-        nn.save(new File("./out/statistics/XOR/Errors_Run_" + totalRun + "_Bipolar_" + isBipolar + "_LR_" + setLearningRate + "_MT_" + setMomentum + ".txt"));
+        String name = "Run_" + totalRun + "_Bipolar_" + isBipolar + "_LR_" + setLearningRate + "_MT_" + setMomentum;
+        nn.saveLog(new File("./out/statistics/XOR/Errors_" + name + ".txt"));
+        // Export the trained NN (JSON, can be loaded back with nn.load)
+        nn.save(new File("./out/statistics/XOR/NN_" + name + ".json"));
     }
 
     public static void main(String args[]) {
@@ -0,0 +1,124 @@
+package Tools;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+
+/** This class fills flat buffers (LUT cells, NN weights) with random values from a seed.
+ *  A buffer is cut into chunks of a FIXED size, and each chunk gets its own SplittableRandom split off
+ *  in chunk order before any filling starts. Large buffers are filled in parallel (common ForkJoinPool),
+ *  and the values only depend on the seed and the order of the fill calls, never on the thread count.
+ *  The NN schemes (Xavier/Glorot, He) scale the values from the fan-in & fan-out of the layer.
+ */
+public class RandomInit {
+
+    // Weight initialization schemes of a layer
+    public enum Scheme {
+        XAVIER_UNIFORM,     // U(-limit, limit), limit = sqrt(6 / (fanIn + fanOut))
+        XAVIER_NORMAL,      // N(0, 2 / (fanIn + fanOut))
+        HE_UNIFORM,         // U(-limit, limit), limit = sqrt(6 / fanIn)
+        HE_NORMAL           // N(0, 2 / fanIn)
+    }
+
+    private static final int CHUNK = 4096;                  // Values for each split (fixed: keeps the result deterministic)
+    private static final int PARALLEL_THRESHOLD = 1 << 16;  // Smaller buffers are filled by the calling thread
+
+    private final SplittableRandom root;
+
+
+    public RandomInit(long seed) {
+        this.root = new SplittableRandom(seed);
+    }
+
+
+    // Unseeded (different values for each run)
+    public RandomInit() {
+        this.root = new SplittableRandom();
+    }
+
+
+    // Fill the buffer with U(min, max)
+    public void uniform(double[] buffer, double min, double max) {
+        uniform(buffer, 0, buffer.length, min, max);
+    }
+
+
+    // Fill buffer[offset, offset + length) with U(min, max)
+    public void uniform(double[] buffer, int offset, int length, double min, double max) {
+        fill(buffer, offset, length, false, min, max);
+    }
+
+
+    // Fill buffer[offset, offset + length) with N(mean, std^2)
+    public void gaussian(double[] buffer, int offset, int length, double mean, double std) {
+        fill(buffer, offset, length, true, mean, std);
+    }
+
+
+    // Fill buffer[offset, offset + length) with the weights of a layer
+    public void fill(Scheme scheme, double[] buffer, int offset, int length, int fanIn, int fanOut) {
+        switch (scheme) {
+            case XAVIER_UNIFORM: {
+                double limit = Math.sqrt(6.0 / (fanIn + fanOut));
+                uniform(buffer, offset, length, -limit, limit);
+                break;
+            }
+            case XAVIER_NORMAL:
+                gaussian(buffer, offset, length, 0, Math.sqrt(2.0 / (fanIn + fanOut)));
+                break;
+            case HE_UNIFORM: {
+                double limit = Math.sqrt(6.0 / fanIn);
+                uniform(buffer, offset, length, -limit, limit);
+                break;
+            }
+            case HE_NORMAL:
+                gaussian(buffer, offset, length, 0, Math.sqrt(2.0 / fanIn));
+                break;
+        }
+    }
+
+
+    /** Split one generator for each chunk (in chunk order), then fill the chunks, in parallel for large buffers.
+     *  Uniform: a + (b - a) * U[0, 1). Gaussian: a + b * N(0, 1) (polar method, pairs restart at each chunk).
+     */
+    private void fill(double[] buffer, int offset, int length, boolean isGaussian, double a, double b) {
+        int numChunks = (length + CHUNK - 1) / CHUNK;
+        SplittableRandom call = root.split();
+        SplittableRandom[] chunks = new SplittableRandom[numChunks];
+        for (int k = 0; k < numChunks; k++) {
+            chunks[k] = call.split();
+        }
+        IntStream range = IntStream.range(0, numChunks);
+        if (length >= PARALLEL_THRESHOLD) {
+            range = range.parallel();
+        }
+        range.forEach(k -> {
+            int from = offset + k * CHUNK;
+            int to = from + Math.min(CHUNK, length - k * CHUNK);
+            if (isGaussian) {
+                fillGaussian(chunks[k], buffer, from, to, a, b);
+            } else {
+                for (int i = from; i < to; i++) {
+                    buffer[i] = a + (b - a) * chunks[k].nextDouble();
+                }
+            }
+        });
+    }
+
+
+    private static void fillGaussian(SplittableRandom random, double[] buffer, int from, int to, double mean, double std) {
+        for (int i = from; i < to; i += 2) {
+            double u, v, s;
+            do {
+                u = 2 * random.nextDouble() - 1;
+                v = 2 * random.nextDouble() - 1;
+                s = u * u + v * v;
+            } while (s >= 1 || s == 0);
+            double factor = Math.sqrt(-2 * Math.log(s) / s);
+            buffer[i] = mean + std * u * factor;
+            if (i + 1 < to) {
+                buffer[i + 1] = mean + std * v * factor;
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package Tools;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+
+/** This class hands out seeded random generators for exploration and sampling.
+ *  Each robot (and each round) or thread gets its own generator, derived from one experiment seed and a key,
+ *  so no generator is shared between threads (no CAS on a shared seed) and a run is reproducible from its seed.
+ *  The generators extend java.util.Random (they can be passed to every sampler of the project)
+ *  but are NOT synchronized: keep each one confined to a single thread.
+ *  The shared experiment seed is read from the system property "macrobot.seed" (-Dmacrobot.seed=502),
+ *  a random seed is used without it.
+ */
+public class RandomStreams {
+
+    public static final String SEED_PROPERTY = "macrobot.seed";
+    private static final RandomStreams SHARED = new RandomStreams(seedOf(SEED_PROPERTY));
+
+    private final long seed;
+    private final ThreadLocal<Random> threadGenerators;
+
+
+    public RandomStreams(long seed) {
+        this.seed = seed;
+        this.threadGenerators = ThreadLocal.withInitial(() -> forKey("thread/" + Thread.currentThread().getName()));
+    }
+
+
+    // Returns the streams of the experiment (seed from the system property)
+    public static RandomStreams shared() {
+        return SHARED;
+    }
+
+
+    // Returns the experiment seed (to be logged with the results)
+    public long getSeed() {
+        return seed;
+    }
+
+
+    // Returns a new generator for a key (e.g. robot name & round), the same key always gives the same values
+    public Random forKey(String key) {
+        long hash = seed;
+        for (int i = 0; i < key.length(); i++) {
+            hash = mix(hash + key.charAt(i));
+        }
+        return new Generator(hash);
+    }
+
+
+    // Returns the generator of the calling thread (created on its first use, keyed by the thread name)
+    public Random forThread() {
+        return threadGenerators.get();
+    }
+
+
+    // Returns a new unsynchronized generator for a seed (drop-in for new Random(seed))
+    public static Random newGenerator(long seed) {
+        return new Generator(seed);
+    }
+
+
+    // Seed from a system property, random if it is missing, invalid or not readable (robot security manager)
+    private static long seedOf(String property) {
+        try {
+            String value = System.getProperty(property);
+            if (value != null) {
+                return Long.parseLong(value.trim());
+            }
+        } catch (SecurityException | NumberFormatException e) {
+            System.out.println("*** Could not read the random seed (" + property + "), using a random seed: " + e);
+        }
+        return new SplittableRandom().nextLong();
+    }
+
+
+    // 64-bit finalizer of SplitMix64
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+
+    /** SplitMix64 generator (same sequence algorithm as SplittableRandom) behind the java.util.Random API.
+     *  The state is a plain long: no atomic update on each call, unlike java.util.Random.
+     */
+    private static final class Generator extends Random {
+
+        private static final long serialVersionUID = 1L;
+        private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+        private long state;
+
+
+        Generator(long seed) {
+            super(seed);        // Calls setSeed
+        }
+
+
+        @Override
+        public void setSeed(long seed) {
+            super.setSeed(seed);        // Clears the cached Gaussian of java.util.Random
+            this.state = mix(seed);
+        }
+
+
+        @Override
+        protected int next(int bits) {
+            return (int) (nextLong() >>> (64 - bits));
+        }
+
+
+        @Override
+        public long nextLong() {
+            return mix(state += GOLDEN_GAMMA);
+        }
+
+
+        @Override
+        public int nextInt() {
+            return (int) (nextLong() >>> 32);
+        }
+
+
+        @Override
+        public double nextDouble() {
+            return (nextLong() >>> 11) * 0x1.0p-53;
+        }
+
+
+        @Override
+        public boolean nextBoolean() {
+            return nextLong() < 0;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package Models.Bundle;
+
+import Models.Cache.OpponentModelCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BundleStoreTest {
+
+    private static final String NAME = "Models.bundle";
+
+    @TempDir
+    File directory;
+
+    private OpponentModelCache.Storage storage;
+
+
+    @BeforeEach
+    void setUp() {
+        storage = OpponentModelCache.Storage.inDirectory(directory);
+    }
+
+
+    // Without any bundle there is nothing to load
+    @Test
+    void loadsNothingAtFirst() {
+        BundleStore store = new BundleStore(storage, NAME);
+        assertNull(store.load());
+        assertEquals(-1, store.getGeneration());
+    }
+
+
+    // Saves alternate between the two files, and the newest generation is loaded
+    @Test
+    void alternatesFiles() throws IOException {
+        BundleStore store = new BundleStore(storage, NAME);
+        store.load();
+        save(store, 1);
+        save(store, 2);
+        save(store, 3);
+        assertEquals("Models_0.bundle", store.fileOf(0));
+        assertEquals("Models_1.bundle", store.fileOf(3));
+        assertTrue(new File(directory, "Models_0.bundle").isFile());
+        assertTrue(new File(directory, "Models_1.bundle").isFile());
+
+        BundleStore reader = new BundleStore(storage, NAME);
+        ModelBundle bundle = reader.load();
+        assertEquals(2, reader.getGeneration());
+        assertArrayEquals(new double[] {3}, bundle.getDoubles("weights"));
+    }
+
+
+    // A newest bundle torn by a crash is ignored: the previous generation is loaded, and overwritten by the next save
+    @Test
+    void fallsBackWhenNewestIsTorn() throws IOException {
+        BundleStore store = new BundleStore(storage, NAME);
+        store.load();
+        save(store, 1);                         // Generation 0
+        save(store, 2);                         // Generation 1, torn below
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, store.fileOf(1)), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        BundleStore reader = new BundleStore(storage, NAME);
+        ModelBundle bundle = reader.load();
+        assertEquals(0, reader.getGeneration());
+        assertArrayEquals(new double[] {1}, bundle.getDoubles("weights"));
+
+        save(reader, 4);                        // Rewrites the torn file as generation 1
+        ModelBundle reloaded = new BundleStore(storage, NAME).load();
+        assertArrayEquals(new double[] {4}, reloaded.getDoubles("weights"));
+    }
+
+
+    private static void save(BundleStore store, double weight) throws IOException {
+        store.save(new ModelBundleWriter().addDoubles("weights", new double[] {weight}));
+    }
+}
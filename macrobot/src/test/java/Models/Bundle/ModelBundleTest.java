@@ -0,0 +1,112 @@
+package Models.Bundle;
+
+import Models.LUT.StateActionTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModelBundleTest {
+
+    private static final double[] WEIGHTS = {0.5, -1.25, Math.PI, 1e-300};
+
+    @TempDir
+    File directory;
+
+
+    // Every section written is read back from the mapped file, in file order
+    @Test
+    void roundTripsAllSectionTypes() throws IOException {
+        StateActionTable table = newTable();
+        table.setQ(3, 1.5);
+        table.setQ(100, -2.75);
+        File file = new File(directory, "Models.bundle");
+        try (OutputStream out = new FileOutputStream(file)) {
+            newWriter(table).write(out);
+        }
+
+        ModelBundle bundle = ModelBundle.open(file);
+        assertEquals(3, bundle.size());
+        assertEquals(List.of("weights", "meta", "lut"), List.copyOf(bundle.getSectionNames()));
+        assertTrue(bundle.has("lut"));
+        assertFalse(bundle.has("other"));
+        assertArrayEquals(WEIGHTS, bundle.getDoubles("weights"));
+        assertEquals("rounds=12 \u00e9", bundle.getText("meta"));
+        StateActionTable loaded = newTable();
+        bundle.readTable("lut", loaded);
+        for (int i = 0; i < table.size(); i++) {
+            assertEquals(table.outputFor(i), loaded.outputFor(i), "Q-value of cell " + i);
+        }
+    }
+
+
+    // Sections are materialized on their first access only, and then shared
+    @Test
+    void materializesLazily() throws IOException {
+        ModelBundle bundle = ModelBundle.wrap(ByteBuffer.wrap(toBytes(newWriter(newTable()))), "Models.bundle");
+        assertEquals(0, bundle.getNumMaterialized());
+        double[] weights = bundle.getDoubles("weights");
+        assertEquals(1, bundle.getNumMaterialized());
+        assertSame(weights, bundle.getDoubles("weights"));
+        bundle.getText("meta");
+        assertEquals(2, bundle.getNumMaterialized());
+    }
+
+
+    // A missing section or one of another type is an IOException
+    @Test
+    void rejectsMissingOrMistypedSection() throws IOException {
+        ModelBundle bundle = ModelBundle.wrap(ByteBuffer.wrap(toBytes(newWriter(newTable()))), "Models.bundle");
+        assertThrows(IOException.class, () -> bundle.getDoubles("other"));
+        assertThrows(IOException.class, () -> bundle.getText("weights"));
+        assertThrows(IOException.class, () -> bundle.getDoubles("meta"));
+        assertThrows(IOException.class, () -> bundle.readTable("weights", newTable()));
+    }
+
+
+    // A truncated bundle, or bytes that are not a bundle, are rejected when opened
+    @Test
+    void rejectsTruncatedBundle() throws IOException {
+        byte[] bytes = toBytes(newWriter(newTable()));
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 1);
+        assertThrows(IOException.class, () -> ModelBundle.wrap(ByteBuffer.wrap(truncated), "Models.bundle"));
+        byte[] header = Arrays.copyOf(bytes, 8);
+        assertThrows(IOException.class, () -> ModelBundle.wrap(ByteBuffer.wrap(header), "Models.bundle"));
+        byte[] other = new byte[bytes.length];
+        assertThrows(IOException.class, () -> ModelBundle.wrap(ByteBuffer.wrap(other), "Models.bundle"));
+    }
+
+
+    private static StateActionTable newTable() {
+        return new StateActionTable(5, 5, 5, 5, 5);
+    }
+
+
+    private static ModelBundleWriter newWriter(StateActionTable table) throws IOException {
+        return new ModelBundleWriter()
+                .addDoubles("weights", WEIGHTS)
+                .addText("meta", "rounds=12 \u00e9")
+                .addTable("lut", table);
+    }
+
+
+    private static byte[] toBytes(ModelBundleWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.write(bytes);
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,124 @@
+package Models.LUT;
+
+import Tools.RandomStreams;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QStorageTest {
+
+    private static final int SIZE = 4096;
+
+
+    // float16: every write is within the reported error bound, which is relative to the largest value written
+    @Test
+    void halfRoundTripIsWithinBound() {
+        QStorage storage = QStorage.half(SIZE);
+        Random random = RandomStreams.newGenerator(502);
+        double[] written = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            written[i] = (random.nextDouble() * 2 - 1) * 40;
+            storage.set(i, written[i]);
+        }
+        double bound = storage.getMaxAbsError();
+        assertTrue(bound <= 40 * 0x1p-11 * (1 + 0x1p-13), "bound " + bound);
+        for (int i = 0; i < SIZE; i++) {
+            double error = Math.abs(storage.get(i) - written[i]);
+            assertTrue(error <= bound, "cell " + i + ": error " + error + " > " + bound);
+            // Round to nearest: also within half a float16 step of the value itself
+            assertTrue(error <= Math.max(Math.abs(written[i]) * 0x1p-11 * (1 + 0x1p-13), 0x1p-25));
+        }
+        assertEquals(0, storage.getNumSaturated());
+    }
+
+
+    // float16: every 16-bit pattern (except NaNs) converts to a float and back to itself
+    @Test
+    void halfConversionIsExactForAllHalves() {
+        for (int bits = 0; bits < 0x10000; bits++) {
+            short half = (short) bits;
+            float value = HalfQStorage.toFloat(half);
+            if (Float.isNaN(value)) {
+                continue;
+            }
+            assertEquals(half, HalfQStorage.toHalf(value), "float16 bits " + Integer.toHexString(bits));
+        }
+    }
+
+
+    // float16: values beyond the range are clamped to +-65504 and counted
+    @Test
+    void halfSaturates() {
+        QStorage storage = QStorage.half(2);
+        storage.set(0, 1e6);
+        storage.set(1, -70000);
+        assertEquals(HalfQStorage.MAX_HALF, storage.get(0));
+        assertEquals(-HalfQStorage.MAX_HALF, storage.get(1));
+        assertEquals(2, storage.getNumSaturated());
+    }
+
+
+    // Fixed point: the absolute error is at most half a step everywhere in the range
+    @Test
+    void fixedPointRoundTripIsWithinBound() {
+        double maxAbsQ = 8;
+        QStorage storage = QStorage.fixedPoint(SIZE, maxAbsQ);
+        double bound = storage.getMaxAbsError();
+        assertEquals(maxAbsQ / Short.MAX_VALUE / 2, bound, 1e-15);
+        Random random = RandomStreams.newGenerator(503);
+        for (int i = 0; i < SIZE; i++) {
+            double q = (random.nextDouble() * 2 - 1) * maxAbsQ;
+            storage.set(i, q);
+            assertTrue(Math.abs(storage.get(i) - q) <= bound + 1e-15, "cell " + i);
+        }
+        storage.set(0, maxAbsQ);
+        storage.set(1, -maxAbsQ);
+        assertEquals(maxAbsQ, storage.get(0), 1e-12);
+        assertEquals(-maxAbsQ, storage.get(1), 1e-12);
+        assertEquals(0, storage.getNumSaturated());
+    }
+
+
+    // Fixed point: values beyond +-maxAbsQ are clamped and counted
+    @Test
+    void fixedPointSaturates() {
+        QStorage storage = QStorage.fixedPoint(2, 1);
+        storage.set(0, 3);
+        storage.set(1, -1.5);
+        assertEquals(1, storage.get(0), 1e-12);
+        assertEquals(-1, storage.get(1), 1e-12);
+        assertEquals(2, storage.getNumSaturated());
+    }
+
+
+    // Compact visit records saturate at 65535 (not counted as clamped Q-values)
+    @Test
+    void compactVisitsSaturate() {
+        for (QStorage storage : new QStorage[] {QStorage.half(1), QStorage.fixedPoint(1, 1)}) {
+            storage.setVisits(0, 65534);
+            assertEquals(65535, storage.incrementVisits(0));
+            assertEquals(65535, storage.incrementVisits(0));
+            storage.setVisits(0, 1 << 20);
+            assertEquals(65535, storage.getVisits(0));
+            assertEquals(0, storage.getNumSaturated());
+            assertEquals(4, storage.getNumBytes());
+        }
+    }
+
+
+    // Full precision keeps the values exactly
+    @Test
+    void doublesAreExact() {
+        QStorage storage = QStorage.doubles(3);
+        storage.set(0, Math.PI);
+        storage.set(1, -1e300);
+        storage.setVisits(2, 100_000);
+        assertEquals(Math.PI, storage.get(0));
+        assertEquals(-1e300, storage.get(1));
+        assertEquals(100_000, storage.getVisits(2));
+        assertEquals(0, storage.getMaxAbsError());
+    }
+}
@@ -0,0 +1,142 @@
+package Models.LUT;
+
+import Models.Cache.OpponentModelCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TableJournalTest {
+
+    private static final String BASE = "Table.bin";
+    private static final String JOURNAL = "Table.journal";
+
+    @TempDir
+    File directory;
+
+    private OpponentModelCache.Storage storage;
+
+
+    @BeforeEach
+    void setUp() {
+        storage = OpponentModelCache.Storage.inDirectory(directory);
+    }
+
+
+    // A saved table is loaded back from its base & journal
+    @Test
+    void loadsBaseAndJournal() throws IOException {
+        StateActionTable table = newTable();
+        TableJournal journal = new TableJournal(table, storage, BASE, JOURNAL, 1000);
+        journal.load();
+        journal.save();                         // First save: base of generation 0
+        table.update(7, 2.5, StepSizeSchedule.constant(1));
+        table.setQ(42, -1.25);
+        journal.save();                         // Appended records
+        assertEquals(2, journal.getNumRecords());
+
+        StateActionTable loaded = newTable();
+        TableJournal reader = new TableJournal(loaded, storage, BASE, JOURNAL, 1000);
+        reader.load();
+        assertEquals(0, reader.getGeneration());
+        assertSameCells(table, loaded);
+    }
+
+
+    // A torn last record is dropped, the records before it are kept, and the next save compacts
+    @Test
+    void dropsTornRecord() throws IOException {
+        StateActionTable table = newTable();
+        TableJournal journal = new TableJournal(table, storage, BASE, JOURNAL, 1000);
+        journal.load();
+        journal.save();
+        table.setQ(3, 1.5);
+        journal.save();
+        double keptQ = table.outputFor(3);
+        table.setQ(5, 9.0);
+        journal.save();
+        truncate(JOURNAL, 5);                   // Crash in the middle of the record of cell 5
+
+        StateActionTable loaded = newTable();
+        TableJournal reader = new TableJournal(loaded, storage, BASE, JOURNAL, 1000);
+        reader.load();
+        assertEquals(keptQ, loaded.outputFor(3));
+        assertNotEquals(9.0, loaded.outputFor(5));
+        assertEquals(1, reader.getNumRecords());
+
+        reader.save();
+        assertEquals(1, reader.getGeneration());
+        assertEquals(0, reader.getNumRecords());
+    }
+
+
+    // A torn new base falls back to the previous generation (its journal is not replayed over another base)
+    @Test
+    void fallsBackToPreviousBase() throws IOException {
+        StateActionTable table = newTable();
+        TableJournal journal = new TableJournal(table, storage, BASE, JOURNAL, 1000);
+        journal.load();
+        journal.save();                         // Base 0
+        StateActionTable generation0 = newTable();
+        new TableJournal(generation0, storage, BASE, JOURNAL, 1000).load();
+        table.setQ(11, 4.0);
+        journal.compact();                      // Base 1
+        truncate("Table_1.bin", 8);             // Crash before the footer was written
+
+        StateActionTable loaded = newTable();
+        TableJournal reader = new TableJournal(loaded, storage, BASE, JOURNAL, 1000);
+        reader.load();
+        assertEquals(0, reader.getGeneration());
+        assertSameCells(generation0, loaded);
+    }
+
+
+    // A save compacts once the journal would exceed the compaction limit
+    @Test
+    void compactsPastTheLimit() throws IOException {
+        StateActionTable table = newTable();
+        TableJournal journal = new TableJournal(table, storage, BASE, JOURNAL, 4);
+        journal.load();
+        journal.save();
+        for (int i = 0; i < 3; i++) {
+            table.setQ(i, i);
+        }
+        journal.save();
+        assertEquals(0, journal.getGeneration());
+        assertEquals(3, journal.getNumRecords());
+        table.setQ(10, 1);
+        table.setQ(11, 1);
+        journal.save();
+        assertEquals(1, journal.getGeneration());
+        assertEquals(0, journal.getNumRecords());
+        assertTrue(new File(directory, "Table_1.bin").length() > new File(directory, JOURNAL).length());
+    }
+
+
+    private static StateActionTable newTable() {
+        return new StateActionTable(5, 5, 5, 5, 5);
+    }
+
+
+    private static void assertSameCells(StateActionTable expected, StateActionTable actual) {
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.outputFor(i), actual.outputFor(i), "Q-value of cell " + i);
+            assertEquals(expected.getStorage().getVisits(i), actual.getStorage().getVisits(i), "visits of cell " + i);
+        }
+    }
+
+
+    // Drop the last bytes of a file (torn write)
+    private void truncate(String fileName, int numBytes) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, fileName), "rw")) {
+            file.setLength(file.length() - numBytes);
+        }
+    }
+}
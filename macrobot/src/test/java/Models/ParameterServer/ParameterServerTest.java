@@ -0,0 +1,65 @@
+package Models.ParameterServer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ParameterServerTest {
+
+    // Only the first init sets the weights of a model (version 1), the others get the current version
+    @Test
+    void initsOnlyOnce() {
+        ParameterServer server = new ParameterServer(2, 3, 4);
+        assertEquals(1, server.init(0, new double[] {1, 2, 3}));
+        assertEquals(1, server.init(0, new double[] {7, 7, 7}));
+        double[] weights = new double[3];
+        assertEquals(1, server.pull(0, weights));
+        assertArrayEquals(new double[] {1, 2, 3}, weights);
+        assertEquals(0, server.pull(1, weights));       // The other model is not initialized
+    }
+
+
+    // A fresh push is applied as is, and each push increments the version
+    @Test
+    void appliesFreshPush() {
+        ParameterServer server = new ParameterServer(1, 2, 4);
+        server.init(0, new double[] {1, 1});
+        assertEquals(2, server.push(0, 1, new double[] {0.5, -1}));
+        assertEquals(3, server.push(0, 2, new double[] {0.5, 0}));
+        double[] weights = new double[2];
+        assertEquals(3, server.pull(0, weights));
+        assertArrayEquals(new double[] {2, 0}, weights);
+    }
+
+
+    // A stale push is scaled by 1 / (1 + staleness)
+    @Test
+    void scalesStalePush() {
+        ParameterServer server = new ParameterServer(1, 1, 4);
+        server.init(0, new double[] {0});
+        for (int k = 0; k < 3; k++) {
+            server.push(0, 1 + k, new double[] {0});    // Version 4
+        }
+        assertEquals(5, server.push(0, 1, new double[] {8}));     // Staleness 3
+        double[] weights = new double[1];
+        server.pull(0, weights);
+        assertEquals(2, weights[0], 1e-12);
+    }
+
+
+    // A push staler than the limit is rejected (-current version) and changes nothing
+    @Test
+    void rejectsTooStalePush() {
+        ParameterServer server = new ParameterServer(1, 1, 2);
+        server.init(0, new double[] {0});
+        for (int k = 0; k < 3; k++) {
+            server.push(0, 1 + k, new double[] {1});    // Version 4, weight 3
+        }
+        assertEquals(5, server.push(0, 2, new double[] {3}));       // Staleness 2: accepted (weight 4)
+        assertEquals(-5, server.push(0, 2, new double[] {100}));    // Staleness 3: rejected
+        double[] weights = new double[1];
+        assertEquals(5, server.pull(0, weights));
+        assertEquals(4, weights[0], 1e-12);
+    }
+}
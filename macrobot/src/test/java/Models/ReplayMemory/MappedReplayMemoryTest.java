@@ -0,0 +1,129 @@
+package Models.ReplayMemory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedReplayMemoryTest {
+
+    private static final int WIDTH = 3;
+    private static final int SLOT_OFFSET = 16;          // Same layout as MappedReplayMemory
+    private static final int SLOT_SIZE = 24;
+
+    @TempDir
+    File directory;
+
+
+    // The committed records are still there after closing & reopening the file
+    @Test
+    void reopensCommittedRecords() throws IOException {
+        File path = new File(directory, "memory.bin");
+        try (MappedReplayMemory memory = MappedReplayMemory.open(path, 8, WIDTH)) {
+            for (int k = 0; k < 5; k++) {
+                add(memory, k);
+            }
+        }
+        try (MappedReplayMemory memory = MappedReplayMemory.open(path, 8, WIDTH)) {
+            assertEquals(5, memory.size());
+            for (int k = 0; k < 5; k++) {
+                assertRecord(memory, k, k);
+            }
+        }
+    }
+
+
+    // A torn latest commit slot falls back to the other slot: the last record is not visible, the others are intact
+    @Test
+    void fallsBackToPreviousCommitSlot() throws IOException {
+        File path = new File(directory, "memory.bin");
+        try (MappedReplayMemory memory = MappedReplayMemory.open(path, 8, WIDTH)) {
+            for (int k = 0; k < 4; k++) {
+                add(memory, k);
+            }
+        }
+        // 4 commits: the latest sequence (4) is in slot 0, tear its checksum
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            file.seek(SLOT_OFFSET + 16);
+            file.writeLong(0x0123456789abcdefL);
+        }
+        try (MappedReplayMemory memory = MappedReplayMemory.open(path, 8, WIDTH)) {
+            assertEquals(3, memory.size());
+            for (int k = 0; k < 3; k++) {
+                assertRecord(memory, k, k);
+            }
+            // The next commit goes to the torn slot again, and is valid
+            add(memory, 9);
+            assertEquals(4, memory.size());
+        }
+        try (MappedReplayMemory memory = MappedReplayMemory.open(path, 8, WIDTH)) {
+            assertEquals(4, memory.size());
+            assertRecord(memory, 3, 9);
+        }
+    }
+
+
+    // Without any valid commit slot the file is rejected
+    @Test
+    void rejectsFileWithoutValidSlot() throws IOException {
+        File path = new File(directory, "memory.bin");
+        MappedReplayMemory.open(path, 4, WIDTH).close();
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            for (int slot = 0; slot < 2; slot++) {
+                file.seek(SLOT_OFFSET + slot * SLOT_SIZE + 16);
+                file.writeLong(-1);
+            }
+        }
+        assertThrows(IOException.class, () -> MappedReplayMemory.open(path, 4, WIDTH));
+    }
+
+
+    // When full, the oldest records are replaced
+    @Test
+    void replacesOldestWhenFull() throws IOException {
+        try (MappedReplayMemory memory = MappedReplayMemory.open(new File(directory, "memory.bin"), 3, WIDTH)) {
+            for (int k = 0; k < 7; k++) {
+                add(memory, k);
+            }
+            assertEquals(3, memory.size());
+            for (int i = 0; i < 3; i++) {
+                assertRecord(memory, i, 4 + i);
+            }
+        }
+    }
+
+
+    // A file of another layout is rejected
+    @Test
+    void rejectsOtherLayout() throws IOException {
+        File path = new File(directory, "memory.bin");
+        MappedReplayMemory.open(path, 4, WIDTH).close();
+        assertThrows(IOException.class, () -> MappedReplayMemory.open(path, 5, WIDTH));
+    }
+
+
+    // Add the transition number k (every value is derived from k)
+    private static void add(MappedReplayMemory memory, int k) {
+        memory.add(new double[] {k, k + 0.25, k + 0.5}, k % 5, -k, new double[] {k + 1, k + 1.25, k + 1.5});
+    }
+
+
+    // Record i (0 is the oldest) must be the transition number k
+    private static void assertRecord(MappedReplayMemory memory, int i, int k) {
+        double[] states = new double[WIDTH];
+        double[] nextStates = new double[WIDTH];
+        int[] actions = new int[1];
+        double[] rewards = new double[1];
+        memory.read(i, states, nextStates, 0, actions, rewards, 0);
+        assertArrayEquals(new double[] {k, k + 0.25, k + 0.5}, states);
+        assertArrayEquals(new double[] {k + 1, k + 1.25, k + 1.5}, nextStates);
+        assertEquals(k % 5, actions[0]);
+        assertEquals(-k, rewards[0]);
+    }
+}
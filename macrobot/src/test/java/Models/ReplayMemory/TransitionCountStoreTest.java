@@ -0,0 +1,91 @@
+package Models.ReplayMemory;
+
+import Tools.RandomStreams;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransitionCountStoreTest {
+
+    // A transition seen again is merged into its entry (count & mean reward)
+    @Test
+    void mergesDuplicates() {
+        TransitionCountStore store = new TransitionCountStore(4);
+        int first = store.add(12, 3, 1.0);
+        store.add(40, 7, 0.0);
+        int again = store.add(12, 3, -0.5);
+        assertEquals(first, again);
+        assertEquals(2, store.size());
+        assertEquals(3, store.getTotalCount());
+        assertEquals(2, store.getCount(first));
+        assertEquals(0.25, store.getMeanReward(first), 1e-12);
+        assertEquals(first, store.find(12, 3));
+        assertEquals(-1, store.find(12, 4));
+    }
+
+
+    // Entries survive the growth of the store (ids, keys, counts & the sampling tree)
+    @Test
+    void keepsEntriesWhenGrowing() {
+        TransitionCountStore store = new TransitionCountStore(2);
+        for (int k = 0; k < 1000; k++) {
+            store.add(k, k + 1, k);
+            store.add(k, k + 1, k);
+        }
+        assertEquals(1000, store.size());
+        assertEquals(2000, store.getTotalCount());
+        for (int k = 0; k < 1000; k++) {
+            int entry = store.find(k, k + 1);
+            assertEquals(k, entry);
+            assertEquals(k, store.getStateActionKey(entry));
+            assertEquals(k + 1, store.getNextStateKey(entry));
+            assertEquals(2, store.getCount(entry));
+        }
+        int[] entries = new int[100];
+        assertEquals(100, store.sample(RandomStreams.newGenerator(1), 100, entries));
+        for (int entry : entries) {
+            assertTrue(entry >= 0 && entry < 1000);
+        }
+    }
+
+
+    // Entries are sampled in proportion to their counts
+    @Test
+    void samplesByCount() {
+        TransitionCountStore store = new TransitionCountStore(16);
+        long[] counts = {1, 2, 3, 10, 1, 4};
+        for (int entry = 0; entry < counts.length; entry++) {
+            store.add(entry, 0, 0);             // Every entry exists, in order
+        }
+        for (int entry = 0; entry < counts.length; entry++) {
+            for (long c = 1; c < counts[entry]; c++) {
+                store.add(entry, 0, 0);
+            }
+        }
+        long total = store.getTotalCount();
+
+        int n = 200_000;
+        int[] entries = new int[n];
+        Random random = RandomStreams.newGenerator(502);
+        assertEquals(n, store.sample(random, n, entries));
+        long[] hits = new long[counts.length];
+        for (int entry : entries) {
+            hits[entry]++;
+        }
+        for (int entry = 0; entry < counts.length; entry++) {
+            double expected = (double) store.getCount(entry) / total;
+            assertEquals(expected, (double) hits[entry] / n, 0.01, "share of entry " + entry);
+        }
+    }
+
+
+    // An empty store samples nothing
+    @Test
+    void emptySamplesNothing() {
+        TransitionCountStore store = new TransitionCountStore(8);
+        assertEquals(0, store.sample(RandomStreams.newGenerator(1), 5, new int[5]));
+    }
+}
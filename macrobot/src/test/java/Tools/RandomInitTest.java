@@ -0,0 +1,111 @@
+package Tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RandomInitTest {
+
+    private static final int LENGTH = (1 << 17) + 123;      // Filled in parallel, with a partial last chunk
+
+
+    // The same seed gives the same values whatever the number of threads filling the buffers
+    @Test
+    void sameValuesForAnyThreadCount() throws InterruptedException, ExecutionException {
+        double[] reference = fillAll(42);
+        for (int numThreads : new int[] {1, 2, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(numThreads);
+            try {
+                // A parallel stream started in a pool runs in that pool
+                double[] values = pool.submit(() -> fillAll(42)).get();
+                assertArrayEquals(reference, values, numThreads + " threads");
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+
+    // Other seeds give other values
+    @Test
+    void otherSeedOtherValues() {
+        double[] a = new double[1000];
+        double[] b = new double[1000];
+        new RandomInit(1).uniform(a, 0, 1);
+        new RandomInit(2).uniform(b, 0, 1);
+        int numEqual = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                numEqual++;
+            }
+        }
+        assertEquals(0, numEqual);
+    }
+
+
+    // Uniform values stay in [min, max) and only the requested range of the buffer is filled
+    @Test
+    void uniformStaysInRange() {
+        double[] buffer = new double[LENGTH + 20];
+        new RandomInit(7).uniform(buffer, 10, LENGTH, -0.5, 2);
+        double sum = 0;
+        for (int i = 10; i < 10 + LENGTH; i++) {
+            assertTrue(buffer[i] >= -0.5 && buffer[i] < 2, "value " + buffer[i]);
+            sum += buffer[i];
+        }
+        assertEquals(0.75, sum / LENGTH, 0.01);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, buffer[i]);
+            assertEquals(0, buffer[buffer.length - 1 - i]);
+        }
+    }
+
+
+    // Xavier uniform: within the limit sqrt(6 / (fanIn + fanOut)), with the variance of U(-limit, limit)
+    @Test
+    void xavierUniformLimit() {
+        int fanIn = 40, fanOut = 20;
+        double limit = Math.sqrt(6.0 / (fanIn + fanOut));
+        double[] weights = new double[fanIn * fanOut * 50];
+        new RandomInit(3).fill(RandomInit.Scheme.XAVIER_UNIFORM, weights, 0, weights.length, fanIn, fanOut);
+        double sumOfSquares = 0;
+        for (double w : weights) {
+            assertTrue(Math.abs(w) <= limit, "weight " + w);
+            sumOfSquares += w * w;
+        }
+        assertEquals(limit * limit / 3, sumOfSquares / weights.length, 0.02 * limit * limit);
+    }
+
+
+    // Gaussian: mean & standard deviation of the requested distribution (pairs restart at each chunk)
+    @Test
+    void gaussianMoments() {
+        double[] buffer = new double[LENGTH];
+        new RandomInit(5).gaussian(buffer, 0, LENGTH, 1, 0.5);
+        double sum = 0, sumOfSquares = 0;
+        for (double value : buffer) {
+            assertFalse(Double.isNaN(value));
+            sum += value;
+            sumOfSquares += value * value;
+        }
+        double mean = sum / LENGTH;
+        assertEquals(1, mean, 0.01);
+        assertEquals(0.5, Math.sqrt(sumOfSquares / LENGTH - mean * mean), 0.01);
+    }
+
+
+    // Two successive fills of one generator (the values depend on the seed and the order of the calls)
+    private static double[] fillAll(long seed) {
+        RandomInit init = new RandomInit(seed);
+        double[] buffer = new double[2 * LENGTH];
+        init.uniform(buffer, 0, LENGTH, -1, 1);
+        init.gaussian(buffer, LENGTH, LENGTH, 0, 1);
+        return buffer;
+    }
+}